@@ -0,0 +1,333 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable, thread-safe query plan built from a {@link Gather} query using
+ * {@link Gather#compile()}. The criteria of the query are turned into a tree of
+ * predicates specialized per operation, so that nothing is interpreted when the
+ * plan is fired against a collection. A compiled query may be kept in a static
+ * field and reused from many threads. For example,
+ * <code>static final CompiledGather QUERY = Gather.where("age").greaterThan(50).compile();</code>
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public final class CompiledGather {
+
+	/**
+	 * The root of the predicate tree
+	 */
+	final GatherPredicate predicate;
+
+	/**
+	 * Whether large lists and arrays are scanned using many threads
+	 */
+	final boolean parallel;
+
+	CompiledGather(GatherPredicate predicate) {
+		this(predicate, false);
+	}
+
+	private CompiledGather(GatherPredicate predicate, boolean parallel) {
+		this.predicate = predicate;
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Compile the criteria of the given query. Like SQL, <code>AND</code> binds
+	 * tighter than <code>OR</code>: the clauses are split at every
+	 * <code>OR</code> into chains of <code>AND</code>-ed clauses, and the query
+	 * matches if any chain matches.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to compile
+	 *
+	 * @return the {@link CompiledGather} instance
+	 */
+	static CompiledGather compile(Gather gather) {
+		if(gather.criteria.isEmpty()) {
+			return new CompiledGather(GatherPredicate.TRUE);
+		}
+
+		List<GatherPredicate> anyOf = new ArrayList<>();
+		List<GatherPredicate> allOf = new ArrayList<>();
+
+		for(GatherCriteria criteria : gather.criteria) {
+			// the join of the very first clause has no meaning
+			if(criteria.join == GatherSiblingJoin.OR && !allOf.isEmpty()) {
+				anyOf.add(GatherPredicate.allOf(allOf));
+				allOf = new ArrayList<>();
+			}
+
+			allOf.add(GatherPredicate.of(criteria));
+		}
+
+		anyOf.add(GatherPredicate.allOf(allOf));
+		return new CompiledGather(GatherPredicate.anyOf(anyOf));
+	}
+
+	/**
+	 * Return a version of this query that scans large {@link java.util.RandomAccess}
+	 * lists and arrays using many threads. Results are still returned in
+	 * encounter order. Smaller or other collections are scanned sequentially.
+	 *
+	 * @return the parallel {@link CompiledGather}, which shares the compiled
+	 *         criteria with this one
+	 */
+	public CompiledGather parallel() {
+		if(this.parallel) {
+			return this;
+		}
+
+		return new CompiledGather(this.predicate, true);
+	}
+
+	public boolean isParallel() {
+		return this.parallel;
+	}
+
+	/**
+	 * Check if the given object matches this query.
+	 *
+	 * @param item
+	 *            the object to test
+	 *
+	 * @return <code>true</code> if the object matches, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean matches(Object item) {
+		if(item == null) {
+			return false;
+		}
+
+		return this.predicate.test(item);
+	}
+
+	/**
+	 * Count the number of objects that match this query in the given
+	 * collection.
+	 *
+	 * @param collection
+	 *            the {@link Collection} to count items in
+	 *
+	 * @return the number of items that matched the criteria
+	 */
+	public <T> int count(Collection<T> collection) {
+		if(collection == null) {
+			return 0;
+		}
+
+		if(collection.isEmpty()) {
+			return 0;
+		}
+
+		return GatherExecutor.count(collection, this);
+	}
+
+	public <T> int count(Object[] array) {
+		if(array == null) {
+			return 0;
+		}
+
+		if(array.length == 0) {
+			return 0;
+		}
+
+		return GatherExecutor.count(array, this);
+	}
+
+	/**
+	 * Execute the query over the given collection of objects.
+	 *
+	 * @param collection
+	 *            the collection to run query against
+	 *
+	 * @return the results, if any, found after running the query
+	 */
+	public <T> List<T> find(Collection<T> collection) {
+		return GatherExecutor.getResults(collection, this, 0, 0);
+	}
+
+	public <T> List<T> find(Collection<T> collection, int numResults) {
+		return GatherExecutor.getResults(collection, this, numResults, 0);
+	}
+
+	public <T> List<T> find(Collection<T> collection, int numResults, int skipCount) {
+		return GatherExecutor.getResults(collection, this, numResults, skipCount);
+	}
+
+	public <T> T findOne(Collection<T> collection) {
+		return findOne(collection, 0);
+	}
+
+	public <T> T findOne(Collection<T> collection, int skipCount) {
+		List<T> results = GatherExecutor.getResults(collection, this, 1, skipCount);
+		if(results == null || results.isEmpty()) {
+			return null;
+		}
+
+		return results.get(0);
+	}
+
+	/**
+	 * Run the given aggregator over the given key on the objects of the
+	 * collection that match this query. Matching and aggregation happen in a
+	 * single pass, without collecting the matched objects. For example,
+	 * <code>Gather.where("age").greaterThan(50).compile().averageAsDouble(workers, "salary")</code>
+	 * gives the average salary of workers older than 50. A parallel query
+	 * aggregates large lists and arrays using many threads.
+	 *
+	 * @param collection
+	 *            the collection to aggregate over
+	 *
+	 * @param key
+	 *            the key to fire aggregation on
+	 *
+	 * @param aggregator
+	 *            the {@link GatherAggregator} to use
+	 *
+	 * @return the result of the {@link GatherAggregator}, <code>null</code> if
+	 *         the collection is <code>null</code> or empty
+	 */
+	public <T> Number aggregate(Collection<T> collection, String key, GatherAggregator aggregator) {
+		return GatherExecutor.aggregate(collection, this, key, aggregator);
+	}
+
+	public <T> Number aggregate(Object[] array, String key, GatherAggregator aggregator) {
+		if(array == null) {
+			return null;
+		}
+
+		return GatherExecutor.aggregate(Arrays.asList(array), this, key, aggregator);
+	}
+
+	/**
+	 * Start a {@link GatherAggregation} over the objects of the collection
+	 * that match this query. A parallel query aggregates large lists using
+	 * many threads.
+	 *
+	 * @param collection
+	 *            the collection to aggregate over
+	 *
+	 * @return the {@link GatherAggregation} to add aggregates to
+	 */
+	public <T> GatherAggregation aggregate(Collection<T> collection) {
+		return new GatherAggregation(collection, this);
+	}
+
+	/**
+	 * Start a {@link GatherGroupBy} over the objects of the collection that
+	 * match this query. A parallel query builds the groups of large lists
+	 * using many threads.
+	 *
+	 * @param collection
+	 *            the collection to group
+	 *
+	 * @param keys
+	 *            the keys to group by
+	 *
+	 * @return the {@link GatherGroupBy} to add aggregates to
+	 */
+	public <T> GatherGroupBy groupBy(Collection<T> collection, String... keys) {
+		return new GatherGroupBy(collection, keys, this);
+	}
+
+	public <T> Number count(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.CountingAggregator());
+	}
+
+	public <T> Number count(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.CountingAggregator());
+	}
+
+	public <T> Number sumAsLong(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.LongSumAggregator());
+	}
+
+	public <T> Number sumAsLong(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.LongSumAggregator());
+	}
+
+	public <T> Number sumAsDouble(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.DoubleSumAggregator());
+	}
+
+	public <T> Number sumAsDouble(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.DoubleSumAggregator());
+	}
+
+	public <T> Number minAsLong(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.LongMinAggregator());
+	}
+
+	public <T> Number minAsLong(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.LongMinAggregator());
+	}
+
+	public <T> Number minAsDouble(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.DoubleMinAggregator());
+	}
+
+	public <T> Number minAsDouble(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.DoubleMinAggregator());
+	}
+
+	public <T> Number maxAsLong(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.LongMaxAggregator());
+	}
+
+	public <T> Number maxAsLong(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.LongMaxAggregator());
+	}
+
+	public <T> Number maxAsDouble(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.DoubleMaxAggregator());
+	}
+
+	public <T> Number maxAsDouble(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.DoubleMaxAggregator());
+	}
+
+	public <T> Number averageAsLong(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.LongAverageAggregator());
+	}
+
+	public <T> Number averageAsLong(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.LongAverageAggregator());
+	}
+
+	public <T> Number averageAsDouble(Collection<T> collection, String key) {
+		return this.aggregate(collection, key, new GatherAggregator.DoubleAverageAggregator());
+	}
+
+	public <T> Number averageAsDouble(Object[] array, String key) {
+		return this.aggregate(array, key, new GatherAggregator.DoubleAverageAggregator());
+	}
+
+}
@@ -0,0 +1,39 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+/**
+ * A {@link GatherAggregator} that can consume <code>double</code> values
+ * directly. When the aggregated field is a numeric primitive that widens to
+ * <code>double</code>, the value is read and handed over without boxing it.
+ * Any other value is still passed to {@link #aggregate(int, Object)}.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public interface DoubleGatherAggregator extends GatherAggregator {
+
+	public void aggregateDouble(int index, double value);
+
+}
@@ -22,6 +22,7 @@
 package com.sangupta.gather;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -59,6 +60,17 @@ public class Gather {
 	 */
 	private boolean inverse = false;
 
+	/**
+	 * Is parallel execution asked for?
+	 */
+	private boolean parallel = false;
+
+	/**
+	 * The compiled form of the current criteria, reset every time a criteria is
+	 * added
+	 */
+	private CompiledGather compiled;
+
 	// ***************************************
 	// STATIC METHODS FOLLOW
 	// ***************************************
@@ -89,10 +101,98 @@ public class Gather {
 		return instance;
 	}
 
+	/**
+	 * Build a query that matches when any of the given queries match. This can
+	 * be used to group clauses, like
+	 * <code>Gather.where("active").is(true).and(Gather.anyOf(Gather.where("age").lessThan(20), Gather.where("age").greaterThan(60)))</code>
+	 *
+	 * @param queries
+	 *            the queries to be <code>OR</code>-ed
+	 *
+	 * @return a new {@link Gather} instance
+	 */
+	public static Gather anyOf(Gather... queries) {
+		return group(GatherSiblingJoin.OR, queries);
+	}
+
+	/**
+	 * Build a query that matches when all of the given queries match.
+	 *
+	 * @param queries
+	 *            the queries to be <code>AND</code>-ed
+	 *
+	 * @return a new {@link Gather} instance
+	 */
+	public static Gather allOf(Gather... queries) {
+		return group(GatherSiblingJoin.AND, queries);
+	}
+
+	private static Gather group(GatherSiblingJoin join, Gather[] queries) {
+		if(queries == null || queries.length == 0) {
+			throw new IllegalArgumentException("At least one query is needed to group");
+		}
+
+		Gather joined = new Gather(null);
+		for(Gather query : queries) {
+			joined.addGroup(query, join);
+		}
+
+		// wrap once more so that clauses chained later apply to the group as a whole
+		return new Gather(null).addGroup(joined, GatherSiblingJoin.AND);
+	}
+
 	// ***************************************
 	// AGGREGATION METHODS FOLLOW
 	// ***************************************
 
+	/**
+	 * Start a {@link GatherAggregation} over the collection, which computes
+	 * all the aggregates asked of it in a single pass. For example,
+	 * <code>Gather.aggregate(workers).sumAsLong("salary").maxAsLong("age").run()</code>
+	 *
+	 * @param collection
+	 *            the collection of objects
+	 *
+	 * @return the {@link GatherAggregation} to add aggregates to
+	 */
+	public static <T> GatherAggregation aggregate(Collection<T> collection) {
+		return new GatherAggregation(collection);
+	}
+
+	public static GatherAggregation aggregate(Object[] array) {
+		if(array == null) {
+			return new GatherAggregation(null);
+		}
+
+		return new GatherAggregation(Arrays.asList(array));
+	}
+
+	/**
+	 * Start a {@link GatherGroupBy} over the collection, which groups the
+	 * objects by the values of the given keys and computes aggregates per
+	 * group. For example,
+	 * <code>Gather.groupBy(workers, "name").averageAsDouble("salary").run()</code>
+	 *
+	 * @param collection
+	 *            the collection of objects
+	 *
+	 * @param keys
+	 *            the keys to group by
+	 *
+	 * @return the {@link GatherGroupBy} to add aggregates to
+	 */
+	public static <T> GatherGroupBy groupBy(Collection<T> collection, String... keys) {
+		return new GatherGroupBy(collection, keys, null);
+	}
+
+	public static GatherGroupBy groupBy(Object[] array, String... keys) {
+		if(array == null) {
+			return new GatherGroupBy(null, keys, null);
+		}
+
+		return new GatherGroupBy(Arrays.asList(array), keys, null);
+	}
+
 	public static <T> void aggregate(Collection<T> collection, String key, GatherAggregator aggregator) {
 		GatherExecutor.aggregate(collection, key, aggregator);
 	}
@@ -101,6 +201,37 @@ public class Gather {
 		GatherExecutor.aggregate(array, key, aggregator);
 	}
 
+	/**
+	 * Run the given aggregator on the collection over the given key, using
+	 * many threads for large {@link java.util.RandomAccess} lists. A
+	 * {@link GatherMergeableAggregator}, like all built-in aggregators, runs on
+	 * every slice of the list separately and the partial results are then
+	 * merged into it. Any other {@link GatherAggregator} is handed the values,
+	 * read using many threads, in encounter order from the calling thread.
+	 *
+	 * @param collection
+	 *            the collection of objects
+	 *
+	 * @param key
+	 *            the key to fire aggregation on
+	 *
+	 * @param aggregator
+	 *            the {@link GatherAggregator} to use
+	 *
+	 * @return the result of the {@link GatherAggregator}
+	 */
+	public static <T> Number aggregateParallel(Collection<T> collection, String key, GatherAggregator aggregator) {
+		return GatherExecutor.aggregateParallel(collection, key, aggregator);
+	}
+
+	public static <T> Number aggregateParallel(Object[] array, String key, GatherAggregator aggregator) {
+		if(array == null) {
+			return null;
+		}
+
+		return GatherExecutor.aggregateParallel(Arrays.asList(array), key, aggregator);
+	}
+
 	/**
 	 * Find unique values for the given key from collection of objects
 	 *
@@ -137,6 +268,88 @@ public class Gather {
 		return aggregator.set;
 	}
 
+	/**
+	 * Estimate the number of distinct values for the given key using a
+	 * HyperLogLog sketch. Memory stays fixed at 16KB however many distinct
+	 * values there are, and the estimate is usually within 1% of
+	 * <code>unique(collection, key).size()</code>.
+	 *
+	 * @param collection
+	 *            the collection of objects
+	 *
+	 * @param key
+	 *            the key being looked for
+	 *
+	 * @return the estimated number of distinct values
+	 */
+	public static <T> Number countDistinctApprox(Collection<T> collection, String key) {
+		return GatherExecutor.aggregate(collection, key, new GatherAggregator.HyperLogLogAggregator());
+	}
+
+	public static <T> Number countDistinctApprox(Object[] collection, String key) {
+		return GatherExecutor.aggregate(collection, key, new GatherAggregator.HyperLogLogAggregator());
+	}
+
+	/**
+	 * Estimate the number of distinct values for the given key using a
+	 * HyperLogLog sketch of the given precision, between 4 and 18. A sketch
+	 * of precision <code>p</code> uses <code>2^p</code> bytes, and has a
+	 * standard error of <code>1.04 / sqrt(2^p)</code>.
+	 *
+	 * @param collection
+	 *            the collection of objects
+	 *
+	 * @param key
+	 *            the key being looked for
+	 *
+	 * @param precision
+	 *            the precision of the sketch
+	 *
+	 * @return the estimated number of distinct values
+	 */
+	public static <T> Number countDistinctApprox(Collection<T> collection, String key, int precision) {
+		return GatherExecutor.aggregate(collection, key, new GatherAggregator.HyperLogLogAggregator(precision));
+	}
+
+	public static <T> Number countDistinctApprox(Object[] collection, String key, int precision) {
+		return GatherExecutor.aggregate(collection, key, new GatherAggregator.HyperLogLogAggregator(precision));
+	}
+
+	/**
+	 * Find the value of the key at the given quantile, like 0.99 for the 99th
+	 * percentile. Collections of up to 64K objects are handled exactly, using
+	 * {@link GatherAggregator.ExactPercentileAggregator}; larger ones are
+	 * estimated in bounded memory using
+	 * {@link GatherAggregator.KllPercentileAggregator}.
+	 *
+	 * @param collection
+	 *            the collection of objects
+	 *
+	 * @param key
+	 *            the key being looked for
+	 *
+	 * @param quantile
+	 *            the quantile to find, between 0 and 1
+	 *
+	 * @return the value at the quantile, <code>null</code> if no object had
+	 *         the key
+	 */
+	public static <T> Number percentile(Collection<T> collection, String key, double quantile) {
+		return GatherExecutor.aggregate(collection, key, percentileAggregator(collection == null ? 0 : collection.size(), quantile));
+	}
+
+	public static <T> Number percentile(Object[] collection, String key, double quantile) {
+		return GatherExecutor.aggregate(collection, key, percentileAggregator(collection == null ? 0 : collection.length, quantile));
+	}
+
+	private static GatherAggregator percentileAggregator(int size, double quantile) {
+		if(size <= GatherAggregator.ExactPercentileAggregator.EXACT_LIMIT) {
+			return new GatherAggregator.ExactPercentileAggregator(quantile);
+		}
+
+		return new GatherAggregator.KllPercentileAggregator(quantile);
+	}
+
 	public static <T> Number count(Collection<T> collection, String key) {
 		return GatherExecutor.aggregate(collection, key, new GatherAggregator.CountingAggregator());
 	}
@@ -228,6 +441,56 @@ public class Gather {
 		return this;
 	}
 
+	/**
+	 * <code>AND</code> the given query as a grouped sub-expression with this
+	 * query. The clauses of the given query are copied, so changing it later
+	 * does not affect this query.
+	 *
+	 * @param group
+	 *            the {@link Gather} query to group
+	 *
+	 * @return this {@link Gather} instance
+	 */
+	public Gather and(Gather group) {
+		if(this.key != null) {
+			throw new IllegalArgumentException("Add a comparison condition to previous key first");
+		}
+
+		return this.addGroup(group, GatherSiblingJoin.AND);
+	}
+
+	/**
+	 * <code>OR</code> the given query as a grouped sub-expression with this
+	 * query. The clauses of the given query are copied, so changing it later
+	 * does not affect this query.
+	 *
+	 * @param group
+	 *            the {@link Gather} query to group
+	 *
+	 * @return this {@link Gather} instance
+	 */
+	public Gather or(Gather group) {
+		if(this.key != null) {
+			throw new IllegalArgumentException("Add a comparison condition to previous key first");
+		}
+
+		return this.addGroup(group, GatherSiblingJoin.OR);
+	}
+
+	/**
+	 * Scan large {@link java.util.RandomAccess} lists and arrays using many
+	 * threads when this query is fired. Results are still returned in
+	 * encounter order, respecting the number of results and skip count asked
+	 * for.
+	 *
+	 * @return this {@link Gather} instance
+	 */
+	public Gather parallel() {
+		this.parallel = true;
+		this.compiled = null;
+		return this;
+	}
+
 	public Gather not() {
 		if(this.key == null) {
 			throw new IllegalArgumentException("Define a key first");
@@ -455,7 +718,7 @@ public class Gather {
 
 	/**
 	 * Count the number of objects that match the given criteria in the given
-	 * collection.
+	 * collection. The indexes of a {@link GatherCollection} are used.
 	 *
 	 * @param collection
 	 *            the {@link Collection} to count items in
@@ -467,11 +730,15 @@ public class Gather {
 			return 0;
 		}
 
+		if(collection instanceof GatherCollection) {
+			return ((GatherCollection<T>) collection).count(this);
+		}
+
 		if(collection.isEmpty()) {
 			return 0;
 		}
 
-		return GatherExecutor.count(collection, this);
+		return GatherExecutor.count(collection, this.compile());
 	}
 
 	public <T> int count(Object[] array) {
@@ -483,11 +750,12 @@ public class Gather {
 			return 0;
 		}
 
-		return GatherExecutor.count(array, this);
+		return GatherExecutor.count(array, this.compile());
 	}
 
 	/**
-	 * Execute the query over the given collection of objects.
+	 * Execute the query over the given collection of objects. The indexes of
+	 * a {@link GatherCollection} are used.
 	 *
 	 * @param collection
 	 *            the collection to run {@link Gather} query against
@@ -495,15 +763,19 @@ public class Gather {
 	 * @return the results, if any, found after running the query
 	 */
 	public <T> List<T> find(Collection<T> collection) {
-		return GatherExecutor.getResults(collection, this, 0, 0);
+		return this.find(collection, 0, 0);
 	}
 
 	public <T> List<T> find(Collection<T> collection, int numResults) {
-		return GatherExecutor.getResults(collection, this, numResults, 0);
+		return this.find(collection, numResults, 0);
 	}
 
 	public <T> List<T> find(Collection<T> collection, int numResults, int skipCount) {
-		return GatherExecutor.getResults(collection, this, numResults, skipCount);
+		if(collection instanceof GatherCollection) {
+			return ((GatherCollection<T>) collection).find(this, numResults, skipCount);
+		}
+
+		return GatherExecutor.getResults(collection, this.compile(), numResults, skipCount);
 	}
 
 	public <T> T findOne(Collection<T> collection) {
@@ -511,7 +783,7 @@ public class Gather {
 	}
 
 	public <T> T findOne(Collection<T> collection, int skipCount) {
-		List<T> results = GatherExecutor.getResults(collection, this, 1, skipCount);
+		List<T> results = this.find(collection, 1, skipCount);
 		if(results == null || results.isEmpty()) {
 			return null;
 		}
@@ -519,13 +791,54 @@ public class Gather {
 		return results.get(0);
 	}
 
+	/**
+	 * Compile this query into an immutable, thread-safe {@link CompiledGather}.
+	 * Compiling is worth it when the same query is fired again and again, as the
+	 * compiled form can be kept in a static field and shared between threads.
+	 * Adding more clauses to this query later does not affect the already
+	 * compiled instance.
+	 *
+	 * @return the {@link CompiledGather} for this query
+	 */
+	public CompiledGather compile() {
+		CompiledGather current = this.compiled;
+		if(current != null) {
+			return current;
+		}
+
+		current = CompiledGather.compile(this);
+		if(this.parallel) {
+			current = current.parallel();
+		}
+
+		this.compiled = current;
+		return current;
+	}
+
 	// ***************************************
 	// INTERNAL INSTANCE METHODS FOLLOW
 	// ***************************************
 
+	Gather addGroup(Gather group, GatherSiblingJoin join) {
+		if(group == null) {
+			throw new IllegalArgumentException("Query to group cannot be null");
+		}
+
+		if(group.key != null) {
+			throw new IllegalArgumentException("Add a comparison condition to the key of the grouped query first");
+		}
+
+		Gather copy = new Gather(null);
+		copy.criteria.addAll(group.criteria);
+
+		this.criteria.add(new GatherCriteria(null, GatherOperation.SubQuery, copy, join, false));
+		return fluent();
+	}
+
 	Gather fluent() {
 		this.key = null;
 		this.inverse = false;
+		this.compiled = null;
 		return this;
 	}
 
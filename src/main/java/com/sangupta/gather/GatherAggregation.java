@@ -0,0 +1,501 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.sangupta.gather.GatherReflect.FieldAccessor;
+import com.sangupta.gather.GatherReflect.HandleAccessor;
+
+/**
+ * Computes many aggregates over a collection in a single pass, instead of
+ * walking the collection once per aggregate. Every key is read only once per
+ * item, and the value is then handed to all aggregates requested over that
+ * key. For example,
+ * <code>Gather.aggregate(workers).count("salary").sumAsLong("salary").maxAsLong("age").run()</code>
+ *
+ * The results are the same as the ones returned by the matching static
+ * methods of {@link Gather}, like {@link Gather#sumAsLong(Collection, String)}.
+ * An aggregation started from {@link CompiledGather#aggregate(Collection)}
+ * only aggregates the items matching the query, and when the query is
+ * parallel, aggregates large lists using many threads.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public final class GatherAggregation {
+
+	/**
+	 * The collection to aggregate over
+	 */
+	private final Collection<?> collection;
+
+	/**
+	 * The query items must match to be aggregated, <code>null</code> if all
+	 * items are
+	 */
+	private final CompiledGather filter;
+
+	/**
+	 * The aggregates requested, per key, in the order they were asked for
+	 */
+	private final Map<String, Set<Aggregate>> requested = new LinkedHashMap<>();
+
+	GatherAggregation(Collection<?> collection) {
+		this(collection, null);
+	}
+
+	GatherAggregation(Collection<?> collection, CompiledGather filter) {
+		this.collection = collection;
+		this.filter = filter;
+	}
+
+	public GatherAggregation count(String key) {
+		return this.add(key, Aggregate.COUNT);
+	}
+
+	public GatherAggregation sumAsLong(String key) {
+		return this.add(key, Aggregate.SUM_AS_LONG);
+	}
+
+	public GatherAggregation sumAsDouble(String key) {
+		return this.add(key, Aggregate.SUM_AS_DOUBLE);
+	}
+
+	public GatherAggregation minAsLong(String key) {
+		return this.add(key, Aggregate.MIN_AS_LONG);
+	}
+
+	public GatherAggregation minAsDouble(String key) {
+		return this.add(key, Aggregate.MIN_AS_DOUBLE);
+	}
+
+	public GatherAggregation maxAsLong(String key) {
+		return this.add(key, Aggregate.MAX_AS_LONG);
+	}
+
+	public GatherAggregation maxAsDouble(String key) {
+		return this.add(key, Aggregate.MAX_AS_DOUBLE);
+	}
+
+	public GatherAggregation averageAsLong(String key) {
+		return this.add(key, Aggregate.AVERAGE_AS_LONG);
+	}
+
+	public GatherAggregation averageAsDouble(String key) {
+		return this.add(key, Aggregate.AVERAGE_AS_DOUBLE);
+	}
+
+	private GatherAggregation add(String key, Aggregate aggregate) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		Set<Aggregate> aggregates = this.requested.get(key);
+		if(aggregates == null) {
+			aggregates = EnumSet.noneOf(Aggregate.class);
+			this.requested.put(key, aggregates);
+		}
+
+		aggregates.add(aggregate);
+		return this;
+	}
+
+	/**
+	 * Walk the collection once and compute all the requested aggregates. The
+	 * aggregation may be run again, say after the collection changed.
+	 *
+	 * @return the {@link Result} holding every requested aggregate
+	 */
+	public Result run() {
+		List<KeyAggregation> keys = new ArrayList<>();
+		for(Map.Entry<String, Set<Aggregate>> entry : this.requested.entrySet()) {
+			keys.add(new KeyAggregation(entry.getKey(), entry.getValue()));
+		}
+
+		Map<String, Number> results = new HashMap<>();
+		if(this.collection == null || this.collection.isEmpty()) {
+			// same as the single aggregate methods
+			for(KeyAggregation key : keys) {
+				for(Aggregate aggregate : key.aggregates) {
+					results.put(Result.name(aggregate, key.key), null);
+				}
+			}
+
+			return new Result(results);
+		}
+
+		KeyAggregation[] pass = keys.toArray(new KeyAggregation[keys.size()]);
+		if(this.filter != null && this.filter.parallel && GatherParallelExecutor.supports(this.collection)) {
+			GatherParallelExecutor.aggregate((List<?>) this.collection, this.filter, pass);
+			for(KeyAggregation key : pass) {
+				key.collect(results);
+			}
+
+			return new Result(results);
+		}
+
+		for(Object item : this.collection) {
+			if(item == null) {
+				continue;
+			}
+
+			if(this.filter != null && !this.filter.matches(item)) {
+				continue;
+			}
+
+			for(KeyAggregation key : pass) {
+				key.aggregate(item);
+			}
+		}
+
+		for(KeyAggregation key : pass) {
+			key.collect(results);
+		}
+
+		return new Result(results);
+	}
+
+	/**
+	 * The results of a {@link GatherAggregation}. Each aggregate is read back
+	 * using the method of the same name it was requested with.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	public static final class Result {
+
+		private final Map<String, Number> results;
+
+		Result(Map<String, Number> results) {
+			this.results = results;
+		}
+
+		public Number count(String key) {
+			return this.get(Aggregate.COUNT, key);
+		}
+
+		public Number sumAsLong(String key) {
+			return this.get(Aggregate.SUM_AS_LONG, key);
+		}
+
+		public Number sumAsDouble(String key) {
+			return this.get(Aggregate.SUM_AS_DOUBLE, key);
+		}
+
+		public Number minAsLong(String key) {
+			return this.get(Aggregate.MIN_AS_LONG, key);
+		}
+
+		public Number minAsDouble(String key) {
+			return this.get(Aggregate.MIN_AS_DOUBLE, key);
+		}
+
+		public Number maxAsLong(String key) {
+			return this.get(Aggregate.MAX_AS_LONG, key);
+		}
+
+		public Number maxAsDouble(String key) {
+			return this.get(Aggregate.MAX_AS_DOUBLE, key);
+		}
+
+		public Number averageAsLong(String key) {
+			return this.get(Aggregate.AVERAGE_AS_LONG, key);
+		}
+
+		public Number averageAsDouble(String key) {
+			return this.get(Aggregate.AVERAGE_AS_DOUBLE, key);
+		}
+
+		private Number get(Aggregate aggregate, String key) {
+			String name = name(aggregate, key);
+			if(!this.results.containsKey(name)) {
+				throw new IllegalArgumentException("Aggregate was not requested: " + name);
+			}
+
+			return this.results.get(name);
+		}
+
+		static String name(Aggregate aggregate, String key) {
+			return aggregate.name() + "(" + key + ")";
+		}
+
+	}
+
+	/**
+	 * The built-in aggregates that may be requested
+	 */
+	enum Aggregate {
+
+		COUNT {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.CountingAggregator();
+			}
+		},
+
+		SUM_AS_LONG {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.LongSumAggregator();
+			}
+		},
+
+		SUM_AS_DOUBLE {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.DoubleSumAggregator();
+			}
+		},
+
+		MIN_AS_LONG {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.LongMinAggregator();
+			}
+		},
+
+		MIN_AS_DOUBLE {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.DoubleMinAggregator();
+			}
+		},
+
+		MAX_AS_LONG {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.LongMaxAggregator();
+			}
+		},
+
+		MAX_AS_DOUBLE {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.DoubleMaxAggregator();
+			}
+		},
+
+		AVERAGE_AS_LONG {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.LongAverageAggregator();
+			}
+		},
+
+		AVERAGE_AS_DOUBLE {
+			@Override
+			GatherMergeableAggregator newAggregator() {
+				return new GatherAggregator.DoubleAverageAggregator();
+			}
+		};
+
+		abstract GatherMergeableAggregator newAggregator();
+
+	}
+
+	/**
+	 * All aggregates over a single key. The value of the key is read once per
+	 * item - without boxing when the field is a numeric primitive and all the
+	 * aggregates can take primitives - and handed to every aggregate.
+	 */
+	static final class KeyAggregation {
+
+		final String key;
+
+		final Set<Aggregate> aggregates;
+
+		final GatherMergeableAggregator[] aggregators;
+
+		/**
+		 * The aggregators split by the primitive they take, <code>null</code>
+		 * if any aggregator only takes boxed values
+		 */
+		final LongGatherAggregator[] longAggregators;
+
+		final DoubleGatherAggregator[] doubleAggregators;
+
+		/**
+		 * Number of items that had the key
+		 */
+		int found;
+
+		/**
+		 * The class of the last item seen, and the accessor resolved for it, as
+		 * collections are mostly made of a single class
+		 */
+		private Class<?> lastClass;
+
+		private FieldAccessor accessor;
+
+		private HandleAccessor primitive;
+
+		KeyAggregation(String key, Set<Aggregate> aggregates) {
+			this(key, aggregates, newAggregators(aggregates));
+		}
+
+		private KeyAggregation(String key, Set<Aggregate> aggregates, GatherMergeableAggregator[] aggregators) {
+			this.key = key;
+			this.aggregates = aggregates;
+			this.aggregators = aggregators;
+
+			List<LongGatherAggregator> longs = new ArrayList<>();
+			List<DoubleGatherAggregator> doubles = new ArrayList<>();
+
+			for(GatherAggregator aggregator : aggregators) {
+				if(aggregator instanceof LongGatherAggregator) {
+					longs.add((LongGatherAggregator) aggregator);
+				} else if(aggregator instanceof DoubleGatherAggregator) {
+					doubles.add((DoubleGatherAggregator) aggregator);
+				}
+			}
+
+			if(longs.size() + doubles.size() == this.aggregators.length) {
+				this.longAggregators = longs.toArray(new LongGatherAggregator[longs.size()]);
+				this.doubleAggregators = doubles.toArray(new DoubleGatherAggregator[doubles.size()]);
+			} else {
+				this.longAggregators = null;
+				this.doubleAggregators = null;
+			}
+		}
+
+		void aggregate(Object item) {
+			Class<?> clazz = item.getClass();
+			if(clazz != this.lastClass) {
+				this.lastClass = clazz;
+				this.accessor = GatherReflect.getAccessorForClass(clazz, this.key);
+				this.primitive = null;
+
+				// char is left alone as its boxed form is not a Number
+				if(this.longAggregators != null && this.accessor instanceof HandleAccessor && this.accessor.type != char.class) {
+					HandleAccessor handle = (HandleAccessor) this.accessor;
+					if(handle.readsLong() || handle.readsDouble()) {
+						this.primitive = handle;
+					}
+				}
+			}
+
+			if(this.accessor == null) {
+				return;
+			}
+
+			if(this.primitive != null) {
+				this.found++;
+
+				if(this.primitive.readsLong()) {
+					long value = this.primitive.getLong(item);
+					for(LongGatherAggregator aggregator : this.longAggregators) {
+						aggregator.aggregateLong(this.found, value);
+					}
+
+					for(DoubleGatherAggregator aggregator : this.doubleAggregators) {
+						aggregator.aggregateDouble(this.found, value);
+					}
+
+					return;
+				}
+
+				// a boxed float or double gives the same long when narrowed
+				double value = this.primitive.getDouble(item);
+				for(LongGatherAggregator aggregator : this.longAggregators) {
+					aggregator.aggregateLong(this.found, (long) value);
+				}
+
+				for(DoubleGatherAggregator aggregator : this.doubleAggregators) {
+					aggregator.aggregateDouble(this.found, value);
+				}
+
+				return;
+			}
+
+			Object value = this.accessor.get(item);
+			if(value == GatherReflect.NOT_FOUND) {
+				return;
+			}
+
+			this.found++;
+			for(GatherAggregator aggregator : this.aggregators) {
+				aggregator.aggregate(this.found, value);
+			}
+		}
+
+		private static GatherMergeableAggregator[] newAggregators(Set<Aggregate> aggregates) {
+			GatherMergeableAggregator[] aggregators = new GatherMergeableAggregator[aggregates.size()];
+
+			int index = 0;
+			for(Aggregate aggregate : aggregates) {
+				aggregators[index++] = aggregate.newAggregator();
+			}
+
+			return aggregators;
+		}
+
+		/**
+		 * Create an empty aggregation of the same aggregates, to aggregate a
+		 * slice of the collection and then be merged into this one.
+		 *
+		 * @return the partial {@link KeyAggregation}
+		 */
+		KeyAggregation newPartial() {
+			GatherMergeableAggregator[] partials = new GatherMergeableAggregator[this.aggregators.length];
+			for(int index = 0; index < partials.length; index++) {
+				partials[index] = this.aggregators[index].newPartial();
+			}
+
+			return new KeyAggregation(this.key, this.aggregates, partials);
+		}
+
+		/**
+		 * Merge a partial aggregation of the items that follow the ones
+		 * aggregated so far.
+		 *
+		 * @param partial
+		 *            the {@link KeyAggregation} created by {@link #newPartial()}
+		 */
+		void merge(KeyAggregation partial) {
+			for(int index = 0; index < this.aggregators.length; index++) {
+				this.aggregators[index].merge(partial.aggregators[index]);
+			}
+
+			this.found += partial.found;
+		}
+
+		void collect(Map<String, Number> results) {
+			int index = 0;
+			for(Aggregate aggregate : this.aggregates) {
+				results.put(Result.name(aggregate, this.key), this.aggregators[index++].getResult(this.found));
+			}
+		}
+
+	}
+
+}
@@ -21,6 +21,8 @@
 
 package com.sangupta.gather;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -40,7 +42,7 @@ public interface GatherAggregator {
 	// DEFAULT IMPLEMENTATIONS FOLLOW
 	// ***************************************
 
-	static class UniqueAggregator implements GatherAggregator {
+	static class UniqueAggregator implements GatherMergeableAggregator {
 
 		final Set<Object> set = new HashSet<>();
 
@@ -62,9 +64,18 @@ public interface GatherAggregator {
 			return this.set;
 		}
 
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new UniqueAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			this.set.addAll(((UniqueAggregator) other).set);
+		}
 	}
 
-	static class CountingAggregator implements GatherAggregator {
+	static class CountingAggregator implements GatherMergeableAggregator, LongGatherAggregator {
 
 		int count = 0;
 
@@ -73,28 +84,44 @@ public interface GatherAggregator {
 			count++;
 		}
 
+		@Override
+		public void aggregateLong(int index, long value) {
+			count++;
+		}
+
 		@Override
 		public Number getResult(int counted) {
 			return this.count;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new CountingAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			this.count += ((CountingAggregator) other).count;
+		}
 	}
 
-	static class DoubleMinAggregator implements GatherAggregator {
+	static class DoubleMinAggregator implements GatherMergeableAggregator, DoubleGatherAggregator {
 
 		double result = Double.MAX_VALUE;
 
 		@Override
 		public void aggregate(int index, Object value) {
-			double fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).doubleValue();
+				aggregateDouble(index, ((Number) value).doubleValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			if(result > fieldValue) {
-				result = fieldValue;
+		@Override
+		public void aggregateDouble(int index, double value) {
+			if(result > value) {
+				result = value;
 			}
 		}
 
@@ -102,32 +129,56 @@ public interface GatherAggregator {
 		public Number getResult(int counted) {
 			return this.result;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new DoubleMinAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			double otherResult = ((DoubleMinAggregator) other).result;
+			if(result > otherResult) {
+				result = otherResult;
+			}
+		}
 	}
 
-	static class DoubleSumAggregator implements GatherAggregator {
+	static class DoubleSumAggregator implements GatherMergeableAggregator, DoubleGatherAggregator {
 
 		double result = 0;
 
 		@Override
 		public void aggregate(int index, Object value) {
-			double fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).doubleValue();
+				aggregateDouble(index, ((Number) value).doubleValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			result += fieldValue;
+		@Override
+		public void aggregateDouble(int index, double value) {
+			result += value;
 		}
 
 		@Override
 		public Number getResult(int counted) {
 			return this.result;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new DoubleSumAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			result += ((DoubleSumAggregator) other).result;
+		}
 	}
 
-	static class DoubleAverageAggregator implements GatherAggregator {
+	static class DoubleAverageAggregator implements GatherMergeableAggregator, DoubleGatherAggregator {
 
 		double result = 0;
 
@@ -135,15 +186,16 @@ public interface GatherAggregator {
 
 		@Override
 		public void aggregate(int index, Object value) {
-			double fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).doubleValue();
+				aggregateDouble(index, ((Number) value).doubleValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			result += fieldValue;
+		@Override
+		public void aggregateDouble(int index, double value) {
+			result += value;
 			count++;
 		}
 
@@ -155,24 +207,37 @@ public interface GatherAggregator {
 
 			return (double) this.result / (double) this.count;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new DoubleAverageAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			DoubleAverageAggregator partial = (DoubleAverageAggregator) other;
+			result += partial.result;
+			count += partial.count;
+		}
 	}
 
-	static class DoubleMaxAggregator implements GatherAggregator {
+	static class DoubleMaxAggregator implements GatherMergeableAggregator, DoubleGatherAggregator {
 
 		double result = Double.MIN_VALUE;
 
 		@Override
 		public void aggregate(int index, Object value) {
-			double fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).doubleValue();
+				aggregateDouble(index, ((Number) value).doubleValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			if(result < fieldValue) {
-				result = fieldValue;
+		@Override
+		public void aggregateDouble(int index, double value) {
+			if(result < value) {
+				result = value;
 			}
 		}
 
@@ -180,24 +245,38 @@ public interface GatherAggregator {
 		public Number getResult(int counted) {
 			return this.result;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new DoubleMaxAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			double otherResult = ((DoubleMaxAggregator) other).result;
+			if(result < otherResult) {
+				result = otherResult;
+			}
+		}
 	}
 
-	static class LongMinAggregator implements GatherAggregator {
+	static class LongMinAggregator implements GatherMergeableAggregator, LongGatherAggregator {
 
 		long result = Long.MAX_VALUE;
 
 		@Override
 		public void aggregate(int index, Object value) {
-			long fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).longValue();
+				aggregateLong(index, ((Number) value).longValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			if(result > fieldValue) {
-				result = fieldValue;
+		@Override
+		public void aggregateLong(int index, long value) {
+			if(result > value) {
+				result = value;
 			}
 		}
 
@@ -205,24 +284,38 @@ public interface GatherAggregator {
 		public Number getResult(int counted) {
 			return this.result;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new LongMinAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			long otherResult = ((LongMinAggregator) other).result;
+			if(result > otherResult) {
+				result = otherResult;
+			}
+		}
 	}
 
-	static class LongMaxAggregator implements GatherAggregator {
+	static class LongMaxAggregator implements GatherMergeableAggregator, LongGatherAggregator {
 
 		long result = Long.MIN_VALUE;
 
 		@Override
 		public void aggregate(int index, Object value) {
-			long fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).longValue();
+				aggregateLong(index, ((Number) value).longValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			if(result < fieldValue) {
-				result = fieldValue;
+		@Override
+		public void aggregateLong(int index, long value) {
+			if(result < value) {
+				result = value;
 			}
 		}
 
@@ -230,32 +323,56 @@ public interface GatherAggregator {
 		public Number getResult(int counted) {
 			return this.result;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new LongMaxAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			long otherResult = ((LongMaxAggregator) other).result;
+			if(result < otherResult) {
+				result = otherResult;
+			}
+		}
 	}
 
-	static class LongSumAggregator implements GatherAggregator {
+	static class LongSumAggregator implements GatherMergeableAggregator, LongGatherAggregator {
 
 		long result = 0;
 
 		@Override
 		public void aggregate(int index, Object value) {
-			long fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).longValue();
+				aggregateLong(index, ((Number) value).longValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			result += fieldValue;
+		@Override
+		public void aggregateLong(int index, long value) {
+			result += value;
 		}
 
 		@Override
 		public Number getResult(int counted) {
 			return this.result;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new LongSumAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			result += ((LongSumAggregator) other).result;
+		}
 	}
 
-	static class LongAverageAggregator implements GatherAggregator {
+	static class LongAverageAggregator implements GatherMergeableAggregator, LongGatherAggregator {
 
 		long result = 0;
 
@@ -263,15 +380,16 @@ public interface GatherAggregator {
 
 		@Override
 		public void aggregate(int index, Object value) {
-			long fieldValue;
-
 			if(value instanceof Number) {
-				fieldValue = ((Number) value).longValue();
+				aggregateLong(index, ((Number) value).longValue());
 			} else {
 				throw new IllegalArgumentException("Field type is not numeric");
 			}
+		}
 
-			result += fieldValue;
+		@Override
+		public void aggregateLong(int index, long value) {
+			result += value;
 			count++;
 		}
 
@@ -286,5 +404,567 @@ public interface GatherAggregator {
 
 			return this.result / this.count;
 		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new LongAverageAggregator();
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			LongAverageAggregator partial = (LongAverageAggregator) other;
+			result += partial.result;
+			count += partial.count;
+		}
+	}
+
+	/**
+	 * Estimates the number of distinct values using a HyperLogLog sketch.
+	 * Unlike {@link UniqueAggregator} the memory used does not grow with the
+	 * number of distinct values: a sketch of precision <code>p</code> keeps
+	 * <code>2^p</code> one-byte registers, and its estimate has a standard
+	 * error of about <code>1.04 / sqrt(2^p)</code>. The default precision of
+	 * 14 uses 16KB and is within about 0.8%.
+	 *
+	 * Values are hashed to 64 bits. Integral numbers hash by their value, so
+	 * that a primitive and a boxed field count alike. <code>null</code> values
+	 * are ignored, just as {@link UniqueAggregator} does.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	static class HyperLogLogAggregator implements GatherMergeableAggregator, LongGatherAggregator, DoubleGatherAggregator {
+
+		static final int MIN_PRECISION = 4;
+
+		static final int MAX_PRECISION = 18;
+
+		static final int DEFAULT_PRECISION = 14;
+
+		final int precision;
+
+		final byte[] registers;
+
+		public HyperLogLogAggregator() {
+			this(DEFAULT_PRECISION);
+		}
+
+		public HyperLogLogAggregator(int precision) {
+			if(precision < MIN_PRECISION || precision > MAX_PRECISION) {
+				throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+			}
+
+			this.precision = precision;
+			this.registers = new byte[1 << precision];
+		}
+
+		@Override
+		public void aggregate(int index, Object value) {
+			if(value == null) {
+				return;
+			}
+
+			if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				this.aggregateLong(index, ((Number) value).longValue());
+				return;
+			}
+
+			if(value instanceof Double || value instanceof Float) {
+				this.aggregateDouble(index, ((Number) value).doubleValue());
+				return;
+			}
+
+			if(value instanceof Character) {
+				this.aggregateLong(index, ((Character) value).charValue());
+				return;
+			}
+
+			if(value instanceof String) {
+				this.add(hash((String) value));
+				return;
+			}
+
+			this.add(mix(value.hashCode()));
+		}
+
+		@Override
+		public void aggregateLong(int index, long value) {
+			this.add(mix(value));
+		}
+
+		@Override
+		public void aggregateDouble(int index, double value) {
+			this.add(mix(Double.doubleToLongBits(value)));
+		}
+
+		private void add(long hash) {
+			// the top bits pick the register, the rest give the rank
+			int register = (int) (hash >>> (64 - this.precision));
+			int rank = Long.numberOfLeadingZeros((hash << this.precision) | (1l << (this.precision - 1))) + 1;
+
+			if(this.registers[register] < rank) {
+				this.registers[register] = (byte) rank;
+			}
+		}
+
+		/**
+		 * @param counted the parameter value is not used and ignored
+		 */
+		@Override
+		public Number getResult(int counted) {
+			return this.estimate();
+		}
+
+		/**
+		 * @return the estimated number of distinct values seen
+		 */
+		public long estimate() {
+			final int m = this.registers.length;
+
+			double sum = 0;
+			int zeros = 0;
+			for(byte register : this.registers) {
+				sum += Math.scalb(1d, -register);
+				if(register == 0) {
+					zeros++;
+				}
+			}
+
+			double alpha;
+			switch(m) {
+				case 16:
+					alpha = 0.673;
+					break;
+
+				case 32:
+					alpha = 0.697;
+					break;
+
+				case 64:
+					alpha = 0.709;
+					break;
+
+				default:
+					alpha = 0.7213 / (1 + 1.079 / m);
+					break;
+			}
+
+			double estimate = alpha * m * m / sum;
+
+			// linear counting is more accurate for small cardinalities
+			if(estimate <= 2.5 * m && zeros > 0) {
+				estimate = m * Math.log((double) m / zeros);
+			}
+
+			return Math.round(estimate);
+		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new HyperLogLogAggregator(this.precision);
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			HyperLogLogAggregator partial = (HyperLogLogAggregator) other;
+			if(partial.precision != this.precision) {
+				throw new IllegalArgumentException("Cannot merge sketches of different precision");
+			}
+
+			for(int index = 0; index < this.registers.length; index++) {
+				if(this.registers[index] < partial.registers[index]) {
+					this.registers[index] = partial.registers[index];
+				}
+			}
+		}
+
+		/**
+		 * 64-bit FNV-1a over the characters, finished with {@link #mix(long)}
+		 */
+		static long hash(String value) {
+			long hash = 0xcbf29ce484222325l;
+			for(int index = 0; index < value.length(); index++) {
+				hash ^= value.charAt(index);
+				hash *= 0x100000001b3l;
+			}
+
+			return mix(hash);
+		}
+
+		/**
+		 * The finalizer of MurmurHash3, which spreads every input bit over the
+		 * whole value
+		 */
+		static long mix(long value) {
+			value ^= value >>> 33;
+			value *= 0xff51afd7ed558ccdl;
+			value ^= value >>> 33;
+			value *= 0xc4ceb9fe1a85ec53l;
+			value ^= value >>> 33;
+			return value;
+		}
+	}
+
+	/**
+	 * Finds the value at a given quantile exactly, by keeping every value in a
+	 * primitive array that is sorted when the result is asked for. Memory
+	 * grows with the number of values, so this is meant for small inputs; use
+	 * {@link KllPercentileAggregator} for large ones.
+	 *
+	 * The value returned for a quantile <code>q</code> is the smallest value
+	 * such that at least <code>q</code> of all values are less than or equal
+	 * to it, and <code>null</code> if no value was aggregated.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	static class ExactPercentileAggregator implements GatherMergeableAggregator, DoubleGatherAggregator {
+
+		/**
+		 * Collections up to this size are handled exactly by
+		 * {@link Gather#percentile(java.util.Collection, String, double)}
+		 */
+		static final int EXACT_LIMIT = 64 * 1024;
+
+		final double quantile;
+
+		double[] values = new double[16];
+
+		int count;
+
+		private boolean sorted;
+
+		public ExactPercentileAggregator(double quantile) {
+			this.quantile = checkQuantile(quantile);
+		}
+
+		@Override
+		public void aggregate(int index, Object value) {
+			if(value instanceof Number) {
+				aggregateDouble(index, ((Number) value).doubleValue());
+			} else {
+				throw new IllegalArgumentException("Field type is not numeric");
+			}
+		}
+
+		@Override
+		public void aggregateDouble(int index, double value) {
+			if(this.count == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.count << 1);
+			}
+
+			this.values[this.count++] = value;
+			this.sorted = false;
+		}
+
+		@Override
+		public Number getResult(int counted) {
+			if(this.count == 0) {
+				return null;
+			}
+
+			return this.percentile(this.quantile);
+		}
+
+		/**
+		 * @return the value at the given quantile, between 0 and 1
+		 */
+		public double percentile(double quantile) {
+			checkQuantile(quantile);
+			if(this.count == 0) {
+				throw new IllegalStateException("No values were aggregated");
+			}
+
+			if(!this.sorted) {
+				Arrays.sort(this.values, 0, this.count);
+				this.sorted = true;
+			}
+
+			return this.values[rank(quantile, this.count)];
+		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new ExactPercentileAggregator(this.quantile);
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			ExactPercentileAggregator partial = (ExactPercentileAggregator) other;
+			if(this.count + partial.count > this.values.length) {
+				this.values = Arrays.copyOf(this.values, Math.max(this.count + partial.count, this.values.length << 1));
+			}
+
+			System.arraycopy(partial.values, 0, this.values, this.count, partial.count);
+			this.count += partial.count;
+			this.sorted = false;
+		}
+
+		/**
+		 * @return the zero-based index of the value at the quantile among
+		 *         <code>count</code> sorted values
+		 */
+		static int rank(double quantile, int count) {
+			int rank = (int) Math.ceil(quantile * count) - 1;
+			return Math.min(count - 1, Math.max(0, rank));
+		}
+
+		static double checkQuantile(double quantile) {
+			if(!(quantile >= 0 && quantile <= 1)) {
+				throw new IllegalArgumentException("Quantile must be between 0 and 1");
+			}
+
+			return quantile;
+		}
+	}
+
+	/**
+	 * Estimates the value at a given quantile using a KLL sketch, whose
+	 * memory stays bounded however many values are seen. Values are kept in a
+	 * stack of compactors: when a level fills up it is sorted and every other
+	 * value is promoted to the level above, where each value stands for twice
+	 * as many. With the default <code>k</code> of 200 the rank of the value
+	 * returned is usually within 1% of the asked quantile.
+	 *
+	 * Sketches are mergeable, so values may be split between threads or
+	 * partitions and the sketches merged afterwards.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	static class KllPercentileAggregator implements GatherMergeableAggregator, DoubleGatherAggregator {
+
+		static final int DEFAULT_K = 200;
+
+		/**
+		 * How much smaller each level is than the one above it
+		 */
+		private static final double SHRINK = 2d / 3d;
+
+		final double quantile;
+
+		final int k;
+
+		/**
+		 * The values held at each level, and how many there are; a value at
+		 * level <code>h</code> stands for <code>2^h</code> values
+		 */
+		double[][] levels = new double[0][];
+
+		int[] sizes = new int[0];
+
+		/**
+		 * Values held over all levels, and the most that may be held before a
+		 * level is compacted
+		 */
+		private int size;
+
+		private int maxSize;
+
+		/**
+		 * Number of values seen
+		 */
+		long count;
+
+		/**
+		 * State of the xorshift generator picking which half of a level is
+		 * promoted; seeded alike so that runs are repeatable
+		 */
+		private long random = 0x9E3779B97F4A7C15l;
+
+		public KllPercentileAggregator(double quantile) {
+			this(quantile, DEFAULT_K);
+		}
+
+		public KllPercentileAggregator(double quantile, int k) {
+			if(k < 8) {
+				throw new IllegalArgumentException("k must be at least 8");
+			}
+
+			this.quantile = ExactPercentileAggregator.checkQuantile(quantile);
+			this.k = k;
+			this.grow();
+		}
+
+		@Override
+		public void aggregate(int index, Object value) {
+			if(value instanceof Number) {
+				aggregateDouble(index, ((Number) value).doubleValue());
+			} else {
+				throw new IllegalArgumentException("Field type is not numeric");
+			}
+		}
+
+		@Override
+		public void aggregateDouble(int index, double value) {
+			this.append(0, value);
+			this.count++;
+
+			if(this.size >= this.maxSize) {
+				this.compress();
+			}
+		}
+
+		@Override
+		public Number getResult(int counted) {
+			if(this.count == 0) {
+				return null;
+			}
+
+			return this.percentile(this.quantile);
+		}
+
+		/**
+		 * @return the estimated value at the given quantile, between 0 and 1
+		 */
+		public double percentile(double quantile) {
+			ExactPercentileAggregator.checkQuantile(quantile);
+			if(this.count == 0) {
+				throw new IllegalStateException("No values were aggregated");
+			}
+
+			// pair every value with its weight and walk them in order
+			double[] values = new double[this.size];
+			long[] weights = new long[this.size];
+			Integer[] order = new Integer[this.size];
+
+			int index = 0;
+			long total = 0;
+			for(int level = 0; level < this.levels.length; level++) {
+				for(int item = 0; item < this.sizes[level]; item++) {
+					values[index] = this.levels[level][item];
+					weights[index] = 1l << level;
+					order[index] = index;
+					total += weights[index];
+					index++;
+				}
+			}
+
+			final double[] sortBy = values;
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer first, Integer second) {
+					return Double.compare(sortBy[first], sortBy[second]);
+				}
+
+			});
+
+			double target = Math.max(1, Math.ceil(quantile * total));
+			long cumulative = 0;
+			for(Integer position : order) {
+				cumulative += weights[position];
+				if(cumulative >= target) {
+					return values[position];
+				}
+			}
+
+			return values[order[order.length - 1]];
+		}
+
+		@Override
+		public GatherMergeableAggregator newPartial() {
+			return new KllPercentileAggregator(this.quantile, this.k);
+		}
+
+		@Override
+		public void merge(GatherMergeableAggregator other) {
+			KllPercentileAggregator partial = (KllPercentileAggregator) other;
+			if(partial.k != this.k) {
+				throw new IllegalArgumentException("Cannot merge sketches of different k");
+			}
+
+			while(this.levels.length < partial.levels.length) {
+				this.grow();
+			}
+
+			for(int level = 0; level < partial.levels.length; level++) {
+				for(int item = 0; item < partial.sizes[level]; item++) {
+					this.append(level, partial.levels[level][item]);
+				}
+			}
+
+			this.count += partial.count;
+			while(this.size >= this.maxSize) {
+				this.compress();
+			}
+		}
+
+		private void append(int level, double value) {
+			double[] values = this.levels[level];
+			if(this.sizes[level] == values.length) {
+				values = Arrays.copyOf(values, Math.max(4, values.length << 1));
+				this.levels[level] = values;
+			}
+
+			values[this.sizes[level]++] = value;
+			this.size++;
+		}
+
+		/**
+		 * Compact the lowest level that is over its capacity, promoting half
+		 * of its values to the level above
+		 */
+		private void compress() {
+			for(int level = 0; level < this.levels.length; level++) {
+				if(this.sizes[level] < this.capacity(level)) {
+					continue;
+				}
+
+				if(level + 1 == this.levels.length) {
+					this.grow();
+				}
+
+				double[] values = this.levels[level];
+				int count = this.sizes[level];
+				Arrays.sort(values, 0, count);
+
+				// promote one value of every pair, the odd value out stays behind
+				this.random ^= this.random << 13;
+				this.random ^= this.random >>> 7;
+				this.random ^= this.random << 17;
+				final int offset = (int) (this.random & 1);
+
+				final int pairs = count >>> 1;
+				for(int pair = 0; pair < pairs; pair++) {
+					this.append(level + 1, values[(pair << 1) + offset]);
+				}
+
+				this.size -= pairs << 1;
+				if((count & 1) == 1) {
+					values[0] = values[count - 1];
+					this.sizes[level] = 1;
+				} else {
+					this.sizes[level] = 0;
+				}
+
+				return;
+			}
+		}
+
+		private void grow() {
+			int height = this.levels.length + 1;
+			this.levels = Arrays.copyOf(this.levels, height);
+			this.sizes = Arrays.copyOf(this.sizes, height);
+			this.levels[height - 1] = new double[0];
+
+			int maxSize = 0;
+			for(int level = 0; level < height; level++) {
+				maxSize += this.capacity(level);
+			}
+
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * Lower levels are kept smaller, the top level holds about k values
+		 */
+		private int capacity(int level) {
+			int depth = this.levels.length - level - 1;
+			return (int) Math.ceil(Math.pow(SHRINK, depth) * this.k) + 1;
+		}
 	}
 }
@@ -0,0 +1,631 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.Arrays;
+
+/**
+ * A compressed bitmap of item positions, laid out like a Roaring bitmap: the
+ * positions are split by their high 16 bits into chunks, and each chunk is
+ * kept either as a sorted array of the low 16 bits, when it holds at most
+ * {@link #ARRAY_LIMIT} positions, or as a plain bitmap of 1024 words. Sparse
+ * and dense sets both stay small, and <code>AND</code>, <code>OR</code> and
+ * <code>ANDNOT</code> work a chunk at a time.
+ *
+ * The result of an operation may share chunks with its operands, so a
+ * bitmap is changed only while no operation over it is running.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherBitmap {
+
+	/**
+	 * The most positions a chunk keeps as a sorted array
+	 */
+	static final int ARRAY_LIMIT = 4096;
+
+	/**
+	 * Number of words in a chunk kept as a bitmap
+	 */
+	private static final int WORDS = 1024;
+
+	/**
+	 * The high 16 bits of the positions of each chunk, ascending
+	 */
+	private char[] keys = new char[4];
+
+	/**
+	 * Each chunk, either a <code>char[]</code> or a <code>long[]</code>
+	 */
+	private Object[] chunks = new Object[4];
+
+	/**
+	 * Number of positions in each chunk
+	 */
+	private int[] cardinalities = new int[4];
+
+	/**
+	 * Number of chunks
+	 */
+	private int size;
+
+	/**
+	 * Build a bitmap of the given positions.
+	 *
+	 * @param positions
+	 *            the ascending positions
+	 *
+	 * @return the {@link GatherBitmap}
+	 */
+	static GatherBitmap of(int[] positions) {
+		GatherBitmap bitmap = new GatherBitmap();
+		for(int position : positions) {
+			bitmap.add(position);
+		}
+
+		return bitmap;
+	}
+
+	/**
+	 * Add a position. Adding positions in ascending order is fastest.
+	 *
+	 * @param position
+	 *            the non-negative position to add
+	 */
+	void add(int position) {
+		final char key = (char) (position >>> 16);
+		final char low = (char) position;
+
+		int index = this.size - 1;
+		if(index < 0 || this.keys[index] != key) {
+			index = this.search(key);
+			if(index < 0) {
+				index = -index - 1;
+				this.insert(index, key, new char[] { low }, 1);
+				return;
+			}
+		}
+
+		final Object chunk = this.chunks[index];
+		final int cardinality = this.cardinalities[index];
+
+		if(chunk instanceof long[]) {
+			long[] words = (long[]) chunk;
+			long bit = 1l << low;
+			if((words[low >>> 6] & bit) == 0) {
+				words[low >>> 6] |= bit;
+				this.cardinalities[index]++;
+			}
+
+			return;
+		}
+
+		char[] values = (char[]) chunk;
+
+		// appending is the common case
+		int at;
+		if(cardinality > 0 && values[cardinality - 1] < low) {
+			at = cardinality;
+		} else {
+			at = Arrays.binarySearch(values, 0, cardinality, low);
+			if(at >= 0) {
+				return;
+			}
+
+			at = -at - 1;
+		}
+
+		if(cardinality == ARRAY_LIMIT) {
+			long[] words = toWords(values, cardinality);
+			words[low >>> 6] |= 1l << low;
+			this.chunks[index] = words;
+			this.cardinalities[index]++;
+			return;
+		}
+
+		if(cardinality == values.length) {
+			values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+			this.chunks[index] = values;
+		}
+
+		System.arraycopy(values, at, values, at + 1, cardinality - at);
+		values[at] = low;
+		this.cardinalities[index]++;
+	}
+
+	/**
+	 * Remove a position, if present.
+	 *
+	 * @param position
+	 *            the position to remove
+	 */
+	void remove(int position) {
+		final char low = (char) position;
+
+		int index = this.search((char) (position >>> 16));
+		if(index < 0) {
+			return;
+		}
+
+		final Object chunk = this.chunks[index];
+		final int cardinality = this.cardinalities[index];
+
+		if(chunk instanceof long[]) {
+			long[] words = (long[]) chunk;
+			long bit = 1l << low;
+			if((words[low >>> 6] & bit) == 0) {
+				return;
+			}
+
+			words[low >>> 6] &= ~bit;
+			if(cardinality - 1 <= ARRAY_LIMIT) {
+				this.chunks[index] = toValues(words, cardinality - 1);
+			}
+
+			this.cardinalities[index]--;
+			return;
+		}
+
+		char[] values = (char[]) chunk;
+		int at = Arrays.binarySearch(values, 0, cardinality, low);
+		if(at < 0) {
+			return;
+		}
+
+		if(cardinality == 1) {
+			System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+			System.arraycopy(this.chunks, index + 1, this.chunks, index, this.size - index - 1);
+			System.arraycopy(this.cardinalities, index + 1, this.cardinalities, index, this.size - index - 1);
+			this.size--;
+			this.chunks[this.size] = null;
+			return;
+		}
+
+		System.arraycopy(values, at + 1, values, at, cardinality - at - 1);
+		this.cardinalities[index]--;
+	}
+
+	boolean contains(int position) {
+		int index = this.search((char) (position >>> 16));
+		if(index < 0) {
+			return false;
+		}
+
+		final char low = (char) position;
+		final Object chunk = this.chunks[index];
+		if(chunk instanceof long[]) {
+			return (((long[]) chunk)[low >>> 6] & (1l << low)) != 0;
+		}
+
+		return Arrays.binarySearch((char[]) chunk, 0, this.cardinalities[index], low) >= 0;
+	}
+
+	/**
+	 * The number of positions in this bitmap.
+	 *
+	 * @return the cardinality
+	 */
+	int cardinality() {
+		int total = 0;
+		for(int index = 0; index < this.size; index++) {
+			total += this.cardinalities[index];
+		}
+
+		return total;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Return all positions in ascending order.
+	 *
+	 * @return the positions
+	 */
+	int[] toArray() {
+		return this.toArray(0, 0);
+	}
+
+	/**
+	 * Return a page of the positions in ascending order. Chunks before the
+	 * page are skipped using their cardinality.
+	 *
+	 * @param skip
+	 *            the number of positions to skip
+	 *
+	 * @param limit
+	 *            the most positions to return, all if not positive
+	 *
+	 * @return the positions
+	 */
+	int[] toArray(int skip, int limit) {
+		int total = this.cardinality();
+		int count = Math.max(0, total - Math.max(skip, 0));
+		if(limit > 0) {
+			count = Math.min(count, limit);
+		}
+
+		int[] result = new int[count];
+		int filled = 0;
+		int toSkip = Math.max(skip, 0);
+
+		for(int index = 0; index < this.size && filled < count; index++) {
+			final int cardinality = this.cardinalities[index];
+			if(toSkip >= cardinality) {
+				toSkip -= cardinality;
+				continue;
+			}
+
+			final int high = this.keys[index] << 16;
+			final Object chunk = this.chunks[index];
+
+			if(chunk instanceof char[]) {
+				char[] values = (char[]) chunk;
+				for(int at = toSkip; at < cardinality && filled < count; at++) {
+					result[filled++] = high | values[at];
+				}
+
+				toSkip = 0;
+				continue;
+			}
+
+			long[] words = (long[]) chunk;
+			for(int word = 0; word < WORDS && filled < count; word++) {
+				long bits = words[word];
+				while(bits != 0 && filled < count) {
+					if(toSkip > 0) {
+						toSkip--;
+					} else {
+						result[filled++] = high | (word << 6) | Long.numberOfTrailingZeros(bits);
+					}
+
+					bits &= bits - 1;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Intersect two bitmaps.
+	 *
+	 * @param first
+	 *            the first bitmap
+	 *
+	 * @param second
+	 *            the second bitmap
+	 *
+	 * @return a bitmap of the positions in both
+	 */
+	static GatherBitmap and(GatherBitmap first, GatherBitmap second) {
+		GatherBitmap result = new GatherBitmap();
+
+		int i = 0;
+		int j = 0;
+		while(i < first.size && j < second.size) {
+			if(first.keys[i] < second.keys[j]) {
+				i++;
+			} else if(first.keys[i] > second.keys[j]) {
+				j++;
+			} else {
+				result.append(first.keys[i], and(first.chunks[i], first.cardinalities[i], second.chunks[j], second.cardinalities[j]));
+				i++;
+				j++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Merge two bitmaps.
+	 *
+	 * @param first
+	 *            the first bitmap
+	 *
+	 * @param second
+	 *            the second bitmap
+	 *
+	 * @return a bitmap of the positions in either
+	 */
+	static GatherBitmap or(GatherBitmap first, GatherBitmap second) {
+		GatherBitmap result = new GatherBitmap();
+
+		int i = 0;
+		int j = 0;
+		while(i < first.size || j < second.size) {
+			if(j == second.size || (i < first.size && first.keys[i] < second.keys[j])) {
+				result.append(first.keys[i], first.chunks[i], first.cardinalities[i]);
+				i++;
+			} else if(i == first.size || first.keys[i] > second.keys[j]) {
+				result.append(second.keys[j], second.chunks[j], second.cardinalities[j]);
+				j++;
+			} else {
+				result.append(first.keys[i], or(first.chunks[i], first.cardinalities[i], second.chunks[j], second.cardinalities[j]));
+				i++;
+				j++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Remove the positions of one bitmap from another.
+	 *
+	 * @param first
+	 *            the bitmap to remove positions from
+	 *
+	 * @param second
+	 *            the positions to remove
+	 *
+	 * @return a bitmap of the positions in the first but not the second
+	 */
+	static GatherBitmap andNot(GatherBitmap first, GatherBitmap second) {
+		GatherBitmap result = new GatherBitmap();
+
+		int j = 0;
+		for(int i = 0; i < first.size; i++) {
+			while(j < second.size && second.keys[j] < first.keys[i]) {
+				j++;
+			}
+
+			if(j < second.size && second.keys[j] == first.keys[i]) {
+				result.append(first.keys[i], andNot(first.chunks[i], first.cardinalities[i], second.chunks[j], second.cardinalities[j]));
+			} else {
+				result.append(first.keys[i], first.chunks[i], first.cardinalities[i]);
+			}
+		}
+
+		return result;
+	}
+
+	// ***************************************
+	// CHUNK OPERATIONS FOLLOW
+	// ***************************************
+
+	private static Object and(Object first, int firstCount, Object second, int secondCount) {
+		if(first instanceof char[] && second instanceof char[]) {
+			char[] a = (char[]) first;
+			char[] b = (char[]) second;
+			char[] result = new char[Math.min(firstCount, secondCount)];
+			int size = 0;
+
+			int i = 0;
+			int j = 0;
+			while(i < firstCount && j < secondCount) {
+				if(a[i] < b[j]) {
+					i++;
+				} else if(a[i] > b[j]) {
+					j++;
+				} else {
+					result[size++] = a[i];
+					i++;
+					j++;
+				}
+			}
+
+			return Arrays.copyOf(result, size);
+		}
+
+		if(first instanceof long[] && second instanceof long[]) {
+			long[] a = (long[]) first;
+			long[] b = (long[]) second;
+			long[] result = new long[WORDS];
+			for(int word = 0; word < WORDS; word++) {
+				result[word] = a[word] & b[word];
+			}
+
+			return result;
+		}
+
+		// keep the values of the array found in the bitmap
+		char[] values = (char[]) (first instanceof char[] ? first : second);
+		int count = first instanceof char[] ? firstCount : secondCount;
+		long[] words = (long[]) (first instanceof long[] ? first : second);
+		return filter(values, count, words, true);
+	}
+
+	private static Object or(Object first, int firstCount, Object second, int secondCount) {
+		if(first instanceof char[] && second instanceof char[] && firstCount + secondCount <= ARRAY_LIMIT) {
+			char[] a = (char[]) first;
+			char[] b = (char[]) second;
+			char[] result = new char[firstCount + secondCount];
+			int size = 0;
+
+			int i = 0;
+			int j = 0;
+			while(i < firstCount || j < secondCount) {
+				if(j == secondCount || (i < firstCount && a[i] < b[j])) {
+					result[size++] = a[i++];
+				} else if(i == firstCount || a[i] > b[j]) {
+					result[size++] = b[j++];
+				} else {
+					result[size++] = a[i];
+					i++;
+					j++;
+				}
+			}
+
+			return Arrays.copyOf(result, size);
+		}
+
+		long[] result = first instanceof long[] ? ((long[]) first).clone() : toWords((char[]) first, firstCount);
+		if(second instanceof long[]) {
+			long[] words = (long[]) second;
+			for(int word = 0; word < WORDS; word++) {
+				result[word] |= words[word];
+			}
+		} else {
+			char[] values = (char[]) second;
+			for(int index = 0; index < secondCount; index++) {
+				result[values[index] >>> 6] |= 1l << values[index];
+			}
+		}
+
+		return result;
+	}
+
+	private static Object andNot(Object first, int firstCount, Object second, int secondCount) {
+		if(first instanceof char[]) {
+			char[] a = (char[]) first;
+			if(second instanceof long[]) {
+				return filter(a, firstCount, (long[]) second, false);
+			}
+
+			char[] b = (char[]) second;
+			char[] result = new char[firstCount];
+			int size = 0;
+
+			int j = 0;
+			for(int i = 0; i < firstCount; i++) {
+				while(j < secondCount && b[j] < a[i]) {
+					j++;
+				}
+
+				if(j == secondCount || b[j] != a[i]) {
+					result[size++] = a[i];
+				}
+			}
+
+			return Arrays.copyOf(result, size);
+		}
+
+		long[] result = ((long[]) first).clone();
+		if(second instanceof long[]) {
+			long[] words = (long[]) second;
+			for(int word = 0; word < WORDS; word++) {
+				result[word] &= ~words[word];
+			}
+		} else {
+			char[] values = (char[]) second;
+			for(int index = 0; index < secondCount; index++) {
+				result[values[index] >>> 6] &= ~(1l << values[index]);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Keep the values of an array that are, or are not, set in the words.
+	 */
+	private static char[] filter(char[] values, int count, long[] words, boolean present) {
+		char[] result = new char[count];
+		int size = 0;
+		for(int index = 0; index < count; index++) {
+			char value = values[index];
+			if(((words[value >>> 6] & (1l << value)) != 0) == present) {
+				result[size++] = value;
+			}
+		}
+
+		return Arrays.copyOf(result, size);
+	}
+
+	private static long[] toWords(char[] values, int count) {
+		long[] words = new long[WORDS];
+		for(int index = 0; index < count; index++) {
+			words[values[index] >>> 6] |= 1l << values[index];
+		}
+
+		return words;
+	}
+
+	private static char[] toValues(long[] words, int count) {
+		char[] values = new char[count];
+		int size = 0;
+		for(int word = 0; word < WORDS; word++) {
+			long bits = words[word];
+			while(bits != 0) {
+				values[size++] = (char) ((word << 6) | Long.numberOfTrailingZeros(bits));
+				bits &= bits - 1;
+			}
+		}
+
+		return values;
+	}
+
+	// ***************************************
+	// INTERNAL METHODS FOLLOW
+	// ***************************************
+
+	/**
+	 * Append a chunk just built by an operation, with a key greater than all
+	 * existing ones. Empty chunks are dropped, and sparse bitmap chunks are
+	 * turned into arrays.
+	 */
+	private void append(char key, Object chunk) {
+		if(chunk instanceof char[]) {
+			this.append(key, chunk, ((char[]) chunk).length);
+			return;
+		}
+
+		long[] words = (long[]) chunk;
+		int cardinality = 0;
+		for(int word = 0; word < WORDS; word++) {
+			cardinality += Long.bitCount(words[word]);
+		}
+
+		if(cardinality <= ARRAY_LIMIT) {
+			this.append(key, toValues(words, cardinality), cardinality);
+			return;
+		}
+
+		this.append(key, chunk, cardinality);
+	}
+
+	private void append(char key, Object chunk, int cardinality) {
+		if(cardinality == 0) {
+			return;
+		}
+
+		this.insert(this.size, key, chunk, cardinality);
+	}
+
+	private void insert(int index, char key, Object chunk, int cardinality) {
+		if(this.size == this.keys.length) {
+			int capacity = this.size * 2;
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.chunks = Arrays.copyOf(this.chunks, capacity);
+			this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+		}
+
+		System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+		System.arraycopy(this.chunks, index, this.chunks, index + 1, this.size - index);
+		System.arraycopy(this.cardinalities, index, this.cardinalities, index + 1, this.size - index);
+
+		this.keys[index] = key;
+		this.chunks[index] = chunk;
+		this.cardinalities[index] = cardinality;
+		this.size++;
+	}
+
+	private int search(char key) {
+		return Arrays.binarySearch(this.keys, 0, this.size, key);
+	}
+
+}
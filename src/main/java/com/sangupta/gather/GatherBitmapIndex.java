@@ -0,0 +1,180 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link GatherIndex} that keeps a {@link GatherBitmap} of the positions of
+ * the items holding each distinct value of the key. It suits keys with few
+ * distinct values, like a status or a <code>boolean</code> flag, where each
+ * value is held by many items. Equality, <code>IN</code> and
+ * <code>isNull</code> criteria are answered exactly with the bitmaps, and
+ * combined with the bitmaps of other criteria without reading any item.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherBitmapIndex extends GatherIndex {
+
+	/**
+	 * Positions by the value of the key, including <code>null</code>
+	 */
+	private final Map<Object, GatherBitmap> values = new HashMap<>();
+
+	GatherBitmapIndex(String key) {
+		super(key);
+	}
+
+	@Override
+	void add(int position, Object value) {
+		GatherBitmap bitmap = this.values.get(value);
+		if(bitmap == null) {
+			bitmap = new GatherBitmap();
+			this.values.put(value, bitmap);
+		}
+
+		bitmap.add(position);
+	}
+
+	@Override
+	void remove(int position, Object value) {
+		GatherBitmap bitmap = this.values.get(value);
+		if(bitmap == null) {
+			return;
+		}
+
+		bitmap.remove(position);
+		if(bitmap.isEmpty()) {
+			this.values.remove(value);
+		}
+	}
+
+	@Override
+	GatherBitmap lookup(GatherCriteria criteria, int limit) {
+		switch(criteria.operation) {
+			case Equals:
+				// null values never match
+				if(criteria.value == null) {
+					return new GatherBitmap();
+				}
+
+				return this.get(criteria.value);
+
+			case In:
+				return this.lookupIn(criteria.value);
+
+			case IsNull:
+				return this.get(null);
+
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	int estimate(GatherCriteria criteria) {
+		switch(criteria.operation) {
+			case Equals:
+				return criteria.value == null ? 0 : this.get(criteria.value).cardinality();
+
+			case In:
+				if(GatherUtils.hasOwnEquality(criteria.value)) {
+					return -1;
+				}
+
+				// an upper bound, as the values are distinct
+				int count = 0;
+				for(Object item : required(criteria.value)) {
+					if(item != null) {
+						count += this.get(item).cardinality();
+					}
+				}
+
+				return count;
+
+			case IsNull:
+				return this.get(null).cardinality();
+
+			default:
+				return -1;
+		}
+	}
+
+	@Override
+	boolean isPrebuilt() {
+		return true;
+	}
+
+	@Override
+	boolean isExact(GatherCriteria criteria) {
+		return true;
+	}
+
+	private GatherBitmap lookupIn(Object value) {
+		// the values are found by hash, which such a set does not agree with
+		if(GatherUtils.hasOwnEquality(value)) {
+			return null;
+		}
+
+		GatherBitmap result = new GatherBitmap();
+		for(Object item : required(value)) {
+			GatherBitmap bitmap = this.values.get(item);
+			if(item != null && bitmap != null) {
+				result = GatherBitmap.or(result, bitmap);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * The values of an <code>IN</code> criteria, none if it is neither a
+	 * collection nor an array.
+	 */
+	private static Collection<?> required(Object value) {
+		if(value instanceof Collection) {
+			return (Collection<?>) value;
+		}
+
+		if(value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+
+		return Collections.emptyList();
+	}
+
+	private GatherBitmap get(Object value) {
+		GatherBitmap bitmap = this.values.get(value);
+		if(bitmap == null) {
+			return new GatherBitmap();
+		}
+
+		return bitmap;
+	}
+
+}
@@ -0,0 +1,646 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A live collection of items along with indexes over the values of some of
+ * their keys, which are kept up to date as items are added, removed and
+ * updated. Queries fired using {@link Gather#find(Collection)} and
+ * {@link Gather#count(Collection)} use the indexes, just like those of a
+ * {@link GatherIndexedCollection}. For example,
+ * <code>new GatherCollection&lt;Worker&gt;().withHashIndex("id")</code>
+ * answers <code>Gather.where("id").is(42)</code> with a hash lookup however
+ * the workers change.
+ *
+ * Items are held once each, and told apart by identity: adding an item that
+ * is already held does nothing, and <code>null</code> items are not allowed.
+ * An item whose indexed values change must be passed to
+ * {@link #update(Object)}. As the indexes look up the values an item was
+ * indexed with to remove it, these values must be replaced rather than
+ * changed in place, just like the keys of a {@link java.util.HashMap}.
+ *
+ * Each item takes a slot, which is the slot of a removed item if there is
+ * one. Iteration and results follow the order of the slots.
+ *
+ * The collection is thread-safe. Queries, and every other read, hold a read
+ * lock, so that many threads read at once and each sees the collection
+ * between two changes. This relies on index lookups never writing to the
+ * indexes. Changes hold a write lock, and are counted by
+ * {@link #modificationCount()}. Iterators fail with a
+ * {@link ConcurrentModificationException} once the collection is changed
+ * other than through the iterator. Removing through the iterator keeps the
+ * indexes up to date, so that <code>removeIf</code> of Java 8 does too.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public final class GatherCollection<T> extends AbstractCollection<T> {
+
+	/**
+	 * The items by slot, <code>null</code> where an item was removed
+	 */
+	private final List<T> items = new ArrayList<>();
+
+	/**
+	 * The slot of each item
+	 */
+	private final Map<Object, Integer> slots = new IdentityHashMap<>();
+
+	/**
+	 * Slots of removed items, taken by the next items added
+	 */
+	private final Deque<Integer> free = new ArrayDeque<>();
+
+	private final GatherIndexSet indexes = new GatherIndexSet(true);
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Number of changes to the items, only written under the write lock
+	 */
+	private volatile long modifications;
+
+	public static <T> GatherCollection<T> of(Collection<? extends T> collection) {
+		if(collection == null) {
+			throw new IllegalArgumentException("Collection cannot be null");
+		}
+
+		GatherCollection<T> result = new GatherCollection<T>();
+		result.addAll(collection);
+		return result;
+	}
+
+	public static <T> GatherCollection<T> of(T[] array) {
+		if(array == null) {
+			throw new IllegalArgumentException("Array cannot be null");
+		}
+
+		return of(Arrays.asList(array));
+	}
+
+	/**
+	 * Add a hash index over the given key. See
+	 * {@link GatherIndexedCollection#withHashIndex(String)}.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherCollection<T> withHashIndex(String key) {
+		return this.withIndex(key == null ? null : new GatherHashIndex(key));
+	}
+
+	/**
+	 * Add a bitmap index over the given key. See
+	 * {@link GatherIndexedCollection#withBitmapIndex(String)}.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherCollection<T> withBitmapIndex(String key) {
+		return this.withIndex(key == null ? null : new GatherBitmapIndex(key));
+	}
+
+	/**
+	 * Add an inverted index over the given key. See
+	 * {@link GatherIndexedCollection#withInvertedIndex(String)}.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherCollection<T> withInvertedIndex(String key) {
+		return this.withIndex(key == null ? null : new GatherInvertedIndex(key));
+	}
+
+	/**
+	 * Add a sorted index over the given key. See
+	 * {@link GatherIndexedCollection#withSortedIndex(String)}. Keys of items
+	 * added later are merged into the sorted keys from time to time.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherCollection<T> withSortedIndex(String key) {
+		return this.withIndex(key == null ? null : new GatherSortedIndex(key));
+	}
+
+	/**
+	 * Add a pattern index over the given key. See
+	 * {@link GatherIndexedCollection#withPatternIndex(String)}.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherCollection<T> withPatternIndex(String key) {
+		return this.withIndex(key == null ? null : new GatherPatternIndex(key));
+	}
+
+	/**
+	 * Add a composite index over the given keys. See
+	 * {@link GatherIndexedCollection#withCompositeIndex(String...)}.
+	 *
+	 * @param keys
+	 *            the keys to index, at least two, in order
+	 *
+	 * @return this instance
+	 */
+	public GatherCollection<T> withCompositeIndex(String... keys) {
+		GatherCompositeIndex index = new GatherCompositeIndex(keys);
+
+		this.lock.writeLock().lock();
+		try {
+			this.indexes.add(index, this.items);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+
+		return this;
+	}
+
+	private GatherCollection<T> withIndex(GatherIndex index) {
+		if(index == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		this.lock.writeLock().lock();
+		try {
+			this.indexes.add(index, this.items);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+
+		return this;
+	}
+
+	/**
+	 * The number of changes made to the items so far. Two equal counts read
+	 * around some work mean that the items did not change in between.
+	 *
+	 * @return the number of items added, removed and updated
+	 */
+	public long modificationCount() {
+		return this.modifications;
+	}
+
+	@Override
+	public int size() {
+		this.lock.readLock().lock();
+		try {
+			return this.slots.size();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(Object item) {
+		this.lock.readLock().lock();
+		try {
+			return this.slotOf(item) >= 0;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Object[] toArray() {
+		this.lock.readLock().lock();
+		try {
+			return this.snapshot().toArray();
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public <E> E[] toArray(E[] array) {
+		this.lock.readLock().lock();
+		try {
+			return this.snapshot().toArray(array);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new SlotIterator();
+	}
+
+	/**
+	 * Add the given item, and index it.
+	 *
+	 * @param item
+	 *            the item to add
+	 *
+	 * @return <code>true</code> if the item was added, <code>false</code> if
+	 *         it is already held
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the item is <code>null</code>
+	 */
+	@Override
+	public boolean add(T item) {
+		if(item == null) {
+			throw new IllegalArgumentException("Item cannot be null");
+		}
+
+		this.lock.writeLock().lock();
+		try {
+			return this.insert(item);
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends T> collection) {
+		for(T item : collection) {
+			if(item == null) {
+				throw new IllegalArgumentException("Item cannot be null");
+			}
+		}
+
+		this.lock.writeLock().lock();
+		try {
+			boolean changed = false;
+			for(T item : collection) {
+				changed |= this.insert(item);
+			}
+
+			return changed;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Re-index the given item after the values of its keys changed.
+	 *
+	 * @param item
+	 *            the item that changed
+	 *
+	 * @return <code>true</code> if the item is held, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean update(T item) {
+		this.lock.writeLock().lock();
+		try {
+			Integer slot = this.slots.get(item);
+			if(slot == null) {
+				return false;
+			}
+
+			this.indexes.remove(slot);
+			this.indexes.add(slot, item);
+			this.modifications++;
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the given item, or else the first item equal to it.
+	 *
+	 * @param item
+	 *            the item to remove
+	 *
+	 * @return <code>true</code> if an item was removed, <code>false</code>
+	 *         otherwise
+	 */
+	@Override
+	public boolean remove(Object item) {
+		this.lock.writeLock().lock();
+		try {
+			int slot = this.slotOf(item);
+			if(slot < 0) {
+				return false;
+			}
+
+			this.delete(slot);
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove all items that match the given query, found using the indexes.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @return <code>true</code> if any item was removed, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean removeIf(Gather gather) {
+		if(gather == null) {
+			throw new IllegalArgumentException("Gather query cannot be null");
+		}
+
+		this.lock.writeLock().lock();
+		try {
+			List<T> matched = this.indexes.find(gather, this.items, 0, 0);
+			for(T item : matched) {
+				this.delete(this.slots.get(item));
+			}
+
+			return !matched.isEmpty();
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> collection) {
+		return this.removeWhere(collection, true);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> collection) {
+		return this.removeWhere(collection, false);
+	}
+
+	@Override
+	public void clear() {
+		this.lock.writeLock().lock();
+		try {
+			for(int slot = 0; slot < this.items.size(); slot++) {
+				if(this.items.get(slot) != null) {
+					this.delete(slot);
+				}
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Count the number of items that match the given query, using the
+	 * indexes to narrow down the items to test.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @return the number of items that matched the query
+	 */
+	public int count(Gather gather) {
+		this.lock.readLock().lock();
+		try {
+			return this.indexes.count(gather, this.items);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	public List<T> find(Gather gather) {
+		return this.find(gather, 0, 0);
+	}
+
+	public List<T> find(Gather gather, int numResults) {
+		return this.find(gather, numResults, 0);
+	}
+
+	/**
+	 * Execute the given query over the items, using the indexes to narrow
+	 * down the items to test.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @param numResults
+	 *            the maximum number of items to return, all if not positive
+	 *
+	 * @param skipCount
+	 *            the number of matching items to skip
+	 *
+	 * @return the matching items, in the order of their slots
+	 */
+	public List<T> find(Gather gather, int numResults, int skipCount) {
+		this.lock.readLock().lock();
+		try {
+			return this.indexes.find(gather, this.items, numResults, skipCount);
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	public T findOne(Gather gather) {
+		return this.findOne(gather, 0);
+	}
+
+	public T findOne(Gather gather, int skipCount) {
+		List<T> results = this.find(gather, 1, skipCount);
+		if(results.isEmpty()) {
+			return null;
+		}
+
+		return results.get(0);
+	}
+
+	private boolean insert(T item) {
+		if(this.slots.containsKey(item)) {
+			return false;
+		}
+
+		final int slot;
+		if(this.free.isEmpty()) {
+			slot = this.items.size();
+			this.items.add(item);
+		} else {
+			slot = this.free.pop();
+			this.items.set(slot, item);
+		}
+
+		this.slots.put(item, slot);
+		this.indexes.add(slot, item);
+		this.modifications++;
+		return true;
+	}
+
+	private void delete(int slot) {
+		T item = this.items.set(slot, null);
+		this.slots.remove(item);
+		this.indexes.remove(slot);
+		this.free.push(slot);
+		this.modifications++;
+	}
+
+	private boolean removeWhere(Collection<?> collection, boolean contained) {
+		if(collection == null) {
+			throw new IllegalArgumentException("Collection cannot be null");
+		}
+
+		this.lock.writeLock().lock();
+		try {
+			boolean changed = false;
+			for(int slot = 0; slot < this.items.size(); slot++) {
+				T item = this.items.get(slot);
+				if(item != null && collection.contains(item) == contained) {
+					this.delete(slot);
+					changed = true;
+				}
+			}
+
+			return changed;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the slot of the given item, or else of the first item equal to it.
+	 */
+	private int slotOf(Object item) {
+		Integer slot = this.slots.get(item);
+		if(slot != null) {
+			return slot;
+		}
+
+		if(item == null) {
+			return -1;
+		}
+
+		for(int index = 0; index < this.items.size(); index++) {
+			if(item.equals(this.items.get(index))) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	private List<T> snapshot() {
+		List<T> list = new ArrayList<>(this.slots.size());
+		for(T item : this.items) {
+			if(item != null) {
+				list.add(item);
+			}
+		}
+
+		return list;
+	}
+
+	/**
+	 * Walks the slots, reading each under the read lock.
+	 */
+	private final class SlotIterator implements Iterator<T> {
+
+		/**
+		 * The slot to look at next
+		 */
+		private int next;
+
+		/**
+		 * The slot of the item returned last, <code>-1</code> if none
+		 */
+		private int last = -1;
+
+		private long expected = GatherCollection.this.modifications;
+
+		@Override
+		public boolean hasNext() {
+			GatherCollection.this.lock.readLock().lock();
+			try {
+				this.check();
+				return this.advance() < GatherCollection.this.items.size();
+			} finally {
+				GatherCollection.this.lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public T next() {
+			GatherCollection.this.lock.readLock().lock();
+			try {
+				this.check();
+				if(this.advance() >= GatherCollection.this.items.size()) {
+					throw new NoSuchElementException();
+				}
+
+				this.last = this.next++;
+				return GatherCollection.this.items.get(this.last);
+			} finally {
+				GatherCollection.this.lock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public void remove() {
+			if(this.last < 0) {
+				throw new IllegalStateException();
+			}
+
+			GatherCollection.this.lock.writeLock().lock();
+			try {
+				this.check();
+				GatherCollection.this.delete(this.last);
+				this.last = -1;
+				this.expected = GatherCollection.this.modifications;
+			} finally {
+				GatherCollection.this.lock.writeLock().unlock();
+			}
+		}
+
+		private int advance() {
+			final List<T> items = GatherCollection.this.items;
+			while(this.next < items.size() && items.get(this.next) == null) {
+				this.next++;
+			}
+
+			return this.next;
+		}
+
+		private void check() {
+			if(GatherCollection.this.modifications != this.expected) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+	}
+
+}
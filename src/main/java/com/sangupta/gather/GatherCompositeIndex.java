@@ -0,0 +1,264 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over an ordered list of keys, for queries that <code>AND</code>
+ * equality criteria on the leading keys with range criteria on the last one,
+ * like <code>where("region").is(r).and("tier").is(t).and("score").greaterThan(x)</code>.
+ * Items are grouped by the values of the leading keys, using a hash map, and
+ * the values of the last key in each group are kept in a
+ * {@link GatherSortedIndex}. Such a query is answered with a single hash
+ * lookup and a binary search, instead of intersecting the candidates of
+ * many single key indexes.
+ *
+ * An <code>AND</code> chain of criteria is answered when it holds an equality
+ * criteria on every leading key. The range criteria on the last key are then
+ * answered too, and all other criteria of the chain are left to other
+ * indexes or to testing the candidates. Items without a value for every
+ * leading key are never found, as they match no equality criteria.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherCompositeIndex {
+
+	/**
+	 * The indexed keys, in order
+	 */
+	final String[] keys;
+
+	/**
+	 * Items by the values of the leading keys
+	 */
+	private final Map<List<Object>, Group> groups = new HashMap<>();
+
+	private boolean completed;
+
+	GatherCompositeIndex(String[] keys) {
+		if(keys == null || keys.length < 2) {
+			throw new IllegalArgumentException("Composite index needs at least two keys");
+		}
+
+		for(String key : keys) {
+			if(key == null) {
+				throw new IllegalArgumentException("Key cannot be null");
+			}
+		}
+
+		this.keys = keys.clone();
+	}
+
+	/**
+	 * Add the item at the given position.
+	 *
+	 * @param position
+	 *            the position of the item in the collection
+	 *
+	 * @param values
+	 *            the values of the keys of the item, in order,
+	 *            {@link GatherReflect#NOT_FOUND} for a key the item does not
+	 *            have
+	 */
+	void add(int position, Object[] values) {
+		List<Object> prefix = prefix(values);
+		if(prefix == null) {
+			return;
+		}
+
+		Group group = this.groups.get(prefix);
+		if(group == null) {
+			group = new Group(this.keys[this.keys.length - 1]);
+			if(this.completed) {
+				group.suffix.complete();
+			}
+
+			this.groups.put(prefix, group);
+		}
+
+		group.members.add(position);
+
+		Object value = values[values.length - 1];
+		if(value != GatherReflect.NOT_FOUND) {
+			group.suffix.add(position, value);
+		}
+	}
+
+	/**
+	 * Remove the item at the given position from a complete index.
+	 *
+	 * @param position
+	 *            the position of the item in the collection
+	 *
+	 * @param values
+	 *            the values of the keys that were added for the item
+	 */
+	void remove(int position, Object[] values) {
+		List<Object> prefix = prefix(values);
+		Group group = prefix == null ? null : this.groups.get(prefix);
+		if(group == null) {
+			return;
+		}
+
+		group.members.remove(position);
+		if(group.members.isEmpty()) {
+			this.groups.remove(prefix);
+			return;
+		}
+
+		Object value = values[values.length - 1];
+		if(value != GatherReflect.NOT_FOUND) {
+			group.suffix.remove(position, value);
+		}
+	}
+
+	/**
+	 * Called once all items have been added, before the first lookup.
+	 */
+	void complete() {
+		for(Group group : this.groups.values()) {
+			group.suffix.complete();
+		}
+
+		this.completed = true;
+	}
+
+	/**
+	 * Find the items that match the criteria of an <code>AND</code> chain on
+	 * the keys of this index. Like {@link GatherIndex#lookup(GatherCriteria, int)},
+	 * a lookup never writes to the index.
+	 *
+	 * @param chain
+	 *            the <code>AND</code>-ed criteria
+	 *
+	 * @return the {@link Match}, or <code>null</code> if the chain does not
+	 *         have an equality criteria on every leading key
+	 */
+	Match lookup(List<GatherCriteria> chain) {
+		final int last = this.keys.length - 1;
+
+		List<GatherCriteria> residual = new ArrayList<>(chain);
+		Object[] required = new Object[last];
+		for(int index = 0; index < last; index++) {
+			GatherCriteria equals = null;
+			for(GatherCriteria criteria : residual) {
+				if(!criteria.inverse && criteria.operation == GatherOperation.Equals && this.keys[index].equals(criteria.key)) {
+					equals = criteria;
+					break;
+				}
+			}
+
+			if(equals == null) {
+				return null;
+			}
+
+			residual.remove(equals);
+			required[index] = equals.value;
+		}
+
+		// null values never match
+		Group group = this.groups.get(Arrays.asList(required));
+		if(group == null) {
+			return new Match(new GatherBitmap(), residual);
+		}
+
+		GatherBitmap result = group.members;
+		for(Iterator<GatherCriteria> iterator = residual.iterator(); iterator.hasNext(); ) {
+			GatherCriteria criteria = iterator.next();
+			if(criteria.inverse || !this.keys[last].equals(criteria.key)) {
+				continue;
+			}
+
+			GatherBitmap range = group.suffix.lookup(criteria, 0);
+			if(range != null) {
+				result = GatherBitmap.and(result, range);
+				iterator.remove();
+			}
+		}
+
+		return new Match(result, residual);
+	}
+
+	/**
+	 * The values of the leading keys, <code>null</code> if any is missing or
+	 * <code>null</code>, as such an item matches no equality criteria.
+	 */
+	private static List<Object> prefix(Object[] values) {
+		Object[] prefix = Arrays.copyOf(values, values.length - 1);
+		for(Object value : prefix) {
+			if(value == null || value == GatherReflect.NOT_FOUND) {
+				return null;
+			}
+		}
+
+		return Arrays.asList(prefix);
+	}
+
+	/**
+	 * The items holding the same values of the leading keys.
+	 */
+	private static final class Group {
+
+		final GatherBitmap members = new GatherBitmap();
+
+		/**
+		 * The values of the last key
+		 */
+		final GatherSortedIndex suffix;
+
+		Group(String key) {
+			this.suffix = new GatherSortedIndex(key);
+		}
+
+	}
+
+	/**
+	 * The items matching the criteria of a chain that an index answers.
+	 */
+	static final class Match {
+
+		/**
+		 * The positions of the items that match the answered criteria
+		 */
+		final GatherBitmap positions;
+
+		/**
+		 * The criteria of the chain left to answer
+		 */
+		final List<GatherCriteria> residual;
+
+		Match(GatherBitmap positions, List<GatherCriteria> residual) {
+			this.positions = positions;
+			this.residual = residual;
+		}
+
+	}
+
+}
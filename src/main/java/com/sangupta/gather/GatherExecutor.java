@@ -21,13 +21,14 @@
 
 package com.sangupta.gather;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.regex.Pattern;
 
-import com.sangupta.gather.GatherReflect.FieldAndInstance;
+import com.sangupta.gather.GatherReflect.FieldAccessor;
+import com.sangupta.gather.GatherReflect.HandleAccessor;
 
 /**
  * The query executor that takes a {@link Gather} query and fires it against a given
@@ -54,6 +55,30 @@ abstract class GatherExecutor {
 	 * @return the result of the {@link GatherAggregator} as a {@link Number}
 	 */
 	static <T> Number aggregate(Collection<T> collection, String key, GatherAggregator aggregator) {
+		return aggregate(collection, null, key, aggregator);
+	}
+
+	/**
+	 * Run the given aggregator over the given key on only the items of the
+	 * collection that match the query, in a single pass. The matched items are
+	 * never collected.
+	 *
+	 * @param collection
+	 *            Object collection to run aggregation on
+	 *
+	 * @param filter
+	 *            the {@link CompiledGather} items must match, <code>null</code>
+	 *            to aggregate all items
+	 *
+	 * @param key
+	 *            the key to fire aggregation on
+	 *
+	 * @param aggregator
+	 *            the {@link GatherAggregator} to use
+	 *
+	 * @return the result of the {@link GatherAggregator} as a {@link Number}
+	 */
+	static <T> Number aggregate(Collection<T> collection, CompiledGather filter, String key, GatherAggregator aggregator) {
 		if(collection == null) {
 			return null;
 		}
@@ -70,9 +95,15 @@ abstract class GatherExecutor {
 			return null;
 		}
 
+		if(filter != null && filter.parallel && GatherParallelExecutor.supports(collection)) {
+			return aggregateParallel(collection, filter, key, aggregator);
+		}
+
 		int found = 0;
 		for(T item : collection) {
-			found = aggregateOnItem(item, key, aggregator, found);
+			if(filter == null || filter.matches(item)) {
+				found = aggregateOnItem(item, key, aggregator, found);
+			}
 		}
 
 		return aggregator.getResult(found);
@@ -117,6 +148,53 @@ abstract class GatherExecutor {
 		return aggregator.getResult(found);
 	}
 
+	/**
+	 * Run the given aggregator on the collection over the given key in
+	 * parallel, when the collection supports it. A
+	 * {@link GatherMergeableAggregator} is run on each slice separately and the
+	 * partial results merged; any other aggregator is handed the values, read
+	 * in parallel, in encounter order from the calling thread.
+	 *
+	 * @param collection
+	 *            Object collection to run aggregation on
+	 *
+	 * @param key
+	 *            the key to fire aggregation on
+	 *
+	 * @param aggregator
+	 *            the {@link GatherAggregator} to use
+	 *
+	 * @return the result of the {@link GatherAggregator} as a {@link Number}
+	 */
+	static <T> Number aggregateParallel(Collection<T> collection, String key, GatherAggregator aggregator) {
+		return aggregateParallel(collection, null, key, aggregator);
+	}
+
+	static <T> Number aggregateParallel(Collection<T> collection, CompiledGather filter, String key, GatherAggregator aggregator) {
+		if(collection == null || key == null || aggregator == null || collection.isEmpty()) {
+			return null;
+		}
+
+		if(!GatherParallelExecutor.supports(collection)) {
+			return aggregate(collection, filter, key, aggregator);
+		}
+
+		if(aggregator instanceof GatherMergeableAggregator) {
+			return GatherParallelExecutor.aggregate((List<T>) collection, filter, key, (GatherMergeableAggregator) aggregator);
+		}
+
+		// aggregator can only be fed from a single thread
+		List<Object> values = GatherParallelExecutor.values((List<T>) collection, filter, key);
+
+		int found = 0;
+		for(Object value : values) {
+			found++;
+			aggregator.aggregate(found, value);
+		}
+
+		return aggregator.getResult(found);
+	}
+
 	/**
 	 * Run the {@link GatherAggregator} over a single item from the collection.
 	 *
@@ -136,23 +214,57 @@ abstract class GatherExecutor {
 	 *         found if there exists an attribute on the object for the given key
 	 */
 	static <T> int aggregateOnItem(T item, String key, GatherAggregator aggregator, int found) {
-		Field field = GatherReflect.getField(item, key);
-		if(field == null) {
+		return aggregateOnItem(item, GatherReflect.getAccessor(item, key), aggregator, found);
+	}
+
+	/**
+	 * Run the {@link GatherAggregator} over a single item from the collection,
+	 * reading the value using an accessor already resolved for its class.
+	 *
+	 * @param item
+	 *            A single item from a collection over which we fire the aggregator
+	 *
+	 * @param accessor
+	 *            the {@link FieldAccessor} for the key on the class of the item,
+	 *            <code>null</code> if the class has no such key
+	 *
+	 * @param aggregator
+	 *            the {@link GatherAggregator} to use
+	 *
+	 * @param found
+	 *            total number of items that have been found till now
+	 *
+	 * @return an integer giving total number of items found
+	 */
+	static <T> int aggregateOnItem(T item, FieldAccessor accessor, GatherAggregator aggregator, int found) {
+		if(accessor == null) {
 			return found;
 		}
 
-		found++;
-		Object value;
+		// numeric primitive fields are handed over without boxing - char is
+		// left alone as its boxed form is not a Number
+		if(accessor instanceof HandleAccessor && accessor.type != char.class) {
+			HandleAccessor handle = (HandleAccessor) accessor;
+
+			if(aggregator instanceof LongGatherAggregator && handle.readsLong()) {
+				found++;
+				((LongGatherAggregator) aggregator).aggregateLong(found, handle.getLong(item));
+				return found;
+			}
 
-		try {
-			// allow field to be read
-			field.setAccessible(true);
+			if(aggregator instanceof DoubleGatherAggregator && handle.readsDouble()) {
+				found++;
+				((DoubleGatherAggregator) aggregator).aggregateDouble(found, handle.getDouble(item));
+				return found;
+			}
+		}
 
-			value = field.get(item);
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			throw new RuntimeException("Unable to read value of field", e);
+		Object value = accessor.get(item);
+		if(value == GatherReflect.NOT_FOUND) {
+			return found;
 		}
 
+		found++;
 		aggregator.aggregate(found, value);
 		return found;
 	}
@@ -164,11 +276,15 @@ abstract class GatherExecutor {
 	 *            collection of objects to fire query upon
 	 *
 	 * @param gather
-	 *            the {@link Gather} query to fire
+	 *            the {@link CompiledGather} query to fire
 	 *
 	 * @return number of objects that matched the query
 	 */
-	static <T> int count(final Collection<T> collection, final Gather gather) {
+	static <T> int count(final Collection<T> collection, final CompiledGather gather) {
+		if(gather.parallel && GatherParallelExecutor.supports(collection)) {
+			return GatherParallelExecutor.count((List<T>) collection, gather);
+		}
+
 		ResultsOrCount<T> resultsOrCount = getResultsInternal(collection, gather, 0, 0, true);
 		return resultsOrCount.count;
 	}
@@ -180,16 +296,24 @@ abstract class GatherExecutor {
 	 *            array of objects to fire query upon
 	 *
 	 * @param gather
-	 *            the {@link Gather} query to fire
+	 *            the {@link CompiledGather} query to fire
 	 *
 	 * @return number of objects that matched the query
 	 */
-	static <T> int count(final T[] array, final Gather gather) {
+	static <T> int count(final T[] array, final CompiledGather gather) {
+		if(gather.parallel && array != null && array.length >= GatherParallelExecutor.SEQUENTIAL_THRESHOLD) {
+			return GatherParallelExecutor.count(Arrays.asList(array), gather);
+		}
+
 		ResultsOrCount<T> resultsOrCount = getResultsInternal(array, gather, 0, 0, true);
 		return resultsOrCount.count;
 	}
 
-	static <T> List<T> getResults(final Collection<T> collection, final Gather gather, final int numResults, final int skipCount) {
+	static <T> List<T> getResults(final Collection<T> collection, final CompiledGather gather, final int numResults, final int skipCount) {
+		if(gather.parallel && GatherParallelExecutor.supports(collection)) {
+			return GatherParallelExecutor.find((List<T>) collection, gather, numResults, skipCount);
+		}
+
 		ResultsOrCount<T> resultsOrCount = getResultsInternal(collection, gather, numResults, skipCount, false);
 		return resultsOrCount.list;
 	}
@@ -204,7 +328,7 @@ abstract class GatherExecutor {
 	 * @param countMode
 	 * @return
 	 */
-	static <T> ResultsOrCount<T> getResultsInternal(final Collection<T> collection, final Gather gather, final int numResults, final int skipCount, final boolean countMode) {
+	static <T> ResultsOrCount<T> getResultsInternal(final Collection<T> collection, final CompiledGather gather, final int numResults, final int skipCount, final boolean countMode) {
 		ResultsOrCount<T> resultsOrCount = new ResultsOrCount<T>();
 		if(collection == null) {
 			return resultsOrCount;
@@ -217,7 +341,7 @@ abstract class GatherExecutor {
 		// run filtering criteria first
 		int skipped = 0;
 		for(T item : collection) {
-			if(matches(item, gather)) {
+			if(gather.matches(item)) {
 				// skip elements asked for
 				if(skipCount > 0 && skipped < skipCount) {
 					skipped++;
@@ -252,7 +376,7 @@ abstract class GatherExecutor {
 	 * @param countMode
 	 * @return
 	 */
-	static <T> ResultsOrCount<T> getResultsInternal(final T[] collection, final Gather gather, final int numResults, final int skipCount, final boolean countMode) {
+	static <T> ResultsOrCount<T> getResultsInternal(final T[] collection, final CompiledGather gather, final int numResults, final int skipCount, final boolean countMode) {
 		ResultsOrCount<T> resultsOrCount = new ResultsOrCount<T>();
 		if(collection == null) {
 			return resultsOrCount;
@@ -265,7 +389,7 @@ abstract class GatherExecutor {
 		// run filtering criteria first
 		int skipped = 0;
 		for(T item : collection) {
-			if(matches(item, gather)) {
+			if(gather.matches(item)) {
 				// skip elements asked for
 				if(skipCount > 0 && skipped < skipCount) {
 					skipped++;
@@ -299,119 +423,7 @@ abstract class GatherExecutor {
 			return false;
 		}
 
-		if(gather.criteria.isEmpty()) {
-			return true;
-		}
-
-		boolean finalResult = false;
-		for(GatherCriteria criteria : gather.criteria) {
-			boolean criteriaResult = matchCriteria(item, criteria);
-
-			if(criteria.inverse) {
-				criteriaResult = !criteriaResult;
-			}
-
-			switch(criteria.join) {
-				case OR:
-					finalResult = criteriaResult | finalResult;
-					break;
-
-				case AND:
-					finalResult = criteriaResult & finalResult;
-					break;
-
-			}
-		}
-
-		return finalResult;
-	}
-
-	/**
-	 *
-	 * @param item an always non-null object
-	 *
-	 * @param criteria
-	 * @param classOfT
-	 * @return
-	 */
-	static <T> boolean matchCriteria(T item, GatherCriteria criteria) {
-		FieldAndInstance fieldAndInstance = GatherReflect.getFieldAndInstance(item, criteria.key);
-
-		if(criteria.operation == GatherOperation.HasProperty) {
-			if(fieldAndInstance.field != null) {
-				return true;
-			}
-
-			return false;
-		}
-
-		if(fieldAndInstance.field == null) {
-			return false;
-		}
-
-		// allow field to be read
-		fieldAndInstance.field.setAccessible(true);
-
-		// get the value from the object instance
-		Object value;
-		try {
-			value = fieldAndInstance.field.get(fieldAndInstance.instance);
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			throw new RuntimeException("Unable to read value of field", e);
-		}
-
-		// now match the value against criteria values
-		return valueMatchesCriteria(value, criteria.operation, criteria.value);
-	}
-
-	static boolean valueMatchesCriteria(Object fieldValue, GatherOperation operation, Object requiredValue) {
-		switch(operation) {
-			case Equals:
-				return handleEquals(fieldValue, requiredValue);
-
-			case EqualsIgnoreCase:
-				return handleEqualsIgnoreCase(fieldValue, requiredValue);
-
-			case GreaterThan:
-				return handleGreaterThan(fieldValue, requiredValue);
-
-			case GreaterThanOrEquals:
-				return handleGreaterThanOrEquals(fieldValue, requiredValue);
-
-			case In:
-				return handleValueIn(fieldValue, requiredValue);
-
-			case IsNull:
-				return handleNull(fieldValue, requiredValue);
-
-			case CollectionHasValue:
-				return handleCollectionHasValue(fieldValue, requiredValue);
-
-			case CollectionHasAllValues:
-				return handleCollectionHasAllValues(fieldValue, requiredValue);
-
-			case CollectionHasAnyValue:
-				return handleCollectionHasAnyValue(fieldValue, requiredValue);
-
-			case LessThan:
-				return handleLessThan(fieldValue, requiredValue);
-
-			case LessThanOrEquals:
-				return handleLessThanOrEquals(fieldValue, requiredValue);
-
-			case RegexMatch:
-				return handleRegexMatch(fieldValue, requiredValue);
-
-			case WildcardMatch:
-				return handleWildcardMatch(fieldValue, requiredValue);
-
-			case HasProperty:
-				throw new IllegalStateException("This operation should have been taken care of before");
-
-			default:
-				throw new IllegalStateException("Unknown operation in criteria: " + operation);
-
-		}
+		return gather.compile().matches(item);
 	}
 
 	static boolean handleCollectionHasAnyValue(Object fieldValue, Object requiredValue) {
@@ -0,0 +1,245 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.sangupta.gather.GatherAggregation.Aggregate;
+
+/**
+ * A single group built by a {@link GatherGroupBy}, holding the value of the
+ * group keys and the aggregates computed over the items of the group. Each
+ * aggregate is read back using the method of the same name it was requested
+ * with.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public final class GatherGroup {
+
+	/**
+	 * The value of the key, or the list of values when grouping by many keys
+	 */
+	final Object key;
+
+	/**
+	 * Position in the collection of the first item of the group
+	 */
+	int first;
+
+	/**
+	 * Number of items in the group
+	 */
+	int size;
+
+	/**
+	 * One aggregator per column of the group by, along with the number of
+	 * items that had the key of the column
+	 */
+	final GatherMergeableAggregator[] aggregators;
+
+	final int[] found;
+
+	/**
+	 * Index of each column by its name, shared by all groups
+	 */
+	private final Map<String, Integer> columns;
+
+	GatherGroup(Object key, int first, GatherMergeableAggregator[] aggregators, Map<String, Integer> columns) {
+		this.key = key;
+		this.first = first;
+		this.aggregators = aggregators;
+		this.found = new int[aggregators.length];
+		this.columns = columns;
+	}
+
+	/**
+	 * Fold another group with the same key into this one.
+	 */
+	void merge(GatherGroup other) {
+		this.first = Math.min(this.first, other.first);
+		this.size += other.size;
+
+		for(int index = 0; index < this.aggregators.length; index++) {
+			this.aggregators[index].merge(other.aggregators[index]);
+			this.found[index] += other.found[index];
+		}
+	}
+
+	/**
+	 * @return the value of the key the items were grouped by, or the
+	 *         {@link List} of values when grouped by many keys
+	 */
+	public Object getKey() {
+		return this.key;
+	}
+
+	/**
+	 * @return the values of the keys the items were grouped by, in the order
+	 *         the keys were given
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object> getKeys() {
+		if(this.key instanceof GroupKey) {
+			return (List<Object>) this.key;
+		}
+
+		return Collections.singletonList(this.key);
+	}
+
+	/**
+	 * @return the number of items in the group
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public Number count(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.COUNT, key));
+	}
+
+	public Number sumAsLong(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.SUM_AS_LONG, key));
+	}
+
+	public Number sumAsDouble(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.SUM_AS_DOUBLE, key));
+	}
+
+	public Number minAsLong(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.MIN_AS_LONG, key));
+	}
+
+	public Number minAsDouble(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.MIN_AS_DOUBLE, key));
+	}
+
+	public Number maxAsLong(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.MAX_AS_LONG, key));
+	}
+
+	public Number maxAsDouble(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.MAX_AS_DOUBLE, key));
+	}
+
+	public Number averageAsLong(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.AVERAGE_AS_LONG, key));
+	}
+
+	public Number averageAsDouble(String key) {
+		return this.get(GatherAggregation.Result.name(Aggregate.AVERAGE_AS_DOUBLE, key));
+	}
+
+	/**
+	 * @return the unique values of the key within the group
+	 */
+	public Set<Object> unique(String key) {
+		return ((GatherAggregator.UniqueAggregator) this.aggregator(GatherGroupBy.uniqueName(key))).getUniqueSet();
+	}
+
+	/**
+	 * Read the result of an aggregate added using
+	 * {@link GatherGroupBy#aggregate(String, String, GatherMergeableAggregator)}.
+	 *
+	 * @param name
+	 *            the name the aggregate was added with
+	 *
+	 * @return the result of the aggregator for this group
+	 */
+	public Number get(String name) {
+		int index = this.index(name);
+		return this.aggregators[index].getResult(this.found[index]);
+	}
+
+	/**
+	 * @return the aggregator of this group for the given name, which may be
+	 *         inspected further
+	 */
+	public GatherAggregator aggregator(String name) {
+		return this.aggregators[this.index(name)];
+	}
+
+	private int index(String name) {
+		Integer index = this.columns.get(name);
+		if(index == null) {
+			throw new IllegalArgumentException("Aggregate was not requested: " + name);
+		}
+
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "GatherGroup[key=" + this.key + ", size=" + this.size + "]";
+	}
+
+	/**
+	 * The values of many group keys. A list, so that it may be handed out as
+	 * is, which compares by its values.
+	 */
+	static final class GroupKey extends AbstractList<Object> implements RandomAccess {
+
+		private final Object[] values;
+
+		private final int hash;
+
+		GroupKey(Object[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public Object get(int index) {
+			return this.values[index];
+		}
+
+		@Override
+		public int size() {
+			return this.values.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(other instanceof GroupKey) {
+				GroupKey key = (GroupKey) other;
+				return this.hash == key.hash && Arrays.equals(this.values, key.values);
+			}
+
+			return super.equals(other);
+		}
+
+	}
+
+}
@@ -0,0 +1,746 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sangupta.gather.GatherAggregation.Aggregate;
+import com.sangupta.gather.GatherGroup.GroupKey;
+import com.sangupta.gather.GatherReflect.FieldAccessor;
+import com.sangupta.gather.GatherReflect.HandleAccessor;
+
+/**
+ * Groups the items of a collection by the value of one or more keys, and
+ * computes aggregates per group in a single pass. For example,
+ * <code>Gather.groupBy(workers, "department").count("salary").averageAsDouble("salary").run()</code>
+ *
+ * Groups are kept in an open addressing hash table keyed by the group value.
+ * When grouping by a single integral primitive field, the table is keyed by
+ * the primitive value itself, so that the key is never boxed per item. Groups
+ * are returned in the order their first item was seen in the collection.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public final class GatherGroupBy {
+
+	/**
+	 * The collection to group
+	 */
+	private final Collection<?> collection;
+
+	/**
+	 * The keys to group by
+	 */
+	private final String[] keys;
+
+	/**
+	 * The query items must match to be grouped, <code>null</code> if all
+	 * items are
+	 */
+	private final CompiledGather filter;
+
+	/**
+	 * The aggregates computed per group, by name, in the order they were
+	 * asked for
+	 */
+	private final Map<String, Column> columns = new LinkedHashMap<>();
+
+	private Having having;
+
+	private boolean parallel;
+
+	GatherGroupBy(Collection<?> collection, String[] keys, CompiledGather filter) {
+		if(keys == null || keys.length == 0) {
+			throw new IllegalArgumentException("At least one key is needed to group by");
+		}
+
+		for(String key : keys) {
+			if(key == null) {
+				throw new IllegalArgumentException("Key to group by cannot be null");
+			}
+		}
+
+		this.collection = collection;
+		this.keys = keys.clone();
+		this.filter = filter;
+		this.parallel = filter != null && filter.parallel;
+	}
+
+	public GatherGroupBy count(String key) {
+		return this.add(key, Aggregate.COUNT);
+	}
+
+	public GatherGroupBy sumAsLong(String key) {
+		return this.add(key, Aggregate.SUM_AS_LONG);
+	}
+
+	public GatherGroupBy sumAsDouble(String key) {
+		return this.add(key, Aggregate.SUM_AS_DOUBLE);
+	}
+
+	public GatherGroupBy minAsLong(String key) {
+		return this.add(key, Aggregate.MIN_AS_LONG);
+	}
+
+	public GatherGroupBy minAsDouble(String key) {
+		return this.add(key, Aggregate.MIN_AS_DOUBLE);
+	}
+
+	public GatherGroupBy maxAsLong(String key) {
+		return this.add(key, Aggregate.MAX_AS_LONG);
+	}
+
+	public GatherGroupBy maxAsDouble(String key) {
+		return this.add(key, Aggregate.MAX_AS_DOUBLE);
+	}
+
+	public GatherGroupBy averageAsLong(String key) {
+		return this.add(key, Aggregate.AVERAGE_AS_LONG);
+	}
+
+	public GatherGroupBy averageAsDouble(String key) {
+		return this.add(key, Aggregate.AVERAGE_AS_DOUBLE);
+	}
+
+	public GatherGroupBy unique(String key) {
+		return this.add(uniqueName(key), key, new GatherAggregator.UniqueAggregator(), false);
+	}
+
+	/**
+	 * Compute a custom aggregate per group. Every group gets its own
+	 * aggregator, created using {@link GatherMergeableAggregator#newPartial()}
+	 * on the given one, which itself is never fed any value.
+	 *
+	 * @param name
+	 *            the name to read the result back with, using
+	 *            {@link GatherGroup#get(String)}
+	 *
+	 * @param key
+	 *            the key to fire aggregation on
+	 *
+	 * @param aggregator
+	 *            the {@link GatherMergeableAggregator} to create group
+	 *            aggregators from
+	 *
+	 * @return this instance
+	 */
+	public GatherGroupBy aggregate(String name, String key, GatherMergeableAggregator aggregator) {
+		if(name == null) {
+			throw new IllegalArgumentException("Name cannot be null");
+		}
+
+		if(aggregator == null) {
+			throw new IllegalArgumentException("Aggregator cannot be null");
+		}
+
+		return this.add(name, key, aggregator, true);
+	}
+
+	/**
+	 * Only keep the groups accepted by the given filter, which is run after
+	 * all groups have been aggregated.
+	 *
+	 * @param having
+	 *            the {@link Having} filter
+	 *
+	 * @return this instance
+	 */
+	public GatherGroupBy having(Having having) {
+		this.having = having;
+		return this;
+	}
+
+	/**
+	 * Build the groups of large {@link java.util.RandomAccess} lists using
+	 * many threads. Each slice of the list is grouped into its own table, and
+	 * the tables are merged at the end.
+	 *
+	 * @return this instance
+	 */
+	public GatherGroupBy parallel() {
+		this.parallel = true;
+		return this;
+	}
+
+	private GatherGroupBy add(String key, Aggregate aggregate) {
+		return this.add(GatherAggregation.Result.name(aggregate, key), key, aggregate.newAggregator(), false);
+	}
+
+	private GatherGroupBy add(String name, String key, GatherMergeableAggregator aggregator, boolean custom) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		if(this.columns.containsKey(name)) {
+			if(custom) {
+				throw new IllegalArgumentException("Aggregate already added: " + name);
+			}
+
+			return this;
+		}
+
+		this.columns.put(name, new Column(key, aggregator));
+		return this;
+	}
+
+	/**
+	 * Group the collection and compute all the requested aggregates. The group
+	 * by may be run again, say after the collection changed.
+	 *
+	 * @return the groups, in the order their first item was seen
+	 */
+	public List<GatherGroup> run() {
+		if(this.collection == null || this.collection.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Plan plan = new Plan(this.keys, this.filter, this.columns);
+
+		List<GatherGroup> groups;
+		if(this.parallel && GatherParallelExecutor.supports(this.collection)) {
+			Object[] slices = GatherParallelExecutor.groupBy((List<?>) this.collection, plan);
+
+			Builder[] builders = new Builder[slices.length];
+			for(int index = 0; index < slices.length; index++) {
+				builders[index] = (Builder) slices[index];
+			}
+
+			groups = Builder.collect(builders);
+		} else {
+			Builder builder = new Builder(plan);
+
+			int position = 0;
+			for(Object item : this.collection) {
+				builder.add(item, position++);
+			}
+
+			groups = Builder.collect(builder);
+		}
+
+		if(this.having == null) {
+			return groups;
+		}
+
+		List<GatherGroup> accepted = new ArrayList<>();
+		for(GatherGroup group : groups) {
+			if(this.having.accept(group)) {
+				accepted.add(group);
+			}
+		}
+
+		return accepted;
+	}
+
+	static String uniqueName(String key) {
+		return "UNIQUE(" + key + ")";
+	}
+
+	/**
+	 * Filter over the aggregated groups, like the <code>HAVING</code> clause
+	 * of SQL.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	public interface Having {
+
+		public boolean accept(GatherGroup group);
+
+	}
+
+	/**
+	 * A single aggregate computed per group
+	 */
+	static final class Column {
+
+		final String key;
+
+		final GatherMergeableAggregator prototype;
+
+		Column(String key, GatherMergeableAggregator prototype) {
+			this.key = key;
+			this.prototype = prototype;
+		}
+
+	}
+
+	/**
+	 * Everything needed to build groups, fixed when the group by is run so
+	 * that it may be shared by many builders
+	 */
+	static final class Plan {
+
+		final String[] keys;
+
+		final CompiledGather filter;
+
+		final String[] columnKeys;
+
+		final GatherMergeableAggregator[] prototypes;
+
+		final Map<String, Integer> columns;
+
+		Plan(String[] keys, CompiledGather filter, Map<String, Column> columns) {
+			this.keys = keys;
+			this.filter = filter;
+			this.columnKeys = new String[columns.size()];
+			this.prototypes = new GatherMergeableAggregator[columns.size()];
+
+			Map<String, Integer> indices = new HashMap<>();
+			int index = 0;
+			for(Map.Entry<String, Column> entry : columns.entrySet()) {
+				this.columnKeys[index] = entry.getValue().key;
+				this.prototypes[index] = entry.getValue().prototype;
+				indices.put(entry.getKey(), index);
+				index++;
+			}
+
+			this.columns = Collections.unmodifiableMap(indices);
+		}
+
+		GatherGroup newGroup(Object key, int first) {
+			GatherMergeableAggregator[] aggregators = new GatherMergeableAggregator[this.prototypes.length];
+			for(int index = 0; index < aggregators.length; index++) {
+				aggregators[index] = this.prototypes[index].newPartial();
+			}
+
+			return new GatherGroup(key, first, aggregators, this.columns);
+		}
+
+	}
+
+	/**
+	 * Groups the items of a collection, or of a slice of it, into hash
+	 * tables. A builder is only ever used by a single thread.
+	 */
+	static final class Builder {
+
+		private final Plan plan;
+
+		/**
+		 * Groups keyed by boxed, or composed, values
+		 */
+		private final ObjectTable objects;
+
+		/**
+		 * Groups keyed by integral primitive values, one table per field type
+		 */
+		private final Map<Class<?>, LongTable> primitives = new IdentityHashMap<>();
+
+		/**
+		 * The class of the last item seen, and how its keys are read, as
+		 * collections are mostly made of a single class
+		 */
+		private Class<?> lastClass;
+
+		private final FieldAccessor[] accessors;
+
+		private final FieldAccessor[] columnAccessors;
+
+		private HandleAccessor primitive;
+
+		private LongTable primitiveTable;
+
+		Builder(Plan plan) {
+			this.plan = plan;
+			this.objects = new ObjectTable(plan);
+			this.accessors = new FieldAccessor[plan.keys.length];
+			this.columnAccessors = new FieldAccessor[plan.columnKeys.length];
+		}
+
+		void add(Object item, int position) {
+			if(item == null) {
+				return;
+			}
+
+			if(this.plan.filter != null && !this.plan.filter.matches(item)) {
+				return;
+			}
+
+			Class<?> clazz = item.getClass();
+			if(clazz != this.lastClass) {
+				this.resolve(clazz);
+			}
+
+			GatherGroup group;
+			if(this.primitive != null) {
+				group = this.primitiveTable.get(this.primitive.getLong(item), position);
+			} else {
+				Object key = this.readKey(item);
+				if(key == GatherReflect.NOT_FOUND) {
+					return;
+				}
+
+				group = this.objects.get(key, position);
+			}
+
+			group.size++;
+
+			final FieldAccessor[] columns = this.columnAccessors;
+			for(int index = 0; index < columns.length; index++) {
+				group.found[index] = GatherExecutor.aggregateOnItem(item, columns[index], group.aggregators[index], group.found[index]);
+			}
+		}
+
+		private void resolve(Class<?> clazz) {
+			this.lastClass = clazz;
+			this.primitive = null;
+			this.primitiveTable = null;
+
+			for(int index = 0; index < this.accessors.length; index++) {
+				this.accessors[index] = GatherReflect.getAccessorForClass(clazz, this.plan.keys[index]);
+			}
+
+			for(int index = 0; index < this.columnAccessors.length; index++) {
+				this.columnAccessors[index] = GatherReflect.getAccessorForClass(clazz, this.plan.columnKeys[index]);
+			}
+
+			if(this.accessors.length != 1 || !(this.accessors[0] instanceof HandleAccessor)) {
+				return;
+			}
+
+			HandleAccessor handle = (HandleAccessor) this.accessors[0];
+			Class<?> type = handle.type;
+			if(handle.readsLong() && (type == byte.class || type == short.class || type == char.class || type == int.class || type == long.class)) {
+				LongTable table = this.primitives.get(type);
+				if(table == null) {
+					table = new LongTable(this.plan, type);
+					this.primitives.put(type, table);
+				}
+
+				this.primitive = handle;
+				this.primitiveTable = table;
+			}
+		}
+
+		/**
+		 * @return the value of the key, a {@link GroupKey} when grouping by
+		 *         many keys, or {@link GatherReflect#NOT_FOUND} if the item
+		 *         misses any of the keys
+		 */
+		private Object readKey(Object item) {
+			if(this.accessors.length == 1) {
+				if(this.accessors[0] == null) {
+					return GatherReflect.NOT_FOUND;
+				}
+
+				return this.accessors[0].get(item);
+			}
+
+			Object[] values = new Object[this.accessors.length];
+			for(int index = 0; index < values.length; index++) {
+				if(this.accessors[index] == null) {
+					return GatherReflect.NOT_FOUND;
+				}
+
+				values[index] = this.accessors[index].get(item);
+				if(values[index] == GatherReflect.NOT_FOUND) {
+					return GatherReflect.NOT_FOUND;
+				}
+			}
+
+			return new GroupKey(values);
+		}
+
+		/**
+		 * Gather the groups of all builders in encounter order, merging groups
+		 * with the same key that were built in different tables or slices.
+		 */
+		static List<GatherGroup> collect(Builder... builders) {
+			List<GatherGroup> groups = new ArrayList<>();
+
+			int tables = 0;
+			for(Builder builder : builders) {
+				if(builder.objects.size > 0) {
+					builder.objects.addTo(groups);
+					tables++;
+				}
+
+				for(LongTable table : builder.primitives.values()) {
+					if(table.size > 0) {
+						table.addTo(groups);
+						tables++;
+					}
+				}
+			}
+
+			Collections.sort(groups, new Comparator<GatherGroup>() {
+
+				@Override
+				public int compare(GatherGroup first, GatherGroup second) {
+					return first.first < second.first ? -1 : (first.first == second.first ? 0 : 1);
+				}
+
+			});
+
+			if(tables <= 1) {
+				return groups;
+			}
+
+			Map<Object, GatherGroup> merged = new HashMap<>(groups.size() * 2);
+			List<GatherGroup> results = new ArrayList<>();
+			for(GatherGroup group : groups) {
+				GatherGroup existing = merged.get(group.key);
+				if(existing == null) {
+					merged.put(group.key, group);
+					results.add(group);
+					continue;
+				}
+
+				existing.merge(group);
+			}
+
+			return results;
+		}
+
+	}
+
+	/**
+	 * Open addressing table of groups keyed by any object, <code>null</code>
+	 * included, using linear probing.
+	 */
+	static final class ObjectTable {
+
+		private final Plan plan;
+
+		private int[] hashes = new int[16];
+
+		private Object[] keys = new Object[16];
+
+		private GatherGroup[] groups = new GatherGroup[16];
+
+		int size;
+
+		ObjectTable(Plan plan) {
+			this.plan = plan;
+		}
+
+		GatherGroup get(Object key, int position) {
+			final int hash = hash(key);
+			final int mask = this.groups.length - 1;
+
+			int slot = hash & mask;
+			while(true) {
+				GatherGroup group = this.groups[slot];
+				if(group == null) {
+					group = this.plan.newGroup(key, position);
+					this.insert(slot, hash, key, group);
+					return group;
+				}
+
+				if(this.hashes[slot] == hash && equal(this.keys[slot], key)) {
+					return group;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		private void insert(int slot, int hash, Object key, GatherGroup group) {
+			this.hashes[slot] = hash;
+			this.keys[slot] = key;
+			this.groups[slot] = group;
+
+			this.size++;
+			if(this.size * 2 > this.groups.length) {
+				this.grow();
+			}
+		}
+
+		private void grow() {
+			int[] hashes = this.hashes;
+			Object[] keys = this.keys;
+			GatherGroup[] groups = this.groups;
+
+			int capacity = groups.length << 1;
+			this.hashes = new int[capacity];
+			this.keys = new Object[capacity];
+			this.groups = new GatherGroup[capacity];
+
+			final int mask = capacity - 1;
+			for(int index = 0; index < groups.length; index++) {
+				if(groups[index] == null) {
+					continue;
+				}
+
+				int slot = hashes[index] & mask;
+				while(this.groups[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+
+				this.hashes[slot] = hashes[index];
+				this.keys[slot] = keys[index];
+				this.groups[slot] = groups[index];
+			}
+		}
+
+		void addTo(List<GatherGroup> list) {
+			for(GatherGroup group : this.groups) {
+				if(group != null) {
+					list.add(group);
+				}
+			}
+		}
+
+		private static int hash(Object key) {
+			if(key == null) {
+				return 0;
+			}
+
+			int hash = key.hashCode() * 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+
+		private static boolean equal(Object first, Object second) {
+			if(first == second) {
+				return true;
+			}
+
+			return first != null && first.equals(second);
+		}
+
+	}
+
+	/**
+	 * Open addressing table of groups keyed by an integral primitive, using
+	 * linear probing. The key is boxed only once, when its group is created.
+	 */
+	static final class LongTable {
+
+		private final Plan plan;
+
+		/**
+		 * The primitive type of the field, used to box the key of a new group
+		 * the same way reading the field would
+		 */
+		private final Class<?> type;
+
+		private long[] keys = new long[16];
+
+		private GatherGroup[] groups = new GatherGroup[16];
+
+		int size;
+
+		LongTable(Plan plan, Class<?> type) {
+			this.plan = plan;
+			this.type = type;
+		}
+
+		GatherGroup get(long key, int position) {
+			final int mask = this.groups.length - 1;
+
+			int slot = slot(key, mask);
+			while(true) {
+				GatherGroup group = this.groups[slot];
+				if(group == null) {
+					group = this.plan.newGroup(this.box(key), position);
+					this.keys[slot] = key;
+					this.groups[slot] = group;
+
+					this.size++;
+					if(this.size * 2 > this.groups.length) {
+						this.grow();
+					}
+
+					return group;
+				}
+
+				if(this.keys[slot] == key) {
+					return group;
+				}
+
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		private void grow() {
+			long[] keys = this.keys;
+			GatherGroup[] groups = this.groups;
+
+			int capacity = groups.length << 1;
+			this.keys = new long[capacity];
+			this.groups = new GatherGroup[capacity];
+
+			final int mask = capacity - 1;
+			for(int index = 0; index < groups.length; index++) {
+				if(groups[index] == null) {
+					continue;
+				}
+
+				int slot = slot(keys[index], mask);
+				while(this.groups[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+
+				this.keys[slot] = keys[index];
+				this.groups[slot] = groups[index];
+			}
+		}
+
+		void addTo(List<GatherGroup> list) {
+			for(GatherGroup group : this.groups) {
+				if(group != null) {
+					list.add(group);
+				}
+			}
+		}
+
+		private Object box(long key) {
+			if(this.type == int.class) {
+				return (int) key;
+			}
+
+			if(this.type == long.class) {
+				return key;
+			}
+
+			if(this.type == short.class) {
+				return (short) key;
+			}
+
+			if(this.type == byte.class) {
+				return (byte) key;
+			}
+
+			return (char) key;
+		}
+
+		private static int slot(long key, int mask) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+
+	}
+
+}
@@ -0,0 +1,313 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link GatherIndex} that maps each distinct value of the key to the
+ * positions of the items holding it. Equality, <code>IN</code> and
+ * <code>isNull</code> criteria become hash lookups. String values are also
+ * indexed by their case-folded form, which answers case-insensitive equality.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherHashIndex extends GatherIndex {
+
+	/**
+	 * Positions by the value of the key
+	 */
+	private final Map<Object, GatherPositions> values = new HashMap<>();
+
+	/**
+	 * Positions of items with a string value, by the case-folded value
+	 */
+	private final Map<String, GatherPositions> folded = new HashMap<>();
+
+	GatherHashIndex(String key) {
+		super(key);
+	}
+
+	@Override
+	void add(int position, Object value) {
+		positions(this.values, value).add(position);
+
+		if(value instanceof String) {
+			positions(this.folded, fold((String) value)).add(position);
+		}
+	}
+
+	@Override
+	void remove(int position, Object value) {
+		remove(this.values, value, position);
+
+		if(value instanceof String) {
+			remove(this.folded, fold((String) value), position);
+		}
+	}
+
+	@Override
+	GatherBitmap lookup(GatherCriteria criteria, int limit) {
+		int[] positions = this.positions(criteria);
+		if(positions == null) {
+			return null;
+		}
+
+		return GatherBitmap.of(positions);
+	}
+
+	private int[] positions(GatherCriteria criteria) {
+		switch(criteria.operation) {
+			case Equals:
+				return this.lookupEquals(criteria.value);
+
+			case EqualsIgnoreCase:
+				return this.lookupEqualsIgnoreCase(criteria.value);
+
+			case In:
+				return this.lookupIn(criteria.value);
+
+			case IsNull:
+				return toArray(this.values.get(null));
+
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	int estimate(GatherCriteria criteria) {
+		switch(criteria.operation) {
+			case Equals:
+				return criteria.value == null ? 0 : size(this.values.get(criteria.value));
+
+			case EqualsIgnoreCase:
+				if(criteria.value == null) {
+					return 0;
+				}
+
+				int strings = size(this.folded.get(fold(criteria.value.toString())));
+				return criteria.value instanceof String ? strings : strings + size(this.values.get(criteria.value));
+
+			case In:
+				if(GatherUtils.hasOwnEquality(criteria.value)) {
+					return -1;
+				}
+
+				// an upper bound, as the values are distinct
+				int count = 0;
+				for(Object item : required(criteria.value)) {
+					if(item != null) {
+						count += size(this.values.get(item));
+					}
+				}
+
+				return count;
+
+			case IsNull:
+				return size(this.values.get(null));
+
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Matching ignoring case is looked up using the case-folded strings,
+	 * which may find a few strings that do not match.
+	 */
+	@Override
+	boolean isExact(GatherCriteria criteria) {
+		return criteria.operation != GatherOperation.EqualsIgnoreCase;
+	}
+
+	private int[] lookupEquals(Object value) {
+		// null values never match
+		if(value == null) {
+			return GatherPositions.EMPTY;
+		}
+
+		return toArray(this.values.get(value));
+	}
+
+	/**
+	 * String values match when equal ignoring case to the string form of the
+	 * required value, all others when equal to the required value.
+	 *
+	 * @param value
+	 *            the required value
+	 *
+	 * @return the ascending positions of the candidate items
+	 */
+	private int[] lookupEqualsIgnoreCase(Object value) {
+		if(value == null) {
+			return GatherPositions.EMPTY;
+		}
+
+		int[] strings = toArray(this.folded.get(fold(value.toString())));
+		if(value instanceof String) {
+			return strings;
+		}
+
+		return merge(strings, this.lookupEquals(value));
+	}
+
+	/**
+	 * The positions of the items equal to any of the required values, or
+	 * <code>null</code> when the required set decides for itself which
+	 * values it contains, as the hash of a value cannot be trusted then.
+	 *
+	 * @param value
+	 *            the required values
+	 *
+	 * @return the ascending positions of the matching items, or
+	 *         <code>null</code> if this index cannot answer
+	 */
+	private int[] lookupIn(Object value) {
+		if(GatherUtils.hasOwnEquality(value)) {
+			return null;
+		}
+
+		List<int[]> found = new ArrayList<>();
+		for(Object item : required(value)) {
+			if(item == null) {
+				continue;
+			}
+
+			GatherPositions positions = this.values.get(item);
+			if(positions != null) {
+				found.add(positions.toArray());
+			}
+		}
+
+		if(found.size() == 1) {
+			return found.get(0);
+		}
+
+		return merge(found.toArray(new int[found.size()][]));
+	}
+
+	/**
+	 * Merge the given ascending positions into one ascending array.
+	 *
+	 * @param arrays
+	 *            the arrays of ascending positions
+	 *
+	 * @return the ascending, distinct positions in any of the arrays
+	 */
+	private static int[] merge(int[]... arrays) {
+		int total = 0;
+		for(int[] positions : arrays) {
+			total += positions.length;
+		}
+
+		int[] result = new int[total];
+		int size = 0;
+		for(int[] positions : arrays) {
+			System.arraycopy(positions, 0, result, size, positions.length);
+			size += positions.length;
+		}
+
+		// sort once, instead of merging many times
+		return GatherPositions.sorted(result);
+	}
+
+	private static <K> GatherPositions positions(Map<K, GatherPositions> map, K value) {
+		GatherPositions positions = map.get(value);
+		if(positions == null) {
+			positions = new GatherPositions();
+			map.put(value, positions);
+		}
+
+		return positions;
+	}
+
+	private static <K> void remove(Map<K, GatherPositions> map, K value, int position) {
+		GatherPositions positions = map.get(value);
+		if(positions == null) {
+			return;
+		}
+
+		positions.remove(position);
+		if(positions.size() == 0) {
+			map.remove(value);
+		}
+	}
+
+	/**
+	 * The values of an <code>IN</code> criteria, none if it is neither a
+	 * collection nor an array.
+	 */
+	private static Collection<?> required(Object value) {
+		if(value instanceof Collection) {
+			return (Collection<?>) value;
+		}
+
+		if(value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+
+		return Collections.emptyList();
+	}
+
+	private static int size(GatherPositions positions) {
+		return positions == null ? 0 : positions.size();
+	}
+
+	private static int[] toArray(GatherPositions positions) {
+		if(positions == null) {
+			return GatherPositions.EMPTY;
+		}
+
+		return positions.toArray();
+	}
+
+	/**
+	 * Fold the case of every code point of the string, the same way
+	 * {@link String#equalsIgnoreCase(String)} compares characters. Strings
+	 * equal ignoring case therefore have the same folded form.
+	 *
+	 * @param value
+	 *            the string to fold
+	 *
+	 * @return the case-folded string
+	 */
+	static String fold(String value) {
+		StringBuilder builder = new StringBuilder(value.length());
+		for(int index = 0; index < value.length(); ) {
+			int codePoint = value.codePointAt(index);
+			builder.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint)));
+			index += Character.charCount(codePoint);
+		}
+
+		return builder.toString();
+	}
+
+}
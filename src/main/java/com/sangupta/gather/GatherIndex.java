@@ -0,0 +1,148 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+/**
+ * An index over the values of a single key of the items of a
+ * {@link GatherIndexedCollection} or a {@link GatherCollection}. Items are
+ * known to an index by their position in the collection. For the criteria it
+ * understands, an index returns the positions of the items that may match,
+ * so that only those are tested against the query.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+abstract class GatherIndex {
+
+	/**
+	 * The key whose values are indexed
+	 */
+	final String key;
+
+	/**
+	 * The estimate of an index that cannot tell the number of items a lookup
+	 * finds
+	 */
+	static final int UNKNOWN = Integer.MAX_VALUE;
+
+	GatherIndex(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Add the value of the key for the item at the given position. Until the
+	 * index is complete, positions are added in ascending order. Afterwards,
+	 * the items of a {@link GatherCollection} may be added at any position
+	 * that is not held. Items that do not have the key are never added.
+	 *
+	 * @param position
+	 *            the position of the item in the collection
+	 *
+	 * @param value
+	 *            the value of the key, may be <code>null</code>
+	 */
+	abstract void add(int position, Object value);
+
+	/**
+	 * Remove the item at the given position from a complete index.
+	 *
+	 * @param position
+	 *            the position of the item in the collection
+	 *
+	 * @param value
+	 *            the value of the key that was added for the item
+	 */
+	abstract void remove(int position, Object value);
+
+	/**
+	 * Called once all items have been added, before the first lookup.
+	 */
+	void complete() {
+		// nothing to do
+	}
+
+	/**
+	 * Find the items that may match the given criteria on the key of this
+	 * index. The criteria is never a negated one.
+	 *
+	 * Many threads look up a complete index at once, with no lock other than
+	 * the read lock of a {@link GatherCollection}. A lookup must therefore
+	 * never write to the index, not even to trim or cache its own data. The
+	 * returned {@link GatherBitmap} may be shared with the index, and is only
+	 * read.
+	 *
+	 * @param criteria
+	 *            the {@link GatherCriteria} to look up
+	 *
+	 * @param limit
+	 *            if positive, an exact index may return only this many of
+	 *            the smallest positions
+	 *
+	 * @return the {@link GatherBitmap} of the positions of the candidate
+	 *         items, or <code>null</code> if this index cannot answer the
+	 *         criteria, or if scanning would find the first
+	 *         <code>limit</code> items faster
+	 */
+	abstract GatherBitmap lookup(GatherCriteria criteria, int limit);
+
+	/**
+	 * Estimate the number of items a lookup of the given criteria finds,
+	 * without building their positions, so that the criteria that do not
+	 * narrow the candidates enough are tested instead. Like a lookup, this
+	 * never writes to the index.
+	 *
+	 * @param criteria
+	 *            the {@link GatherCriteria} to estimate, never a negated one
+	 *
+	 * @return the estimated number of items, {@link #UNKNOWN} if the index
+	 *         cannot tell without looking up, or <code>-1</code> if it
+	 *         cannot answer the criteria
+	 */
+	int estimate(GatherCriteria criteria) {
+		return UNKNOWN;
+	}
+
+	/**
+	 * Check if this index keeps the positions it finds as bitmaps, so that a
+	 * lookup costs little however many items it finds.
+	 *
+	 * @return <code>true</code> if lookups are cheap, <code>false</code> if
+	 *         their cost grows with the number of items found
+	 */
+	boolean isPrebuilt() {
+		return false;
+	}
+
+	/**
+	 * Check if the positions returned for the given criteria are exactly
+	 * those of the matching items, so that the items need not be tested.
+	 *
+	 * @param criteria
+	 *            the {@link GatherCriteria} that was looked up
+	 *
+	 * @return <code>true</code> if the lookup is exact, <code>false</code>
+	 *         if it may return more items than match
+	 */
+	abstract boolean isExact(GatherCriteria criteria);
+
+}
@@ -0,0 +1,692 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.sangupta.gather.GatherCompositeIndex.Match;
+import com.sangupta.gather.GatherReflect.FieldAccessor;
+
+/**
+ * The indexes of a {@link GatherIndexedCollection}, by key, and the planning
+ * of queries against them. Like {@link CompiledGather}, a query is split at
+ * every <code>OR</code> into chains of <code>AND</code>-ed criteria. The
+ * candidates of a chain are the intersection of the candidates of its indexed
+ * criteria, and the candidates of the query are the union of those of all
+ * chains. A query with a chain that no index can narrow is scanned in full.
+ * A negated criteria is answered by removing the candidates of the criteria
+ * from all items, which is only possible when the index answers it exactly.
+ * When every criteria of the query is answered exactly by an index, the
+ * candidates are the results, and the items need not be tested at all.
+ * Candidates are kept as {@link GatherBitmap}s, so that they are combined
+ * without reading any item.
+ *
+ * Indexed criteria are looked up from the one estimated to cost the least to
+ * the one that costs the most. A criteria whose candidates would cost more to
+ * build than testing the candidates found so far is left to be tested, and a
+ * chain whose candidates are still most of the items is scanned.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherIndexSet {
+
+	/**
+	 * How many times more building the position of a candidate costs than
+	 * testing an item
+	 */
+	private static final long LOOKUP_COST = 4;
+
+	/**
+	 * Orders the steps of a chain from the cheapest
+	 */
+	private static final Comparator<Step> CHEAPEST = new Comparator<Step>() {
+
+		@Override
+		public int compare(Step first, Step second) {
+			return Integer.compare(first.cost, second.cost);
+		}
+
+	};
+
+	private final Map<String, List<GatherIndex>> indexes = new HashMap<>();
+
+	private final List<GatherCompositeIndex> composites = new ArrayList<>();
+
+	/**
+	 * The positions of all items that are not <code>null</code>, which a
+	 * negated criteria may match
+	 */
+	private GatherBitmap all;
+
+	/**
+	 * The value of each indexed key for every item, by key and position, that
+	 * is removed from the indexes when the item is removed or updated.
+	 * <code>null</code> if items never change.
+	 */
+	private final Map<String, List<Object>> values;
+
+	GatherIndexSet() {
+		this(false);
+	}
+
+	/**
+	 * @param live
+	 *            whether items will be added, removed and updated once
+	 *            indexed
+	 */
+	GatherIndexSet(boolean live) {
+		this.values = live ? new HashMap<String, List<Object>>() : null;
+	}
+
+	/**
+	 * Fill the given index with the values of the items, and make it
+	 * available to queries.
+	 *
+	 * @param index
+	 *            the empty {@link GatherIndex} to fill
+	 *
+	 * @param items
+	 *            the items to index, by position
+	 */
+	void add(GatherIndex index, List<?> items) {
+		List<Object> values = this.prepare(index.key, items);
+		for(int position = 0; position < values.size(); position++) {
+			Object value = values.get(position);
+			if(value != GatherReflect.NOT_FOUND) {
+				index.add(position, value);
+			}
+		}
+
+		index.complete();
+
+		List<GatherIndex> list = this.indexes.get(index.key);
+		if(list == null) {
+			list = new ArrayList<>();
+			this.indexes.put(index.key, list);
+		}
+
+		list.add(index);
+	}
+
+	/**
+	 * Fill the given composite index with the values of the items, and make
+	 * it available to queries.
+	 *
+	 * @param index
+	 *            the empty {@link GatherCompositeIndex} to fill
+	 *
+	 * @param items
+	 *            the items to index, by position
+	 */
+	void add(GatherCompositeIndex index, List<?> items) {
+		List<List<Object>> values = new ArrayList<>();
+		for(String key : index.keys) {
+			values.add(this.prepare(key, items));
+		}
+
+		for(int position = 0; position < items.size(); position++) {
+			index.add(position, valuesAt(values, position));
+		}
+
+		index.complete();
+		this.composites.add(index);
+	}
+
+	/**
+	 * Read the values of the given key from the items, unless they are
+	 * already kept.
+	 */
+	private List<Object> prepare(String key, List<?> items) {
+		if(this.all == null) {
+			this.all = new GatherBitmap();
+			for(int position = 0; position < items.size(); position++) {
+				if(items.get(position) != null) {
+					this.all.add(position);
+				}
+			}
+		}
+
+		List<Object> values = this.values == null ? null : this.values.get(key);
+		if(values == null) {
+			values = read(key, items);
+			if(this.values != null) {
+				this.values.put(key, values);
+			}
+		}
+
+		return values;
+	}
+
+	boolean isEmpty() {
+		return this.indexes.isEmpty() && this.composites.isEmpty();
+	}
+
+	/**
+	 * Add a new item to all indexes.
+	 *
+	 * @param position
+	 *            the position of the item, either the end of the collection
+	 *            or a position that was freed
+	 *
+	 * @param item
+	 *            the item, not <code>null</code>
+	 */
+	void add(int position, Object item) {
+		if(this.all != null) {
+			this.all.add(position);
+		}
+
+		for(Entry<String, List<Object>> entry : this.values.entrySet()) {
+			Object value = read(entry.getKey(), item);
+
+			List<Object> values = entry.getValue();
+			if(position == values.size()) {
+				values.add(value);
+			} else {
+				values.set(position, value);
+			}
+		}
+
+		for(Entry<String, List<GatherIndex>> entry : this.indexes.entrySet()) {
+			Object value = this.values.get(entry.getKey()).get(position);
+			if(value != GatherReflect.NOT_FOUND) {
+				for(GatherIndex index : entry.getValue()) {
+					index.add(position, value);
+				}
+			}
+		}
+
+		for(GatherCompositeIndex composite : this.composites) {
+			composite.add(position, this.valuesAt(composite, position));
+		}
+	}
+
+	/**
+	 * Remove the item at the given position from all indexes, using the
+	 * values it was indexed with.
+	 *
+	 * @param position
+	 *            the position of the item
+	 */
+	void remove(int position) {
+		if(this.all != null) {
+			this.all.remove(position);
+		}
+
+		for(GatherCompositeIndex composite : this.composites) {
+			composite.remove(position, this.valuesAt(composite, position));
+		}
+
+		for(Entry<String, List<GatherIndex>> entry : this.indexes.entrySet()) {
+			Object value = this.values.get(entry.getKey()).get(position);
+			if(value != GatherReflect.NOT_FOUND) {
+				for(GatherIndex index : entry.getValue()) {
+					index.remove(position, value);
+				}
+			}
+		}
+
+		for(List<Object> values : this.values.values()) {
+			values.set(position, GatherReflect.NOT_FOUND);
+		}
+	}
+
+	private Object[] valuesAt(GatherCompositeIndex composite, int position) {
+		Object[] result = new Object[composite.keys.length];
+		for(int index = 0; index < result.length; index++) {
+			result[index] = this.values.get(composite.keys[index]).get(position);
+		}
+
+		return result;
+	}
+
+	private static Object[] valuesAt(List<List<Object>> values, int position) {
+		Object[] result = new Object[values.size()];
+		for(int index = 0; index < result.length; index++) {
+			result[index] = values.get(index).get(position);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Count the items that match the given query.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @param items
+	 *            the indexed items, by position
+	 *
+	 * @return the number of items that matched the query
+	 */
+	int count(Gather gather, List<?> items) {
+		Plan plan = this.plan(gather.criteria, 0);
+		if(plan == null) {
+			return gather.count(items);
+		}
+
+		if(plan.exact) {
+			return plan.positions.cardinality();
+		}
+
+		CompiledGather compiled = gather.compile();
+
+		int count = 0;
+		for(int position : plan.positions.toArray()) {
+			if(compiled.matches(items.get(position))) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Execute the given query over the items. When the indexes answer the
+	 * query exactly, only the items of the page asked for are read.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @param items
+	 *            the indexed items, by position
+	 *
+	 * @param numResults
+	 *            the maximum number of items to return, all if not positive
+	 *
+	 * @param skipCount
+	 *            the number of matching items to skip
+	 *
+	 * @return the matching items, in the order of their positions
+	 */
+	<T> List<T> find(Gather gather, List<T> items, int numResults, int skipCount) {
+		final int skip = Math.max(skipCount, 0);
+		final int limit = numResults > 0 ? skip + numResults : 0;
+
+		Plan plan = this.plan(gather.criteria, limit);
+		if(plan == null) {
+			return gather.find(items, numResults, skipCount);
+		}
+
+		List<T> results = new ArrayList<>();
+
+		if(plan.exact) {
+			for(int position : plan.positions.toArray(skip, numResults)) {
+				results.add(items.get(position));
+			}
+
+			return results;
+		}
+
+		CompiledGather compiled = gather.compile();
+
+		int skipped = 0;
+		for(int position : plan.positions.toArray()) {
+			T item = items.get(position);
+			if(!compiled.matches(item)) {
+				continue;
+			}
+
+			// skip elements asked for
+			if(skip > 0 && skipped < skip) {
+				skipped++;
+				continue;
+			}
+
+			results.add(item);
+
+			// break if we have accumulated enough results
+			if(numResults > 0 && results.size() == numResults) {
+				break;
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Find the items that may match the given criteria.
+	 *
+	 * @param criteria
+	 *            the criteria of a {@link Gather} query
+	 *
+	 * @param limit
+	 *            if positive, the number of matching items needed, which lets
+	 *            a query answered exactly by a single index return only that
+	 *            many positions
+	 *
+	 * @return the {@link Plan} with the candidate items, or <code>null</code>
+	 *         if all items must be scanned
+	 */
+	Plan plan(List<GatherCriteria> criteria, int limit) {
+		if(criteria.isEmpty() || this.isEmpty()) {
+			return null;
+		}
+
+		List<List<GatherCriteria>> chains = new ArrayList<>();
+		List<GatherCriteria> allOf = new ArrayList<>();
+
+		for(GatherCriteria current : criteria) {
+			// the join of the very first clause has no meaning
+			if(current.join == GatherSiblingJoin.OR && !allOf.isEmpty()) {
+				chains.add(allOf);
+				allOf = new ArrayList<>();
+			}
+
+			allOf.add(current);
+		}
+
+		chains.add(allOf);
+
+		if(chains.size() == 1) {
+			return this.chainPlan(allOf, limit);
+		}
+
+		GatherBitmap anyOf = new GatherBitmap();
+		boolean exact = true;
+		for(List<GatherCriteria> chain : chains) {
+			Plan plan = this.chainPlan(chain, 0);
+			if(plan == null) {
+				return null;
+			}
+
+			anyOf = GatherBitmap.or(anyOf, plan.positions);
+			exact = exact && plan.exact;
+		}
+
+		return new Plan(anyOf, exact);
+	}
+
+	private Plan chainPlan(List<GatherCriteria> chain, int limit) {
+		// positions can only be cut short if nothing is intersected
+		if(chain.size() > 1) {
+			limit = 0;
+		}
+
+		GatherBitmap result = null;
+		boolean exact = true;
+
+		// a composite index answers many criteria at once
+		Match match = this.lookupComposite(chain);
+		if(match != null) {
+			if(match.positions.isEmpty()) {
+				return new Plan(match.positions, true);
+			}
+
+			result = match.positions;
+			chain = match.residual;
+		}
+
+		final int total = this.all.cardinality();
+
+		List<Step> steps = new ArrayList<>();
+		for(GatherCriteria criteria : chain) {
+			Step step = this.step(criteria);
+			if(step == null) {
+				exact = false;
+				continue;
+			}
+
+			steps.add(step);
+		}
+
+		Collections.sort(steps, CHEAPEST);
+
+		for(Step step : steps) {
+			// testing the candidates found so far is cheaper
+			int candidates = result == null ? total : result.cardinality();
+			if(step.cost != GatherIndex.UNKNOWN && step.cost * LOOKUP_COST > candidates) {
+				exact = false;
+				continue;
+			}
+
+			Plan found = this.lookup(step.criteria, limit);
+			if(found == null) {
+				exact = false;
+				continue;
+			}
+
+			result = result == null ? found.positions : GatherBitmap.and(result, found.positions);
+			exact = exact && found.exact;
+			if(result.isEmpty()) {
+				// nothing can match the chain
+				return new Plan(result, true);
+			}
+		}
+
+		if(result == null) {
+			return null;
+		}
+
+		// testing most items is no faster than a scan
+		if(!exact && result.cardinality() > total / 2) {
+			return null;
+		}
+
+		return new Plan(result, exact);
+	}
+
+	/**
+	 * Estimate the cost of looking up the given criteria, which is the number
+	 * of positions to build, as the positions of some indexes are kept
+	 * ready.
+	 *
+	 * @param criteria
+	 *            the {@link GatherCriteria} of a chain
+	 *
+	 * @return the {@link Step}, or <code>null</code> if no index answers the
+	 *         criteria
+	 */
+	private Step step(GatherCriteria criteria) {
+		if(criteria.operation == GatherOperation.SubQuery) {
+			return new Step(criteria, GatherIndex.UNKNOWN);
+		}
+
+		List<GatherIndex> list = this.indexes.get(criteria.key);
+		if(list == null) {
+			return null;
+		}
+
+		int cost = -1;
+		for(GatherIndex index : list) {
+			// only the complement of exact candidates is known to match
+			if(criteria.inverse && !index.isExact(criteria)) {
+				continue;
+			}
+
+			int estimate = index.estimate(criteria);
+			if(estimate < 0) {
+				continue;
+			}
+
+			if(index.isPrebuilt()) {
+				estimate = 0;
+			}
+
+			if(cost < 0 || estimate < cost) {
+				cost = estimate;
+			}
+		}
+
+		return cost < 0 ? null : new Step(criteria, cost);
+	}
+
+	/**
+	 * Find the composite index that answers the most criteria of the chain,
+	 * and among those, the one that narrows the most.
+	 */
+	private Match lookupComposite(List<GatherCriteria> chain) {
+		Match best = null;
+		for(GatherCompositeIndex composite : this.composites) {
+			Match match = composite.lookup(chain);
+			if(match == null) {
+				continue;
+			}
+
+			if(best == null || match.residual.size() < best.residual.size()
+					|| (match.residual.size() == best.residual.size() && match.positions.cardinality() < best.positions.cardinality())) {
+				best = match;
+			}
+		}
+
+		return best;
+	}
+
+	private Plan lookup(GatherCriteria criteria, int limit) {
+		if(!criteria.inverse) {
+			return this.lookupPositive(criteria, limit);
+		}
+
+		// only the complement of exact candidates is known to match
+		Plan plan = this.lookupPositive(criteria, 0);
+		if(plan == null || !plan.exact) {
+			return null;
+		}
+
+		return new Plan(GatherBitmap.andNot(this.all, plan.positions), true);
+	}
+
+	private Plan lookupPositive(GatherCriteria criteria, int limit) {
+		if(criteria.operation == GatherOperation.SubQuery) {
+			return this.plan(((Gather) criteria.value).criteria, limit);
+		}
+
+		List<GatherIndex> list = this.indexes.get(criteria.key);
+		if(list == null) {
+			return null;
+		}
+
+		// use an exact index if there is one, else the one that narrows the most
+		Plan best = null;
+		for(GatherIndex index : list) {
+			boolean exact = index.isExact(criteria);
+			GatherBitmap found = index.lookup(criteria, exact ? limit : 0);
+			if(found == null) {
+				continue;
+			}
+
+			if(best == null || (exact && !best.exact) || (exact == best.exact && found.cardinality() < best.positions.cardinality())) {
+				best = new Plan(found, exact);
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Read the value of the given key from every item.
+	 *
+	 * @param key
+	 *            the key to read
+	 *
+	 * @param items
+	 *            the items, by position
+	 *
+	 * @return the values by position, {@link GatherReflect#NOT_FOUND} for
+	 *         items that are <code>null</code> or do not have the key
+	 */
+	static List<Object> read(String key, List<?> items) {
+		List<Object> values = new ArrayList<>(items.size());
+
+		Class<?> clazz = null;
+		FieldAccessor accessor = null;
+
+		for(int position = 0; position < items.size(); position++) {
+			Object item = items.get(position);
+			if(item == null) {
+				values.add(GatherReflect.NOT_FOUND);
+				continue;
+			}
+
+			if(item.getClass() != clazz) {
+				clazz = item.getClass();
+				accessor = GatherReflect.getAccessorForClass(clazz, key);
+			}
+
+			values.add(accessor == null ? GatherReflect.NOT_FOUND : accessor.get(item));
+		}
+
+		return values;
+	}
+
+	static Object read(String key, Object item) {
+		if(item == null) {
+			return GatherReflect.NOT_FOUND;
+		}
+
+		FieldAccessor accessor = GatherReflect.getAccessorForClass(item.getClass(), key);
+		if(accessor == null) {
+			return GatherReflect.NOT_FOUND;
+		}
+
+		return accessor.get(item);
+	}
+
+	/**
+	 * A criteria of a chain that an index may answer, and the cost of
+	 * looking it up.
+	 */
+	private static final class Step {
+
+		final GatherCriteria criteria;
+
+		final int cost;
+
+		Step(GatherCriteria criteria, int cost) {
+			this.criteria = criteria;
+			this.cost = cost;
+		}
+
+	}
+
+	/**
+	 * The candidate items for a query.
+	 */
+	static final class Plan {
+
+		/**
+		 * The positions of the candidate items
+		 */
+		final GatherBitmap positions;
+
+		/**
+		 * Whether the candidates are exactly the matching items
+		 */
+		final boolean exact;
+
+		Plan(GatherBitmap positions, boolean exact) {
+			this.positions = positions;
+			this.exact = exact;
+		}
+
+	}
+
+}
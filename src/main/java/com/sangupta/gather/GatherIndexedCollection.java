@@ -0,0 +1,280 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of a collection along with indexes over the values of some of
+ * its keys, so that queries fired again and again against the same items do
+ * not scan all of them. For example,
+ * <code>GatherIndexedCollection.of(workers).withHashIndex("id")</code> answers
+ * <code>Gather.where("id").is(42)</code> with a hash lookup.
+ *
+ * Indexed criteria narrow down the items to test, and the whole query is
+ * tested on each candidate unless the indexes answer it exactly. Results are
+ * always the same as those of a scan, in the order of the collection.
+ * Queries with an <code>OR</code>-ed clause that no index can answer fall
+ * back to a scan.
+ *
+ * The items are copied when the instance is created, but not the items
+ * themselves. Changing the indexed value of an item afterwards leaves the
+ * index stale, use a {@link GatherCollection} for items that change. Once all
+ * indexes are added, the instance may be shared between threads.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public final class GatherIndexedCollection<T> {
+
+	/**
+	 * The items, by position
+	 */
+	private final List<T> items;
+
+	private final GatherIndexSet indexes = new GatherIndexSet();
+
+	private GatherIndexedCollection(List<T> items) {
+		this.items = items;
+	}
+
+	public static <T> GatherIndexedCollection<T> of(Collection<T> collection) {
+		if(collection == null) {
+			throw new IllegalArgumentException("Collection cannot be null");
+		}
+
+		return new GatherIndexedCollection<T>(new ArrayList<T>(collection));
+	}
+
+	public static <T> GatherIndexedCollection<T> of(T[] array) {
+		if(array == null) {
+			throw new IllegalArgumentException("Array cannot be null");
+		}
+
+		return new GatherIndexedCollection<T>(new ArrayList<T>(Arrays.asList(array)));
+	}
+
+	/**
+	 * Add a hash index over the given key, which answers the <code>is</code>,
+	 * <code>in</code>, <code>isNull</code> and <code>isIgnoreCase</code>
+	 * criteria on the key.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherIndexedCollection<T> withHashIndex(String key) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		this.indexes.add(new GatherHashIndex(key), this.items);
+		return this;
+	}
+
+	/**
+	 * Add a bitmap index over the given key, which answers the
+	 * <code>is</code>, <code>in</code> and <code>isNull</code> criteria on the
+	 * key, and their negations, with compressed bitmaps. It suits keys with few
+	 * distinct values, like a status or a <code>boolean</code> flag. A query
+	 * whose criteria are all answered by bitmaps is counted without reading
+	 * any item.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherIndexedCollection<T> withBitmapIndex(String key) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		this.indexes.add(new GatherBitmapIndex(key), this.items);
+		return this;
+	}
+
+	/**
+	 * Add an inverted index over the given key, whose values are collections
+	 * or arrays, which answers the <code>has</code>, <code>hasAny</code> and
+	 * <code>hasAll</code> criteria on the key with posting lists of the items
+	 * holding each element.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherIndexedCollection<T> withInvertedIndex(String key) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		this.indexes.add(new GatherInvertedIndex(key), this.items);
+		return this;
+	}
+
+	/**
+	 * Add a sorted index over the given key, which answers the
+	 * <code>greaterThan</code>, <code>greaterThanOrEquals</code>,
+	 * <code>lessThan</code> and <code>lessThanOrEquals</code> criteria on the
+	 * key with a binary search. The index is used only when all values of the
+	 * key are numbers or {@link Comparable} values of the same class.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherIndexedCollection<T> withSortedIndex(String key) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		this.indexes.add(new GatherSortedIndex(key), this.items);
+		return this;
+	}
+
+	/**
+	 * Add a pattern index over the string form of the given key, which
+	 * answers the <code>like</code> and <code>regex</code> criteria on the
+	 * key. Items starting with the literal prefix of a pattern are found in
+	 * the sorted strings, and items containing its other literals through the
+	 * trigrams of the strings. Only these candidates are then tested against
+	 * the pattern.
+	 *
+	 * @param key
+	 *            the key to index
+	 *
+	 * @return this instance
+	 */
+	public GatherIndexedCollection<T> withPatternIndex(String key) {
+		if(key == null) {
+			throw new IllegalArgumentException("Key cannot be null");
+		}
+
+		this.indexes.add(new GatherPatternIndex(key), this.items);
+		return this;
+	}
+
+	/**
+	 * Add a composite index over the given keys, which answers an
+	 * <code>AND</code> chain holding the <code>is</code> criteria on every key
+	 * but the last, along with the <code>greaterThan</code>,
+	 * <code>greaterThanOrEquals</code>, <code>lessThan</code> and
+	 * <code>lessThanOrEquals</code> criteria on the last key. For example,
+	 * <code>withCompositeIndex("name", "age", "salary")</code> answers
+	 * <code>Gather.where("name").is("sandeep").and("age").is(36).and("salary").greaterThan(500000l)</code>
+	 * with a single hash lookup and a binary search. Other criteria of the
+	 * chain are answered by other indexes, or tested on the candidates.
+	 *
+	 * @param keys
+	 *            the keys to index, at least two, in order
+	 *
+	 * @return this instance
+	 */
+	public GatherIndexedCollection<T> withCompositeIndex(String... keys) {
+		this.indexes.add(new GatherCompositeIndex(keys), this.items);
+		return this;
+	}
+
+	public int size() {
+		return this.items.size();
+	}
+
+	/**
+	 * The items of this collection, in order.
+	 *
+	 * @return an unmodifiable view of the items
+	 */
+	public List<T> items() {
+		return Collections.unmodifiableList(this.items);
+	}
+
+	/**
+	 * Count the number of items that match the given query.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @return the number of items that matched the query
+	 */
+	public int count(Gather gather) {
+		return this.indexes.count(gather, this.items);
+	}
+
+	/**
+	 * Execute the given query over the items, using the indexes to narrow
+	 * down the items to test.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @return the matching items, in the order of the collection
+	 */
+	public List<T> find(Gather gather) {
+		return this.find(gather, 0, 0);
+	}
+
+	public List<T> find(Gather gather, int numResults) {
+		return this.find(gather, numResults, 0);
+	}
+
+	/**
+	 * Execute the given query over the items. When the indexes answer the
+	 * query exactly, only the items of the page asked for are read.
+	 *
+	 * @param gather
+	 *            the {@link Gather} query to fire
+	 *
+	 * @param numResults
+	 *            the maximum number of items to return, all if not positive
+	 *
+	 * @param skipCount
+	 *            the number of matching items to skip
+	 *
+	 * @return the matching items, in the order of the collection
+	 */
+	public List<T> find(Gather gather, int numResults, int skipCount) {
+		return this.indexes.find(gather, this.items, numResults, skipCount);
+	}
+
+	public T findOne(Gather gather) {
+		return this.findOne(gather, 0);
+	}
+
+	public T findOne(Gather gather, int skipCount) {
+		List<T> results = this.find(gather, 1, skipCount);
+		if(results.isEmpty()) {
+			return null;
+		}
+
+		return results.get(0);
+	}
+
+}
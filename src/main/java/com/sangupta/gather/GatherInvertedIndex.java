@@ -0,0 +1,321 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * A {@link GatherIndex} over a key whose values are collections or arrays,
+ * that maps each element to a {@link GatherBitmap} posting list of the
+ * positions of the items holding it. A <code>has</code> criteria becomes a
+ * posting lookup, <code>hasAny</code> a union and <code>hasAll</code> an
+ * intersection of posting lists, smallest first.
+ *
+ * Elements of collections and object arrays are posted as they are. Elements
+ * of integral primitive arrays are posted as <code>long</code> values per
+ * array type, and a required number is narrowed to the type of each array
+ * before looking it up, just like a scan does. Items holding a sorted set,
+ * which may define its own equality, or another kind of array are always
+ * candidates. The candidates are always tested against the query.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherInvertedIndex extends GatherIndex {
+
+	/**
+	 * Stands for a <code>null</code> element of a collection
+	 */
+	private static final Object NULL_ELEMENT = new Object();
+
+	/**
+	 * Positions by element of collections and object arrays
+	 */
+	private final Map<Object, GatherBitmap> elements = new HashMap<>();
+
+	private final Map<Long, GatherBitmap> bytes = new HashMap<>();
+
+	private final Map<Long, GatherBitmap> shorts = new HashMap<>();
+
+	private final Map<Long, GatherBitmap> ints = new HashMap<>();
+
+	private final Map<Long, GatherBitmap> longs = new HashMap<>();
+
+	/**
+	 * Positions of items that must always be tested
+	 */
+	private final GatherBitmap unindexed = new GatherBitmap();
+
+	GatherInvertedIndex(String key) {
+		super(key);
+	}
+
+	@Override
+	void add(int position, Object value) {
+		this.post(position, value, true);
+	}
+
+	@Override
+	void remove(int position, Object value) {
+		this.post(position, value, false);
+	}
+
+	/**
+	 * Add or remove the position in the posting lists of the elements of the
+	 * given value.
+	 */
+	private void post(int position, Object value, boolean add) {
+		if(value instanceof Collection) {
+			if(value instanceof SortedSet) {
+				mark(this.unindexed, position, add);
+				return;
+			}
+
+			for(Object element : (Collection<?>) value) {
+				post(this.elements, element == null ? NULL_ELEMENT : element, position, add);
+			}
+
+			return;
+		}
+
+		if(value instanceof Object[]) {
+			// null elements of an array never match
+			for(Object element : (Object[]) value) {
+				if(element != null) {
+					post(this.elements, element, position, add);
+				}
+			}
+
+			return;
+		}
+
+		if(value instanceof int[]) {
+			for(int element : (int[]) value) {
+				post(this.ints, (long) element, position, add);
+			}
+
+			return;
+		}
+
+		if(value instanceof long[]) {
+			for(long element : (long[]) value) {
+				post(this.longs, element, position, add);
+			}
+
+			return;
+		}
+
+		if(value instanceof short[]) {
+			for(short element : (short[]) value) {
+				post(this.shorts, (long) element, position, add);
+			}
+
+			return;
+		}
+
+		if(value instanceof byte[]) {
+			for(byte element : (byte[]) value) {
+				post(this.bytes, (long) element, position, add);
+			}
+
+			return;
+		}
+
+		if(value != null && value.getClass().isArray()) {
+			mark(this.unindexed, position, add);
+		}
+
+		// other values never match
+	}
+
+	@Override
+	GatherBitmap lookup(GatherCriteria criteria, int limit) {
+		switch(criteria.operation) {
+			case CollectionHasValue:
+				if(criteria.value == null) {
+					return new GatherBitmap();
+				}
+
+				return GatherBitmap.or(this.postings(criteria.value), this.unindexed);
+
+			case CollectionHasAnyValue:
+				return this.lookupAny(criteria.value);
+
+			case CollectionHasAllValues:
+				return this.lookupAll(criteria.value);
+
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	boolean isPrebuilt() {
+		return true;
+	}
+
+	@Override
+	boolean isExact(GatherCriteria criteria) {
+		return false;
+	}
+
+	private GatherBitmap lookupAny(Object value) {
+		Collection<?> required = required(value);
+		if(required == null) {
+			return null;
+		}
+
+		GatherBitmap result = this.unindexed;
+		for(Object item : new LinkedHashSet<>(required)) {
+			if(item == null) {
+				result = GatherBitmap.or(result, get(this.elements, NULL_ELEMENT));
+			} else {
+				result = GatherBitmap.or(result, this.postings(item));
+			}
+		}
+
+		return result;
+	}
+
+	private GatherBitmap lookupAll(Object value) {
+		Collection<?> required = required(value);
+		if(required == null) {
+			return null;
+		}
+
+		Set<Object> distinct = new LinkedHashSet<>(required);
+		distinct.remove(null);
+
+		// every item matches an empty list
+		if(distinct.isEmpty()) {
+			return null;
+		}
+
+		List<GatherBitmap> postings = new ArrayList<>();
+		for(Object item : distinct) {
+			postings.add(this.postings(item));
+		}
+
+		// intersect the smallest lists first
+		Collections.sort(postings, new Comparator<GatherBitmap>() {
+
+			@Override
+			public int compare(GatherBitmap first, GatherBitmap second) {
+				return Integer.compare(first.cardinality(), second.cardinality());
+			}
+
+		});
+
+		GatherBitmap result = postings.get(0);
+		for(int index = 1; index < postings.size() && !result.isEmpty(); index++) {
+			result = GatherBitmap.and(result, postings.get(index));
+		}
+
+		return GatherBitmap.or(result, this.unindexed);
+	}
+
+	/**
+	 * The positions of items holding the given element, whatever the kind of
+	 * collection or array they hold.
+	 *
+	 * @param element
+	 *            the non-null element
+	 *
+	 * @return the {@link GatherBitmap} of positions
+	 */
+	private GatherBitmap postings(Object element) {
+		GatherBitmap result = get(this.elements, element);
+		if(!(element instanceof Number)) {
+			return result;
+		}
+
+		Number number = (Number) element;
+		result = GatherBitmap.or(result, get(this.bytes, (long) number.byteValue()));
+		result = GatherBitmap.or(result, get(this.shorts, (long) number.shortValue()));
+		result = GatherBitmap.or(result, get(this.ints, (long) number.intValue()));
+		result = GatherBitmap.or(result, get(this.longs, number.longValue()));
+		return result;
+	}
+
+	private static Collection<?> required(Object value) {
+		if(value instanceof Collection) {
+			return (Collection<?>) value;
+		}
+
+		if(value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		}
+
+		// primitive arrays of required values are left to the scan
+		return null;
+	}
+
+	private static <K> void post(Map<K, GatherBitmap> map, K element, int position, boolean add) {
+		GatherBitmap bitmap = map.get(element);
+		if(!add) {
+			if(bitmap != null) {
+				bitmap.remove(position);
+				if(bitmap.isEmpty()) {
+					map.remove(element);
+				}
+			}
+
+			return;
+		}
+
+		if(bitmap == null) {
+			bitmap = new GatherBitmap();
+			map.put(element, bitmap);
+		}
+
+		bitmap.add(position);
+	}
+
+	private static void mark(GatherBitmap bitmap, int position, boolean add) {
+		if(add) {
+			bitmap.add(position);
+		} else {
+			bitmap.remove(position);
+		}
+	}
+
+	private static <K> GatherBitmap get(Map<K, GatherBitmap> map, K element) {
+		GatherBitmap bitmap = map.get(element);
+		if(bitmap == null) {
+			return new GatherBitmap();
+		}
+
+		return bitmap;
+	}
+
+}
@@ -0,0 +1,109 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+/**
+ * An open addressing hash set of primitive <code>long</code> values. Each
+ * distinct value is numbered from zero in the order it was added, which lets
+ * callers track hits in a bit set. The set is filled once in the constructor
+ * and never changes afterwards, so it may be shared between threads.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherLongHashSet {
+
+	/**
+	 * Marks an empty slot in {@link #ordinals}
+	 */
+	private static final int FREE = -1;
+
+	private final long[] keys;
+
+	private final int[] ordinals;
+
+	private final int mask;
+
+	/**
+	 * Number of distinct values in the set
+	 */
+	final int size;
+
+	GatherLongHashSet(long[] values) {
+		int capacity = 2;
+		while(capacity < values.length * 2) {
+			capacity <<= 1;
+		}
+
+		this.keys = new long[capacity];
+		this.ordinals = new int[capacity];
+		this.mask = capacity - 1;
+
+		for(int index = 0; index < capacity; index++) {
+			this.ordinals[index] = FREE;
+		}
+
+		int count = 0;
+		for(long value : values) {
+			int slot = this.slot(value);
+			if(this.ordinals[slot] == FREE) {
+				this.keys[slot] = value;
+				this.ordinals[slot] = count++;
+			}
+		}
+
+		this.size = count;
+	}
+
+	/**
+	 * Find the number given to the value when it was added.
+	 *
+	 * @param value
+	 *            the value to look for
+	 *
+	 * @return the ordinal of the value, or <code>-1</code> if the value is not
+	 *         in the set
+	 */
+	int indexOf(long value) {
+		return this.ordinals[this.slot(value)];
+	}
+
+	boolean contains(long value) {
+		return this.indexOf(value) != FREE;
+	}
+
+	/**
+	 * Find the slot holding the value, or the free slot where it would go.
+	 */
+	private int slot(long value) {
+		long hash = value * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & this.mask;
+
+		while(this.ordinals[slot] != FREE && this.keys[slot] != value) {
+			slot = (slot + 1) & this.mask;
+		}
+
+		return slot;
+	}
+
+}
@@ -0,0 +1,54 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+/**
+ * A {@link GatherAggregator} whose partial results can be combined. Parallel
+ * aggregation hands each slice of the collection to its own partial
+ * aggregator, created using {@link #newPartial()}, and then merges the
+ * partials back into the original aggregator in encounter order.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+public interface GatherMergeableAggregator extends GatherAggregator {
+
+	/**
+	 * Create a new, empty aggregator of the same kind and configuration as
+	 * this one.
+	 *
+	 * @return the new {@link GatherMergeableAggregator}
+	 */
+	public GatherMergeableAggregator newPartial();
+
+	/**
+	 * Fold the state of the given partial aggregator into this one. The given
+	 * aggregator is always one created by {@link #newPartial()} on this
+	 * aggregator, and is not used afterwards.
+	 *
+	 * @param other
+	 *            the partial aggregator to merge
+	 */
+	public void merge(GatherMergeableAggregator other);
+
+}
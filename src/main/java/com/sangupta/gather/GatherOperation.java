@@ -30,32 +30,47 @@ package com.sangupta.gather;
  */
 enum GatherOperation {
 
-	CollectionHasValue,
+	CollectionHasValue(4),
 
-	CollectionHasAllValues,
+	CollectionHasAllValues(8),
 
-	CollectionHasAnyValue,
+	CollectionHasAnyValue(8),
 
-	HasProperty,
+	HasProperty(1),
 
-	IsNull,
+	IsNull(1),
 
-	Equals,
+	Equals(1),
 
-	EqualsIgnoreCase,
+	EqualsIgnoreCase(2),
 
-	WildcardMatch,
+	WildcardMatch(8),
 
-	RegexMatch,
+	RegexMatch(16),
 
-	LessThan,
+	LessThan(2),
 
-	LessThanOrEquals,
+	LessThanOrEquals(2),
 
-	GreaterThan,
+	GreaterThan(2),
 
-	GreaterThanOrEquals,
+	GreaterThanOrEquals(2),
 
-	In;
+	In(3),
+
+	/**
+	 * A grouped sub-expression, the value being the nested {@link Gather}
+	 */
+	SubQuery(0);
+
+	/**
+	 * Relative cost of evaluating the operation on a single value, used to run
+	 * cheaper clauses first. Cost of a {@link #SubQuery} is that of its clauses.
+	 */
+	final int cost;
+
+	private GatherOperation(int cost) {
+		this.cost = cost;
+	}
 
 }
@@ -0,0 +1,388 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.sangupta.gather.GatherAggregation.KeyAggregation;
+import com.sangupta.gather.GatherReflect.FieldAccessor;
+
+/**
+ * Runs queries and aggregations over large {@link RandomAccess} lists, or
+ * arrays viewed as such, using fork/join. The list is cut into slices that
+ * are scanned concurrently, and the result of each slice is kept in its own
+ * slot, so that merging them afterwards preserves encounter order.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+abstract class GatherParallelExecutor {
+
+	/**
+	 * Lists smaller than this are always scanned sequentially
+	 */
+	static final int SEQUENTIAL_THRESHOLD = 16 * 1024;
+
+	/**
+	 * No slice is made smaller than this
+	 */
+	static final int MINIMUM_SLICE = 4 * 1024;
+
+	/**
+	 * Pool shared by all parallel queries, created on first use
+	 */
+	private static final class PoolHolder {
+
+		static final ForkJoinPool POOL = new ForkJoinPool();
+
+	}
+
+	/**
+	 * Check if the given collection is worth, and can be, scanned in parallel.
+	 *
+	 * @param collection
+	 *            the collection to check
+	 *
+	 * @return <code>true</code> if the collection is a large enough
+	 *         {@link RandomAccess} {@link List}
+	 */
+	static boolean supports(Collection<?> collection) {
+		return collection instanceof List && collection instanceof RandomAccess && collection.size() >= SEQUENTIAL_THRESHOLD;
+	}
+
+	/**
+	 * Count the items matching the query.
+	 */
+	static <T> int count(final List<T> list, final CompiledGather gather) {
+		Object[] slices = run(list, new SliceWork() {
+
+			@Override
+			Object scan(List<?> list, int from, int to) {
+				int count = 0;
+				for(int index = from; index < to; index++) {
+					if(gather.matches(list.get(index))) {
+						count++;
+					}
+				}
+
+				return count;
+			}
+
+		});
+
+		int count = 0;
+		for(Object slice : slices) {
+			count += (Integer) slice;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Find the items matching the query, in encounter order, skipping the
+	 * first <code>skipCount</code> matches and returning at most
+	 * <code>numResults</code> when positive. No slice ever needs to keep more
+	 * than <code>skipCount + numResults</code> matches.
+	 */
+	static <T> List<T> find(final List<T> list, final CompiledGather gather, final int numResults, final int skipCount) {
+		final int skip = Math.max(0, skipCount);
+		final long sliceLimit = numResults > 0 ? (long) skip + numResults : Long.MAX_VALUE;
+
+		Object[] slices = run(list, new SliceWork() {
+
+			@Override
+			Object scan(List<?> list, int from, int to) {
+				List<Object> matches = new ArrayList<>();
+				for(int index = from; index < to && matches.size() < sliceLimit; index++) {
+					Object item = list.get(index);
+					if(gather.matches(item)) {
+						matches.add(item);
+					}
+				}
+
+				return matches;
+			}
+
+		});
+
+		List<T> results = new ArrayList<>();
+		int skipped = 0;
+		for(Object slice : slices) {
+			@SuppressWarnings("unchecked")
+			List<T> matches = (List<T>) slice;
+
+			for(T item : matches) {
+				if(skipped < skip) {
+					skipped++;
+					continue;
+				}
+
+				results.add(item);
+				if(numResults > 0 && results.size() == numResults) {
+					return results;
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Aggregate the values of the key using a partial aggregator per slice,
+	 * merging the partials into the given aggregator in encounter order. Only
+	 * items matching the filter, if any, are aggregated.
+	 *
+	 * @return the result of the aggregator
+	 */
+	static <T> Number aggregate(final List<T> list, final CompiledGather filter, final String key, final GatherMergeableAggregator aggregator) {
+		Object[] slices = run(list, new SliceWork() {
+
+			@Override
+			Object scan(List<?> list, int from, int to) {
+				GatherMergeableAggregator partial = aggregator.newPartial();
+
+				int found = 0;
+				for(int index = from; index < to; index++) {
+					Object item = list.get(index);
+					if(filter == null || filter.matches(item)) {
+						found = GatherExecutor.aggregateOnItem(item, key, partial, found);
+					}
+				}
+
+				return new Partial(partial, found);
+			}
+
+		});
+
+		int found = 0;
+		for(Object slice : slices) {
+			Partial partial = (Partial) slice;
+
+			aggregator.merge(partial.aggregator);
+			found += partial.found;
+		}
+
+		return aggregator.getResult(found);
+	}
+
+	/**
+	 * Run the aggregations of a {@link GatherAggregation} using partial
+	 * aggregations per slice, merging the partials into the given ones in
+	 * encounter order. Only items matching the filter, if any, are
+	 * aggregated.
+	 */
+	static void aggregate(final List<?> list, final CompiledGather filter, final KeyAggregation[] keys) {
+		Object[] slices = run(list, new SliceWork() {
+
+			@Override
+			Object scan(List<?> list, int from, int to) {
+				KeyAggregation[] partials = new KeyAggregation[keys.length];
+				for(int index = 0; index < keys.length; index++) {
+					partials[index] = keys[index].newPartial();
+				}
+
+				for(int index = from; index < to; index++) {
+					Object item = list.get(index);
+					if(item == null || (filter != null && !filter.matches(item))) {
+						continue;
+					}
+
+					for(KeyAggregation partial : partials) {
+						partial.aggregate(item);
+					}
+				}
+
+				return partials;
+			}
+
+		});
+
+		for(Object slice : slices) {
+			KeyAggregation[] partials = (KeyAggregation[]) slice;
+			for(int index = 0; index < keys.length; index++) {
+				keys[index].merge(partials[index]);
+			}
+		}
+	}
+
+	/**
+	 * Group the items of each slice into its own builder.
+	 *
+	 * @return the {@link GatherGroupBy.Builder} of each slice, in order
+	 */
+	static Object[] groupBy(final List<?> list, final GatherGroupBy.Plan plan) {
+		return run(list, new SliceWork() {
+
+			@Override
+			Object scan(List<?> list, int from, int to) {
+				GatherGroupBy.Builder builder = new GatherGroupBy.Builder(plan);
+				for(int index = from; index < to; index++) {
+					builder.add(list.get(index), index);
+				}
+
+				return builder;
+			}
+
+		});
+	}
+
+	/**
+	 * Read the value of the key from every item that has it, and matches the
+	 * filter if any, in encounter order. Items without the key are left out,
+	 * while <code>null</code> values are kept, just as
+	 * {@link GatherExecutor#aggregateOnItem} counts them.
+	 */
+	static <T> List<Object> values(final List<T> list, final CompiledGather filter, final String key) {
+		Object[] slices = run(list, new SliceWork() {
+
+			@Override
+			Object scan(List<?> list, int from, int to) {
+				List<Object> values = new ArrayList<>(to - from);
+				for(int index = from; index < to; index++) {
+					Object item = list.get(index);
+					if(filter != null && !filter.matches(item)) {
+						continue;
+					}
+
+					FieldAccessor accessor = GatherReflect.getAccessor(item, key);
+					if(accessor == null) {
+						continue;
+					}
+
+					Object value = accessor.get(item);
+					if(value != GatherReflect.NOT_FOUND) {
+						values.add(value);
+					}
+				}
+
+				return values;
+			}
+
+		});
+
+		int size = 0;
+		for(Object slice : slices) {
+			size += ((List<?>) slice).size();
+		}
+
+		List<Object> values = new ArrayList<>(size);
+		for(Object slice : slices) {
+			values.addAll((List<?>) slice);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Cut the list into slices and scan them in the shared pool.
+	 *
+	 * @return the result of each slice, in order
+	 */
+	private static Object[] run(List<?> list, SliceWork work) {
+		final int size = list.size();
+		final int parallelism = PoolHolder.POOL.getParallelism();
+		final int sliceSize = Math.max(MINIMUM_SLICE, (size + parallelism * 8 - 1) / (parallelism * 8));
+		final int slices = (size + sliceSize - 1) / sliceSize;
+
+		Object[] results = new Object[slices];
+		PoolHolder.POOL.invoke(new SliceTask(list, work, sliceSize, 0, slices, results));
+		return results;
+	}
+
+	/**
+	 * The aggregator of a single slice along with the number of items that had
+	 * the key
+	 */
+	static final class Partial {
+
+		final GatherMergeableAggregator aggregator;
+
+		final int found;
+
+		Partial(GatherMergeableAggregator aggregator, int found) {
+			this.aggregator = aggregator;
+			this.found = found;
+		}
+
+	}
+
+	/**
+	 * The scan of a single slice
+	 */
+	static abstract class SliceWork {
+
+		abstract Object scan(List<?> list, int from, int to);
+
+	}
+
+	/**
+	 * Splits a range of slices in halves until a single slice is left.
+	 */
+	static final class SliceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<?> list;
+
+		private final SliceWork work;
+
+		private final int sliceSize;
+
+		private final int fromSlice;
+
+		private final int toSlice;
+
+		private final Object[] results;
+
+		SliceTask(List<?> list, SliceWork work, int sliceSize, int fromSlice, int toSlice, Object[] results) {
+			this.list = list;
+			this.work = work;
+			this.sliceSize = sliceSize;
+			this.fromSlice = fromSlice;
+			this.toSlice = toSlice;
+			this.results = results;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.toSlice - this.fromSlice == 1) {
+				int from = this.fromSlice * this.sliceSize;
+				int to = Math.min(this.list.size(), from + this.sliceSize);
+
+				this.results[this.fromSlice] = this.work.scan(this.list, from, to);
+				return;
+			}
+
+			int middle = (this.fromSlice + this.toSlice) >>> 1;
+			invokeAll(new SliceTask(this.list, this.work, this.sliceSize, this.fromSlice, middle, this.results),
+					  new SliceTask(this.list, this.work, this.sliceSize, middle, this.toSlice, this.results));
+		}
+
+	}
+
+}
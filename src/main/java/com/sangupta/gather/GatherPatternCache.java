@@ -0,0 +1,265 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A size-bounded, thread-safe cache of compiled regular expressions keyed by
+ * the pattern string. Each entry remembers the tick of its last use; the tick
+ * only advances on a miss, and hits are counted on stripes picked by thread,
+ * so that threads hitting the cache at once do not contend. Once the cache
+ * grows past its capacity by an eighth, a single thread evicts the least
+ * recently used entries in one batch, keeping the amortized cost of a miss
+ * low.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+class GatherPatternCache {
+
+	/**
+	 * Default number of patterns kept
+	 */
+	static final int DEFAULT_CAPACITY = 1024;
+
+	private final int capacity;
+
+	private final int evictionThreshold;
+
+	private final ConcurrentMap<String, CachedPattern> patterns = new ConcurrentHashMap<>();
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private final StripedCounter hits = new StripedCounter();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	GatherPatternCache(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		this.capacity = capacity;
+		this.evictionThreshold = capacity + Math.max(1, capacity / 8);
+	}
+
+	/**
+	 * Return the compiled pattern for the given regular expression, compiling
+	 * it on first use.
+	 *
+	 * @param regex
+	 *            the non-null regular expression
+	 *
+	 * @return the {@link CachedPattern}
+	 */
+	CachedPattern get(String regex) {
+		CachedPattern cached = this.patterns.get(regex);
+		if(cached != null) {
+			this.hits.increment();
+			cached.touch(this.clock.get());
+			return cached;
+		}
+
+		this.misses.incrementAndGet();
+
+		cached = new CachedPattern(Pattern.compile(regex));
+		cached.touch(this.clock.incrementAndGet());
+
+		CachedPattern existing = this.patterns.putIfAbsent(regex, cached);
+		if(existing != null) {
+			return existing;
+		}
+
+		if(this.patterns.size() > this.evictionThreshold) {
+			this.evict();
+		}
+
+		return cached;
+	}
+
+	/**
+	 * Remove the least recently used entries until the cache is back to its
+	 * capacity. Only one thread evicts at a time; others simply carry on.
+	 */
+	private void evict() {
+		if(!this.evicting.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			List<Map.Entry<String, CachedPattern>> entries = new ArrayList<>(this.patterns.entrySet());
+			int excess = entries.size() - this.capacity;
+			if(excess <= 0) {
+				return;
+			}
+
+			Collections.sort(entries, BY_LAST_USE);
+			for(int index = 0; index < excess; index++) {
+				Map.Entry<String, CachedPattern> entry = entries.get(index);
+				if(this.patterns.remove(entry.getKey(), entry.getValue())) {
+					this.evictions.incrementAndGet();
+				}
+			}
+		} finally {
+			this.evicting.set(false);
+		}
+	}
+
+	private static final Comparator<Map.Entry<String, CachedPattern>> BY_LAST_USE = new Comparator<Map.Entry<String, CachedPattern>>() {
+
+		@Override
+		public int compare(Map.Entry<String, CachedPattern> first, Map.Entry<String, CachedPattern> second) {
+			long one = first.getValue().lastUse;
+			long two = second.getValue().lastUse;
+			return one < two ? -1 : (one == two ? 0 : 1);
+		}
+
+	};
+
+	int size() {
+		return this.patterns.size();
+	}
+
+	long hits() {
+		return this.hits.sum();
+	}
+
+	long misses() {
+		return this.misses.get();
+	}
+
+	long evictions() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * A compiled {@link Pattern} along with a {@link Matcher} per thread, that
+	 * is reset for every value instead of allocating a new one.
+	 */
+	static final class CachedPattern {
+
+		final Pattern pattern;
+
+		private final ThreadLocal<Matcher> matchers = new ThreadLocal<Matcher>() {
+
+			@Override
+			protected Matcher initialValue() {
+				return CachedPattern.this.pattern.matcher("");
+			}
+
+		};
+
+		/**
+		 * Tick of the last use, only ever compared loosely
+		 */
+		volatile long lastUse;
+
+		CachedPattern(Pattern pattern) {
+			this.pattern = pattern;
+		}
+
+		void touch(long tick) {
+			// avoid writing the shared entry when nothing changed
+			if(this.lastUse != tick) {
+				this.lastUse = tick;
+			}
+		}
+
+		/**
+		 * Check if the entire value matches the pattern.
+		 *
+		 * @param value
+		 *            the non-null value to test
+		 *
+		 * @return <code>true</code> if the value matches, <code>false</code>
+		 *         otherwise
+		 */
+		boolean matches(CharSequence value) {
+			Matcher matcher = this.matchers.get();
+			try {
+				return matcher.reset(value).matches();
+			} finally {
+				// do not hold on to the value
+				matcher.reset("");
+			}
+		}
+
+	}
+
+	/**
+	 * A counter spread over stripes, each on its own cache line, so that
+	 * threads incrementing it at once rarely write the same memory. Reading
+	 * it sums the stripes.
+	 */
+	static final class StripedCounter {
+
+		/**
+		 * Number of <code>long</code> values between two stripes, so that each
+		 * stripe is on its own 64 byte cache line
+		 */
+		private static final int PADDING = 8;
+
+		private final int mask;
+
+		private final AtomicLongArray cells;
+
+		StripedCounter() {
+			int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 4;
+			this.mask = stripes - 1;
+			this.cells = new AtomicLongArray(stripes * PADDING);
+		}
+
+		void increment() {
+			// spread the sequential thread ids over the stripes
+			int stripe = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 40) & this.mask;
+			this.cells.incrementAndGet(stripe * PADDING);
+		}
+
+		long sum() {
+			long sum = 0;
+			for(int index = 0; index < this.cells.length(); index += PADDING) {
+				sum += this.cells.get(index);
+			}
+
+			return sum;
+		}
+
+	}
+
+}
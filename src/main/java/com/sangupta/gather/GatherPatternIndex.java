@@ -0,0 +1,547 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link GatherIndex} over the string form of the values of a key, that
+ * answers the <code>like</code> and <code>regex</code> criteria. The distinct
+ * strings are kept sorted, so that the strings starting with the literal
+ * prefix of a pattern form a single range. Every run of three characters, or
+ * trigram, of every string is also mapped to a {@link GatherBitmap} of the
+ * positions of the items holding it, so that the items containing a literal
+ * of the pattern are the intersection of the bitmaps of its trigrams.
+ *
+ * Literals are read conservatively: a wildcard pattern is split at every
+ * <code>*</code> and <code>?</code>, while a regular expression only gives
+ * the plain characters that every match must contain. A regular expression
+ * with alternatives, groups with flags, or compiled with flags, is not
+ * narrowed. A pattern without a literal prefix or a literal of three
+ * characters is not narrowed either.
+ *
+ * Wildcard patterns without wildcards, or with a single trailing
+ * <code>*</code>, are answered exactly. All other candidates are tested
+ * against the query.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherPatternIndex extends GatherIndex {
+
+	/**
+	 * Orders bitmaps by cardinality, to intersect the smallest first
+	 */
+	private static final Comparator<GatherBitmap> BY_CARDINALITY = new Comparator<GatherBitmap>() {
+
+		@Override
+		public int compare(GatherBitmap first, GatherBitmap second) {
+			return Integer.compare(first.cardinality(), second.cardinality());
+		}
+
+	};
+
+	/**
+	 * Positions by the string form of the value of the key
+	 */
+	private final TreeMap<String, GatherPositions> terms = new TreeMap<>();
+
+	/**
+	 * Positions by trigram, packed into a <code>long</code>
+	 */
+	private final Map<Long, GatherBitmap> trigrams = new HashMap<>();
+
+	/**
+	 * Number of items with a value
+	 */
+	private int size;
+
+	GatherPatternIndex(String key) {
+		super(key);
+	}
+
+	@Override
+	void add(int position, Object value) {
+		if(value == null) {
+			// null values never match a pattern
+			return;
+		}
+
+		String term = value.toString();
+		if(term == null) {
+			return;
+		}
+
+		GatherPositions list = this.terms.get(term);
+		if(list == null) {
+			list = new GatherPositions();
+			this.terms.put(term, list);
+		}
+
+		list.add(position);
+		this.size++;
+
+		for(int index = 0; index + 3 <= term.length(); index++) {
+			Long trigram = trigram(term, index);
+			GatherBitmap bitmap = this.trigrams.get(trigram);
+			if(bitmap == null) {
+				bitmap = new GatherBitmap();
+				this.trigrams.put(trigram, bitmap);
+			}
+
+			bitmap.add(position);
+		}
+	}
+
+	@Override
+	void remove(int position, Object value) {
+		if(value == null) {
+			return;
+		}
+
+		String term = value.toString();
+		GatherPositions list = term == null ? null : this.terms.get(term);
+		if(list == null) {
+			return;
+		}
+
+		list.remove(position);
+		if(list.size() == 0) {
+			this.terms.remove(term);
+		}
+
+		this.size--;
+
+		for(int index = 0; index + 3 <= term.length(); index++) {
+			Long trigram = trigram(term, index);
+			GatherBitmap bitmap = this.trigrams.get(trigram);
+			if(bitmap != null) {
+				bitmap.remove(position);
+				if(bitmap.isEmpty()) {
+					this.trigrams.remove(trigram);
+				}
+			}
+		}
+	}
+
+	@Override
+	GatherBitmap lookup(GatherCriteria criteria, int limit) {
+		switch(criteria.operation) {
+			case WildcardMatch:
+				return this.lookupWildcard(criteria.value, limit);
+
+			case RegexMatch:
+				return this.lookupRegex(criteria.value);
+
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	boolean isExact(GatherCriteria criteria) {
+		switch(criteria.operation) {
+			case WildcardMatch:
+				if(criteria.value == null) {
+					return true;
+				}
+
+				String pattern = criteria.value.toString();
+				if(pattern.indexOf('?') >= 0) {
+					return false;
+				}
+
+				int star = pattern.indexOf('*');
+				return star < 0 || (star > 0 && star == pattern.length() - 1);
+
+			case RegexMatch:
+				return criteria.value == null;
+
+			default:
+				return false;
+		}
+	}
+
+	private GatherBitmap lookupWildcard(Object value, int limit) {
+		if(value == null) {
+			return new GatherBitmap();
+		}
+
+		String pattern = value.toString();
+		if(pattern.indexOf('?') < 0) {
+			int star = pattern.indexOf('*');
+			if(star < 0) {
+				return this.lookupTerm(pattern, limit);
+			}
+
+			if(star > 0 && star == pattern.length() - 1) {
+				int[] positions = this.prefixed(pattern.substring(0, star), limit);
+				if(positions == null) {
+					return null;
+				}
+
+				return GatherBitmap.of(positions);
+			}
+		}
+
+		return this.candidates(wildcardLiterals(pattern));
+	}
+
+	private GatherBitmap lookupRegex(Object value) {
+		if(value == null) {
+			return new GatherBitmap();
+		}
+
+		final Pattern pattern;
+		if(value instanceof Pattern) {
+			pattern = (Pattern) value;
+		} else {
+			// compile first, so that a bad pattern fails just like a scan
+			pattern = GatherUtils.COMPILED_PATTERNS.get(value.toString()).pattern;
+		}
+
+		if(pattern.flags() != 0) {
+			return null;
+		}
+
+		Literals literals = regexLiterals(pattern.pattern());
+		if(literals == null) {
+			return null;
+		}
+
+		return this.candidates(literals);
+	}
+
+	private GatherBitmap lookupTerm(String term, int limit) {
+		GatherPositions list = this.terms.get(term);
+		if(list == null) {
+			return new GatherBitmap();
+		}
+
+		return list.toBitmap(limit);
+	}
+
+	/**
+	 * The positions of the items whose string starts with the given prefix.
+	 *
+	 * @param prefix
+	 *            the non-empty prefix
+	 *
+	 * @param limit
+	 *            the number of positions needed, all if not positive
+	 *
+	 * @return the ascending positions, or <code>null</code> if a scan would
+	 *         find the first few items faster
+	 */
+	private int[] prefixed(String prefix, int limit) {
+		List<GatherPositions> range = new ArrayList<>();
+		int total = 0;
+		for(Entry<String, GatherPositions> entry : this.terms.tailMap(prefix, true).entrySet()) {
+			if(!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+
+			range.add(entry.getValue());
+			total += entry.getValue().size();
+		}
+
+		if(GatherSortedIndex.scanIsFaster(total, this.size, limit)) {
+			return null;
+		}
+
+		int[] all = new int[total];
+		int size = 0;
+		for(GatherPositions list : range) {
+			size = list.copyTo(all, size);
+		}
+
+		return GatherPositions.smallest(all, 0, size, limit);
+	}
+
+	/**
+	 * The positions of the items whose string starts with the prefix, and
+	 * contains every trigram of the other literals, of a pattern.
+	 *
+	 * @param literals
+	 *            the {@link Literals} of the pattern
+	 *
+	 * @return the candidate positions, or <code>null</code> if the pattern
+	 *         has no literal that narrows the items
+	 */
+	private GatherBitmap candidates(Literals literals) {
+		List<GatherBitmap> bitmaps = new ArrayList<>();
+		if(literals.prefix != null) {
+			bitmaps.add(GatherBitmap.of(this.prefixed(literals.prefix, 0)));
+		}
+
+		for(String literal : literals.infixes) {
+			for(int index = 0; index + 3 <= literal.length(); index++) {
+				GatherBitmap bitmap = this.trigrams.get(trigram(literal, index));
+				if(bitmap == null) {
+					// no string contains the literal
+					return new GatherBitmap();
+				}
+
+				bitmaps.add(bitmap);
+			}
+		}
+
+		if(bitmaps.isEmpty()) {
+			return null;
+		}
+
+		Collections.sort(bitmaps, BY_CARDINALITY);
+
+		GatherBitmap result = bitmaps.get(0);
+		for(int index = 1; index < bitmaps.size() && !result.isEmpty(); index++) {
+			result = GatherBitmap.and(result, bitmaps.get(index));
+		}
+
+		return result;
+	}
+
+	private static Long trigram(String string, int index) {
+		return ((long) string.charAt(index) << 32) | ((long) string.charAt(index + 1) << 16) | string.charAt(index + 2);
+	}
+
+	/**
+	 * Read the literals of a wildcard pattern, which are the runs of
+	 * characters between the wildcards.
+	 *
+	 * @param pattern
+	 *            the wildcard pattern
+	 *
+	 * @return the {@link Literals} of the pattern
+	 */
+	static Literals wildcardLiterals(String pattern) {
+		Literals literals = new Literals();
+		StringBuilder run = new StringBuilder();
+		boolean anchored = true;
+
+		for(int index = 0; index < pattern.length(); index++) {
+			char current = pattern.charAt(index);
+			if(current == '*' || current == '?') {
+				literals.end(run, anchored);
+				anchored = false;
+				continue;
+			}
+
+			run.append(current);
+		}
+
+		literals.end(run, anchored);
+		return literals;
+	}
+
+	/**
+	 * Read the literals that every match of a regular expression, compiled
+	 * without flags, must contain. Only plain and escaped punctuation
+	 * characters count: classes, groups and any character that a quantifier
+	 * may drop end the current literal, and an escaped letter or digit ends
+	 * the reading.
+	 *
+	 * @param regex
+	 *            the valid regular expression
+	 *
+	 * @return the {@link Literals} of the expression, or <code>null</code> if
+	 *         it has alternatives or inline flags
+	 */
+	static Literals regexLiterals(String regex) {
+		if(regex.indexOf('|') >= 0 || regex.contains("(?")) {
+			return null;
+		}
+
+		Literals literals = new Literals();
+		StringBuilder run = new StringBuilder();
+		boolean anchored = true;
+
+		int index = regex.startsWith("^") ? 1 : 0;
+		while(index < regex.length()) {
+			char current = regex.charAt(index);
+			switch(current) {
+				case '\\':
+					if(index + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(index + 1))) {
+						// a class, an anchor, a reference or a coded character
+						literals.end(run, anchored);
+						return literals;
+					}
+
+					run.append(regex.charAt(index + 1));
+					index += 2;
+					continue;
+
+				case '*':
+				case '?':
+				case '{':
+					// the character before may be absent
+					dropLast(run);
+					literals.end(run, anchored);
+					anchored = false;
+
+					if(current == '{') {
+						index = regex.indexOf('}', index);
+						if(index < 0) {
+							return literals;
+						}
+					}
+
+					index++;
+					continue;
+
+				case '[':
+				case '(':
+					literals.end(run, anchored);
+					anchored = false;
+
+					index = skip(regex, index);
+					if(index < 0) {
+						return literals;
+					}
+
+					continue;
+
+				case '+':
+				case '.':
+				case '^':
+				case '$':
+					literals.end(run, anchored);
+					anchored = false;
+					index++;
+					continue;
+
+				default:
+					run.append(current);
+					index++;
+			}
+		}
+
+		literals.end(run, anchored);
+		return literals;
+	}
+
+	private static void dropLast(StringBuilder run) {
+		if(run.length() == 0) {
+			return;
+		}
+
+		run.setLength(run.length() - 1);
+		if(run.length() > 0 && Character.isHighSurrogate(run.charAt(run.length() - 1))) {
+			// a quantifier applies to a whole code point
+			run.setLength(run.length() - 1);
+		}
+	}
+
+	/**
+	 * Skip a class or a group, along with the classes and groups it holds.
+	 *
+	 * @param regex
+	 *            the regular expression
+	 *
+	 * @param index
+	 *            the index of the opening bracket
+	 *
+	 * @return the index after the closing bracket, or <code>-1</code> if the
+	 *         end is unclear
+	 */
+	private static int skip(String regex, int index) {
+		final char open = regex.charAt(index);
+		final char close = open == '[' ? ']' : ')';
+
+		index++;
+		if(open == '[') {
+			if(index < regex.length() && regex.charAt(index) == '^') {
+				index++;
+			}
+
+			if(index < regex.length() && regex.charAt(index) == ']') {
+				return -1;
+			}
+		}
+
+		while(index < regex.length()) {
+			char current = regex.charAt(index);
+			if(current == '\\') {
+				index += 2;
+				continue;
+			}
+
+			if(current == close) {
+				return index + 1;
+			}
+
+			if(current == '[' || (current == '(' && open == '(')) {
+				index = skip(regex, index);
+				if(index < 0) {
+					return -1;
+				}
+
+				continue;
+			}
+
+			index++;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The literals of a pattern.
+	 */
+	static final class Literals {
+
+		/**
+		 * The literal that every match starts with, <code>null</code> if
+		 * none
+		 */
+		String prefix;
+
+		/**
+		 * The other literals that every match contains
+		 */
+		final List<String> infixes = new ArrayList<>();
+
+		void end(StringBuilder run, boolean anchored) {
+			if(run.length() == 0) {
+				return;
+			}
+
+			if(anchored) {
+				this.prefix = run.toString();
+			} else {
+				this.infixes.add(run.toString());
+			}
+
+			run.setLength(0);
+		}
+
+	}
+
+}
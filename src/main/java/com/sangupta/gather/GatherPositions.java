@@ -0,0 +1,216 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.Arrays;
+
+/**
+ * A growable, ascending list of item positions as kept by a
+ * {@link GatherIndex} for each indexed value, along with helpers to sort and
+ * select positions. Positions are mostly added in ascending order, which is
+ * the order in which an index visits the items, and appended quickly. Other
+ * positions are inserted in place.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherPositions {
+
+	static final int[] EMPTY = new int[0];
+
+	private int[] positions = EMPTY;
+
+	private int size;
+
+	void add(int position) {
+		if(this.size == this.positions.length) {
+			this.positions = Arrays.copyOf(this.positions, Math.max(4, this.size * 2));
+		}
+
+		// appending is the common case
+		if(this.size == 0 || this.positions[this.size - 1] < position) {
+			this.positions[this.size++] = position;
+			return;
+		}
+
+		int at = Arrays.binarySearch(this.positions, 0, this.size, position);
+		if(at >= 0) {
+			return;
+		}
+
+		at = -at - 1;
+		System.arraycopy(this.positions, at, this.positions, at + 1, this.size - at);
+		this.positions[at] = position;
+		this.size++;
+	}
+
+	void remove(int position) {
+		int at = Arrays.binarySearch(this.positions, 0, this.size, position);
+		if(at < 0) {
+			return;
+		}
+
+		System.arraycopy(this.positions, at + 1, this.positions, at, this.size - at - 1);
+		this.size--;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return a copy of the positions. Reading never writes to the instance,
+	 * so that many threads may read it at once.
+	 *
+	 * @return the ascending positions
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(this.positions, this.size);
+	}
+
+	/**
+	 * Copy the positions into the given array.
+	 *
+	 * @param target
+	 *            the array to copy to
+	 *
+	 * @param offset
+	 *            the index in the array of the first position
+	 *
+	 * @return the index in the array after the last position
+	 */
+	int copyTo(int[] target, int offset) {
+		System.arraycopy(this.positions, 0, target, offset, this.size);
+		return offset + this.size;
+	}
+
+	/**
+	 * Build a bitmap of the first positions.
+	 *
+	 * @param limit
+	 *            the number of positions to take, all if not positive
+	 *
+	 * @return the {@link GatherBitmap} of the positions
+	 */
+	GatherBitmap toBitmap(int limit) {
+		final int count = limit > 0 && limit < this.size ? limit : this.size;
+
+		GatherBitmap bitmap = new GatherBitmap();
+		for(int index = 0; index < count; index++) {
+			bitmap.add(this.positions[index]);
+		}
+
+		return bitmap;
+	}
+
+	/**
+	 * Sort the given positions in place and drop the duplicates.
+	 *
+	 * @param positions
+	 *            the positions in any order
+	 *
+	 * @return the ascending, distinct positions
+	 */
+	static int[] sorted(int[] positions) {
+		if(positions.length == 0) {
+			return EMPTY;
+		}
+
+		Arrays.sort(positions);
+
+		int size = 1;
+		for(int index = 1; index < positions.length; index++) {
+			if(positions[index] != positions[size - 1]) {
+				positions[size++] = positions[index];
+			}
+		}
+
+		return size == positions.length ? positions : Arrays.copyOf(positions, size);
+	}
+
+	/**
+	 * Find the smallest of the distinct positions in a range of an array,
+	 * without sorting the whole range when only a few are asked for.
+	 *
+	 * @param positions
+	 *            the positions in any order
+	 *
+	 * @param from
+	 *            the start of the range, inclusive
+	 *
+	 * @param to
+	 *            the end of the range, exclusive
+	 *
+	 * @param limit
+	 *            the number of positions to find, all if not positive
+	 *
+	 * @return the ascending smallest positions
+	 */
+	static int[] smallest(int[] positions, int from, int to, int limit) {
+		if(limit <= 0 || limit >= to - from) {
+			int[] result = Arrays.copyOfRange(positions, from, to);
+			Arrays.sort(result);
+			return result;
+		}
+
+		// keep the smallest positions seen so far in a max-heap
+		int[] heap = Arrays.copyOfRange(positions, from, from + limit);
+		for(int index = limit / 2 - 1; index >= 0; index--) {
+			siftDown(heap, index);
+		}
+
+		for(int index = from + limit; index < to; index++) {
+			if(positions[index] < heap[0]) {
+				heap[0] = positions[index];
+				siftDown(heap, 0);
+			}
+		}
+
+		Arrays.sort(heap);
+		return heap;
+	}
+
+	private static void siftDown(int[] heap, int index) {
+		final int value = heap[index];
+		while(true) {
+			int child = 2 * index + 1;
+			if(child >= heap.length) {
+				break;
+			}
+
+			if(child + 1 < heap.length && heap[child + 1] > heap[child]) {
+				child++;
+			}
+
+			if(heap[child] <= value) {
+				break;
+			}
+
+			heap[index] = heap[child];
+			index = child;
+		}
+
+		heap[index] = value;
+	}
+
+}
@@ -0,0 +1,1522 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.sangupta.gather.GatherPatternCache.CachedPattern;
+import com.sangupta.gather.GatherReflect.FieldAccessor;
+import com.sangupta.gather.GatherReflect.HandleAccessor;
+
+/**
+ * A node in the predicate tree of a {@link CompiledGather}. Nodes never change
+ * once built, apart from the accessor each field node remembers for the last
+ * class it saw and the evaluation order of boolean nodes, and are safe to be
+ * evaluated from many threads at once.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+abstract class GatherPredicate {
+
+	/**
+	 * Test the given item against this predicate.
+	 *
+	 * @param item
+	 *            an always non-null object
+	 *
+	 * @return <code>true</code> if the item matches, <code>false</code>
+	 *         otherwise
+	 */
+	abstract boolean test(Object item);
+
+	/**
+	 * Estimated cost of testing a single item against this predicate, in units
+	 * of {@link GatherOperation#cost}.
+	 *
+	 * @return the estimated cost
+	 */
+	abstract int cost();
+
+	/**
+	 * Build the specialized predicate for a single {@link GatherCriteria}. Any
+	 * <code>NOT</code> on the criteria is applied as well.
+	 *
+	 * @param criteria
+	 *            the criteria to build predicate for
+	 *
+	 * @return the {@link GatherPredicate} for the criteria
+	 */
+	static GatherPredicate of(GatherCriteria criteria) {
+		GatherPredicate predicate = ofOperation(criteria);
+		if(criteria.inverse) {
+			return new NotPredicate(predicate);
+		}
+
+		return predicate;
+	}
+
+	private static GatherPredicate ofOperation(GatherCriteria criteria) {
+		final String key = criteria.key;
+		final Object value = criteria.value;
+
+		switch(criteria.operation) {
+			case Equals:
+				return new EqualsPredicate(key, value);
+
+			case EqualsIgnoreCase:
+				return new EqualsIgnoreCasePredicate(key, value);
+
+			case GreaterThan:
+				return new NumericComparisonPredicate(key, value, criteria.operation, GatherNumericComparison.GREATER_THAN);
+
+			case GreaterThanOrEquals:
+				return new NumericComparisonPredicate(key, value, criteria.operation, GatherNumericComparison.GREATER_THAN_OR_EQUALS);
+
+			case LessThan:
+				return new NumericComparisonPredicate(key, value, criteria.operation, GatherNumericComparison.LESS_THAN);
+
+			case LessThanOrEquals:
+				return new NumericComparisonPredicate(key, value, criteria.operation, GatherNumericComparison.LESS_THAN_OR_EQUALS);
+
+			case In:
+				return new InPredicate(key, value);
+
+			case IsNull:
+				return new IsNullPredicate(key);
+
+			case CollectionHasValue:
+				return new CollectionHasValuePredicate(key, value);
+
+			case CollectionHasAllValues:
+				return new CollectionHasAllOrAnyPredicate(key, value, true);
+
+			case CollectionHasAnyValue:
+				return new CollectionHasAllOrAnyPredicate(key, value, false);
+
+			case RegexMatch:
+				return new RegexPredicate(key, value);
+
+			case WildcardMatch:
+				return new WildcardPredicate(key, value);
+
+			case HasProperty:
+				return new HasPropertyPredicate(key);
+
+			case SubQuery:
+				return CompiledGather.compile((Gather) value).predicate;
+
+			default:
+				throw new IllegalStateException("Unknown operation in criteria: " + criteria.operation);
+		}
+	}
+
+	// ***************************************
+	// CONSTANT AND BOOLEAN NODES FOLLOW
+	// ***************************************
+
+	static final GatherPredicate TRUE = new GatherPredicate() {
+
+		@Override
+		boolean test(Object item) {
+			return true;
+		}
+
+		@Override
+		int cost() {
+			return 0;
+		}
+
+	};
+
+	static final GatherPredicate FALSE = new GatherPredicate() {
+
+		@Override
+		boolean test(Object item) {
+			return false;
+		}
+
+		@Override
+		int cost() {
+			return 0;
+		}
+
+	};
+
+	/**
+	 * Build a predicate that matches when all of the given predicates match.
+	 *
+	 * @param predicates
+	 *            the predicates to combine, at least one
+	 *
+	 * @return the combined {@link GatherPredicate}
+	 */
+	static GatherPredicate allOf(List<GatherPredicate> predicates) {
+		if(predicates.size() == 1) {
+			return predicates.get(0);
+		}
+
+		return new AndPredicate(predicates.toArray(new GatherPredicate[predicates.size()]));
+	}
+
+	/**
+	 * Build a predicate that matches when any of the given predicates match.
+	 *
+	 * @param predicates
+	 *            the predicates to combine, at least one
+	 *
+	 * @return the combined {@link GatherPredicate}
+	 */
+	static GatherPredicate anyOf(List<GatherPredicate> predicates) {
+		if(predicates.size() == 1) {
+			return predicates.get(0);
+		}
+
+		return new OrPredicate(predicates.toArray(new GatherPredicate[predicates.size()]));
+	}
+
+	/**
+	 * Base class for the n-ary boolean nodes. As the order of children does not
+	 * change the result, children are kept ordered so that the ones most likely
+	 * to decide the result for the least cost run first. Initially the order is
+	 * by the static cost of each child. Afterwards, one in every
+	 * {@link #SAMPLE_MASK} + 1 evaluations records how often each child decided
+	 * the result, and every {@link #SAMPLES_PER_REORDER} samples the children
+	 * are ranked again by cost divided by that rate.
+	 */
+	static abstract class JunctionPredicate extends GatherPredicate {
+
+		static final int SAMPLE_MASK = 63;
+
+		static final int SAMPLES_PER_REORDER = 256;
+
+		/**
+		 * The value of a child that decides the result of this node
+		 */
+		final boolean decidingValue;
+
+		final int cost;
+
+		/**
+		 * The children in the order they are evaluated. Replaced as a whole when
+		 * reordered, so that readers always see a consistent array.
+		 */
+		volatile Branch[] children;
+
+		/**
+		 * Number of samples taken. Updates may be lost when racing, which only
+		 * shifts when the next reorder happens.
+		 */
+		private int samples;
+
+		JunctionPredicate(GatherPredicate[] predicates, boolean decidingValue) {
+			this.decidingValue = decidingValue;
+
+			Branch[] branches = new Branch[predicates.length];
+			int total = 0;
+			for(int index = 0; index < predicates.length; index++) {
+				branches[index] = new Branch(predicates[index]);
+				total += predicates[index].cost();
+			}
+
+			this.cost = total;
+			this.children = this.rank(branches);
+		}
+
+		@Override
+		final int cost() {
+			return this.cost;
+		}
+
+		@Override
+		final boolean test(Object item) {
+			final Branch[] current = this.children;
+			if((ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) != 0) {
+				return this.evaluate(item, current);
+			}
+
+			return this.sample(item, current);
+		}
+
+		/**
+		 * Evaluate the children in order, stopping at the first child that
+		 * decides the result.
+		 *
+		 * @param item
+		 *            the item to test
+		 *
+		 * @param current
+		 *            the children in evaluation order
+		 *
+		 * @return the result of this node
+		 */
+		abstract boolean evaluate(Object item, Branch[] current);
+
+		private boolean sample(Object item, Branch[] current) {
+			boolean result = !this.decidingValue;
+			for(Branch branch : current) {
+				branch.evaluated++;
+				if(branch.predicate.test(item) == this.decidingValue) {
+					branch.decided++;
+					result = this.decidingValue;
+					break;
+				}
+			}
+
+			if(++this.samples % SAMPLES_PER_REORDER == 0) {
+				Branch[] ranked = this.rank(current);
+				if(ranked != current) {
+					this.children = ranked;
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Order the given branches by rank, and decay their statistics so that
+		 * later samples weigh more.
+		 *
+		 * @param current
+		 *            the branches in current order
+		 *
+		 * @return the branches in new order, or the same array if the order did
+		 *         not change
+		 */
+		private Branch[] rank(Branch[] current) {
+			final int size = current.length;
+			final Branch[] ordered = current.clone();
+			final double[] ranks = new double[size];
+
+			boolean changed = false;
+			for(int index = 0; index < size; index++) {
+				Branch branch = ordered[index];
+				double rank = branch.rank();
+
+				// stable insertion sort, there are only a few children
+				int position = index;
+				while(position > 0 && ranks[position - 1] > rank) {
+					ranks[position] = ranks[position - 1];
+					ordered[position] = ordered[position - 1];
+					position--;
+					changed = true;
+				}
+
+				ranks[position] = rank;
+				ordered[position] = branch;
+				branch.decay();
+			}
+
+			return changed ? ordered : current;
+		}
+
+	}
+
+	/**
+	 * A child of a {@link JunctionPredicate} with its sampled statistics. The
+	 * counters are updated without synchronization: they only steer the order
+	 * of evaluation, never the result.
+	 */
+	static final class Branch {
+
+		final GatherPredicate predicate;
+
+		/**
+		 * The cost of the child, never less than one
+		 */
+		final int cost;
+
+		int evaluated;
+
+		int decided;
+
+		Branch(GatherPredicate predicate) {
+			this.predicate = predicate;
+			this.cost = Math.max(1, predicate.cost());
+		}
+
+		/**
+		 * Expected cost paid per decided result, using a smoothed rate so that
+		 * children without samples keep their static order.
+		 *
+		 * @return the rank, lower runs first
+		 */
+		double rank() {
+			double decidingRate = (this.decided + 1d) / (this.evaluated + 2d);
+			return this.cost / decidingRate;
+		}
+
+		void decay() {
+			this.evaluated >>= 1;
+			this.decided >>= 1;
+		}
+
+	}
+
+	/**
+	 * Matches when all children match. Evaluation stops at the first child that
+	 * does not match.
+	 */
+	static final class AndPredicate extends JunctionPredicate {
+
+		AndPredicate(GatherPredicate[] children) {
+			super(children, false);
+		}
+
+		@Override
+		boolean evaluate(Object item, Branch[] current) {
+			for(Branch branch : current) {
+				if(!branch.predicate.test(item)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+	/**
+	 * Matches when any child matches. Evaluation stops at the first child that
+	 * matches.
+	 */
+	static final class OrPredicate extends JunctionPredicate {
+
+		OrPredicate(GatherPredicate[] children) {
+			super(children, true);
+		}
+
+		@Override
+		boolean evaluate(Object item, Branch[] current) {
+			for(Branch branch : current) {
+				if(branch.predicate.test(item)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+	}
+
+	static final class NotPredicate extends GatherPredicate {
+
+		final GatherPredicate delegate;
+
+		NotPredicate(GatherPredicate delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		boolean test(Object item) {
+			return !this.delegate.test(item);
+		}
+
+		@Override
+		int cost() {
+			return this.delegate.cost();
+		}
+
+	}
+
+	// ***************************************
+	// FIELD NODES FOLLOW
+	// ***************************************
+
+	/**
+	 * Base class for all predicates that read the value of a key from the item.
+	 * It remembers the {@link FieldAccessor} for the last class seen, so that on
+	 * homogeneous collections the accessor is not looked up for every item.
+	 */
+	static abstract class FieldPredicate extends GatherPredicate {
+
+		final String key;
+
+		/**
+		 * The last resolved class and accessor. {@link Binding} is immutable, so
+		 * racing threads at worst resolve the accessor again.
+		 */
+		private Binding binding = Binding.EMPTY;
+
+		final int cost;
+
+		FieldPredicate(String key, GatherOperation operation) {
+			this.key = key;
+			this.cost = operation.cost;
+		}
+
+		@Override
+		final int cost() {
+			return this.cost;
+		}
+
+		final FieldAccessor accessor(Object item) {
+			return this.binding(item).accessor;
+		}
+
+		final Binding binding(Object item) {
+			final Class<?> clazz = item.getClass();
+
+			Binding current = this.binding;
+			if(current.clazz == clazz) {
+				return current;
+			}
+
+			FieldAccessor accessor = GatherReflect.getAccessorForClass(clazz, this.key);
+			current = new Binding(clazz, accessor, accessor == null ? null : this.specialize(accessor));
+			this.binding = current;
+			return current;
+		}
+
+		/**
+		 * Build a predicate specialized for items read using the given accessor,
+		 * say one that reads a primitive field without boxing.
+		 *
+		 * @param accessor
+		 *            the non-null accessor for the class of the items
+		 *
+		 * @return the specialized {@link GatherPredicate}, or <code>null</code>
+		 *         to test values read as objects
+		 */
+		GatherPredicate specialize(FieldAccessor accessor) {
+			return null;
+		}
+
+		@Override
+		boolean test(Object item) {
+			final Binding binding = this.binding(item);
+			if(binding.specialized != null) {
+				return binding.specialized.test(item);
+			}
+
+			FieldAccessor accessor = binding.accessor;
+			if(accessor == null) {
+				return false;
+			}
+
+			Object value = accessor.get(item);
+			if(value == GatherReflect.NOT_FOUND) {
+				return false;
+			}
+
+			return this.testValue(value);
+		}
+
+		/**
+		 * Test the value read from the item.
+		 *
+		 * @param value
+		 *            the value of the field, may be <code>null</code>
+		 *
+		 * @return <code>true</code> if the value matches, <code>false</code>
+		 *         otherwise
+		 */
+		abstract boolean testValue(Object value);
+
+	}
+
+	static final class Binding {
+
+		static final Binding EMPTY = new Binding(null, null, null);
+
+		final Class<?> clazz;
+
+		final FieldAccessor accessor;
+
+		/**
+		 * The predicate specialized for the class, if any
+		 */
+		final GatherPredicate specialized;
+
+		Binding(Class<?> clazz, FieldAccessor accessor, GatherPredicate specialized) {
+			this.clazz = clazz;
+			this.accessor = accessor;
+			this.specialized = specialized;
+		}
+
+	}
+
+	static final class HasPropertyPredicate extends FieldPredicate {
+
+		HasPropertyPredicate(String key) {
+			super(key, GatherOperation.HasProperty);
+		}
+
+		@Override
+		boolean test(Object item) {
+			FieldAccessor accessor = this.accessor(item);
+			if(accessor == null) {
+				return false;
+			}
+
+			if(accessor instanceof HandleAccessor) {
+				return true;
+			}
+
+			return accessor.get(item) != GatherReflect.NOT_FOUND;
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			return true;
+		}
+
+	}
+
+	static final class EqualsPredicate extends FieldPredicate {
+
+		final Object requiredValue;
+
+		EqualsPredicate(String key, Object requiredValue) {
+			super(key, GatherOperation.Equals);
+			this.requiredValue = requiredValue;
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			return GatherExecutor.handleEquals(value, this.requiredValue);
+		}
+
+	}
+
+	static final class EqualsIgnoreCasePredicate extends FieldPredicate {
+
+		final Object requiredValue;
+
+		EqualsIgnoreCasePredicate(String key, Object requiredValue) {
+			super(key, GatherOperation.EqualsIgnoreCase);
+			this.requiredValue = requiredValue;
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			return GatherExecutor.handleEqualsIgnoreCase(value, this.requiredValue);
+		}
+
+	}
+
+	static final class IsNullPredicate extends FieldPredicate {
+
+		IsNullPredicate(String key) {
+			super(key, GatherOperation.IsNull);
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			return value == null;
+		}
+
+	}
+
+	/**
+	 * Tests the field value against a hash set of the allowed values built
+	 * once, instead of scanning them for every item. When all allowed values
+	 * are boxes of the same integral type, they are kept as primitive
+	 * <code>long</code> values instead. A set that decides for itself which
+	 * values it contains, like a case-insensitive {@link java.util.TreeSet},
+	 * is asked directly.
+	 */
+	static final class InPredicate extends FieldPredicate {
+
+		/**
+		 * The allowed values, unless {@link #integralValues} or
+		 * {@link #collection} is used
+		 */
+		final Set<Object> values;
+
+		/**
+		 * The set of allowed values given, when it has its own equality
+		 */
+		final Collection<?> collection;
+
+		/**
+		 * The one boxed integral type of all allowed values, or
+		 * <code>null</code>
+		 */
+		final Class<?> integralType;
+
+		final GatherLongHashSet integralValues;
+
+		InPredicate(String key, Object requiredValue) {
+			super(key, GatherOperation.In);
+
+			if(GatherUtils.hasOwnEquality(requiredValue)) {
+				this.collection = (Collection<?>) requiredValue;
+				this.values = null;
+				this.integralType = null;
+				this.integralValues = null;
+				return;
+			}
+
+			this.collection = null;
+
+			Set<Object> values = new HashSet<>();
+			if(requiredValue instanceof Collection) {
+				values.addAll((Collection<?>) requiredValue);
+			} else if(requiredValue instanceof Object[]) {
+				values.addAll(Arrays.asList((Object[]) requiredValue));
+			}
+
+			// field values are never null when matched
+			values.remove(null);
+
+			this.integralType = integralType(values);
+			if(this.integralType == null) {
+				this.values = values;
+				this.integralValues = null;
+				return;
+			}
+
+			long[] longs = new long[values.size()];
+			int index = 0;
+			for(Object value : values) {
+				longs[index++] = ((Number) value).longValue();
+			}
+
+			this.values = null;
+			this.integralValues = new GatherLongHashSet(longs);
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			if(value == null) {
+				return false;
+			}
+
+			if(this.integralValues != null) {
+				// boxes of different types are never equal
+				return value.getClass() == this.integralType && this.integralValues.contains(((Number) value).longValue());
+			}
+
+			if(this.collection != null) {
+				return this.collection.contains(value);
+			}
+
+			return this.values.contains(value);
+		}
+
+		private static Class<?> integralType(Set<Object> values) {
+			Class<?> type = null;
+			for(Object value : values) {
+				Class<?> clazz = value.getClass();
+				if(clazz != Long.class && clazz != Integer.class && clazz != Short.class && clazz != Byte.class) {
+					return null;
+				}
+
+				if(type != null && type != clazz) {
+					return null;
+				}
+
+				type = clazz;
+			}
+
+			return type;
+		}
+
+	}
+
+	/**
+	 * Compares the field value against a numeric bound. When the field is
+	 * declared as a numeric primitive, the bound is converted once to the type
+	 * of the field, just as {@link GatherUtils#compareNumbers(Number, Number)}
+	 * would for every item, and the field is read and compared without boxing.
+	 * Boxed and {@link BigDecimal} fields get the same treatment after reading.
+	 */
+	static final class NumericComparisonPredicate extends FieldPredicate {
+
+		final Object requiredValue;
+
+		final GatherNumericComparison comparison;
+
+		NumericComparisonPredicate(String key, Object requiredValue, GatherOperation operation, GatherNumericComparison comparison) {
+			super(key, operation);
+			this.requiredValue = requiredValue;
+			this.comparison = comparison;
+		}
+
+		@Override
+		GatherPredicate specialize(FieldAccessor accessor) {
+			if(!(this.requiredValue instanceof Number)) {
+				return null;
+			}
+
+			final Number bound = (Number) this.requiredValue;
+			final Class<?> type = accessor.type;
+
+			if(accessor instanceof HandleAccessor && type != null && type.isPrimitive()) {
+				HandleAccessor handle = (HandleAccessor) accessor;
+
+				if(type == byte.class && handle.readsInt()) {
+					return new IntComparison(handle, bound.byteValue(), this.comparison);
+				}
+
+				if(type == short.class && handle.readsInt()) {
+					return new IntComparison(handle, bound.shortValue(), this.comparison);
+				}
+
+				if(type == int.class && handle.readsInt()) {
+					return new IntComparison(handle, bound.intValue(), this.comparison);
+				}
+
+				if(type == long.class && handle.readsLong()) {
+					return new LongComparison(handle, bound.longValue(), this.comparison);
+				}
+
+				// float compares the same once widened to double
+				if(type == float.class && handle.readsDouble()) {
+					return new DoubleComparison(handle, bound.floatValue(), this.comparison);
+				}
+
+				if(type == double.class && handle.readsDouble()) {
+					return new DoubleComparison(handle, bound.doubleValue(), this.comparison);
+				}
+
+				return null;
+			}
+
+			if(type == Integer.class || type == Short.class || type == Byte.class || type == Long.class || type == Float.class || type == Double.class) {
+				return new BoxedComparison(accessor, type, bound, this.comparison);
+			}
+
+			if(type == BigDecimal.class) {
+				BigDecimal decimal = asBigDecimal(bound);
+				if(decimal != null) {
+					return new BigDecimalComparison(accessor, decimal, this.comparison);
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			return GatherExecutor.handleNumericComparison(value, this.requiredValue, this.comparison);
+		}
+
+		/**
+		 * Convert the bound just like
+		 * {@link GatherUtils#compareNumbers(Number, Number)} does for a
+		 * {@link BigDecimal} field.
+		 */
+		static BigDecimal asBigDecimal(Number bound) {
+			if(bound instanceof BigDecimal) {
+				return (BigDecimal) bound;
+			}
+
+			if(bound instanceof Byte || bound instanceof Short || bound instanceof Integer || bound instanceof AtomicInteger) {
+				return new BigDecimal(bound.intValue());
+			}
+
+			if(bound instanceof Long || bound instanceof AtomicLong) {
+				return new BigDecimal(bound.longValue());
+			}
+
+			if(bound instanceof Float) {
+				return new BigDecimal(bound.floatValue());
+			}
+
+			if(bound instanceof Double) {
+				return new BigDecimal(bound.doubleValue());
+			}
+
+			return null;
+		}
+
+	}
+
+	/**
+	 * Base class for comparisons specialized to a field type. The outcome for
+	 * each sign of the comparison is worked out once.
+	 */
+	static abstract class SpecializedComparison extends GatherPredicate {
+
+		final boolean onLess;
+
+		final boolean onEqual;
+
+		final boolean onGreater;
+
+		SpecializedComparison(GatherNumericComparison comparison) {
+			this.onLess = comparison.test(-1);
+			this.onEqual = comparison.test(0);
+			this.onGreater = comparison.test(1);
+		}
+
+		final boolean outcome(int compared) {
+			if(compared < 0) {
+				return this.onLess;
+			}
+
+			return compared == 0 ? this.onEqual : this.onGreater;
+		}
+
+		@Override
+		int cost() {
+			return GatherOperation.GreaterThan.cost;
+		}
+
+	}
+
+	static final class IntComparison extends SpecializedComparison {
+
+		final HandleAccessor accessor;
+
+		final int bound;
+
+		IntComparison(HandleAccessor accessor, int bound, GatherNumericComparison comparison) {
+			super(comparison);
+			this.accessor = accessor;
+			this.bound = bound;
+		}
+
+		@Override
+		boolean test(Object item) {
+			final int value = this.accessor.getInt(item);
+			if(value < this.bound) {
+				return this.onLess;
+			}
+
+			return value == this.bound ? this.onEqual : this.onGreater;
+		}
+
+	}
+
+	static final class LongComparison extends SpecializedComparison {
+
+		final HandleAccessor accessor;
+
+		final long bound;
+
+		LongComparison(HandleAccessor accessor, long bound, GatherNumericComparison comparison) {
+			super(comparison);
+			this.accessor = accessor;
+			this.bound = bound;
+		}
+
+		@Override
+		boolean test(Object item) {
+			final long value = this.accessor.getLong(item);
+			if(value < this.bound) {
+				return this.onLess;
+			}
+
+			return value == this.bound ? this.onEqual : this.onGreater;
+		}
+
+	}
+
+	/**
+	 * Uses {@link Double#compare(double, double)} to order <code>NaN</code>
+	 * and <code>-0.0</code> the way the boxed comparison does.
+	 */
+	static final class DoubleComparison extends SpecializedComparison {
+
+		final HandleAccessor accessor;
+
+		final double bound;
+
+		DoubleComparison(HandleAccessor accessor, double bound, GatherNumericComparison comparison) {
+			super(comparison);
+			this.accessor = accessor;
+			this.bound = bound;
+		}
+
+		@Override
+		boolean test(Object item) {
+			return this.outcome(Double.compare(this.accessor.getDouble(item), this.bound));
+		}
+
+	}
+
+	/**
+	 * For fields declared with a boxed type, which is final, so the value can be
+	 * unboxed without checking its runtime type.
+	 */
+	static final class BoxedComparison extends SpecializedComparison {
+
+		final FieldAccessor accessor;
+
+		final boolean integral;
+
+		final long longBound;
+
+		final double doubleBound;
+
+		BoxedComparison(FieldAccessor accessor, Class<?> type, Number bound, GatherNumericComparison comparison) {
+			super(comparison);
+			this.accessor = accessor;
+			this.integral = type != Float.class && type != Double.class;
+
+			if(type == Byte.class) {
+				this.longBound = bound.byteValue();
+			} else if(type == Short.class) {
+				this.longBound = bound.shortValue();
+			} else if(type == Integer.class) {
+				this.longBound = bound.intValue();
+			} else {
+				this.longBound = bound.longValue();
+			}
+
+			if(type == Float.class) {
+				this.doubleBound = bound.floatValue();
+			} else {
+				this.doubleBound = bound.doubleValue();
+			}
+		}
+
+		@Override
+		boolean test(Object item) {
+			Object value = this.accessor.get(item);
+			if(value == null || value == GatherReflect.NOT_FOUND) {
+				return false;
+			}
+
+			if(this.integral) {
+				final long number = ((Number) value).longValue();
+				if(number < this.longBound) {
+					return this.onLess;
+				}
+
+				return number == this.longBound ? this.onEqual : this.onGreater;
+			}
+
+			return this.outcome(Double.compare(((Number) value).doubleValue(), this.doubleBound));
+		}
+
+	}
+
+	static final class BigDecimalComparison extends SpecializedComparison {
+
+		final FieldAccessor accessor;
+
+		final BigDecimal bound;
+
+		BigDecimalComparison(FieldAccessor accessor, BigDecimal bound, GatherNumericComparison comparison) {
+			super(comparison);
+			this.accessor = accessor;
+			this.bound = bound;
+		}
+
+		@Override
+		boolean test(Object item) {
+			Object value = this.accessor.get(item);
+			if(value == null || value == GatherReflect.NOT_FOUND) {
+				return false;
+			}
+
+			return this.outcome(((BigDecimal) value).compareTo(this.bound));
+		}
+
+	}
+
+	static final class CollectionHasValuePredicate extends FieldPredicate {
+
+		final Object requiredValue;
+
+		CollectionHasValuePredicate(String key, Object requiredValue) {
+			super(key, GatherOperation.CollectionHasValue);
+			this.requiredValue = requiredValue;
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			return GatherExecutor.handleCollectionHasValue(value, this.requiredValue);
+		}
+
+	}
+
+	/**
+	 * Tests a collection or array field against the required values, which are
+	 * numbered once into a hash map. Each item then needs a single pass over
+	 * its own elements, tracking the required values seen in a bit set for the
+	 * <code>ALL</code> clause. Primitive integral arrays are matched against a
+	 * {@link GatherLongHashSet} of the required values narrowed to the width
+	 * of the array, built the first time such an array is seen.
+	 */
+	static final class CollectionHasAllOrAnyPredicate extends FieldPredicate {
+
+		static final int BYTE = 0;
+
+		static final int SHORT = 1;
+
+		static final int INT = 2;
+
+		static final int LONG = 3;
+
+		final Object requiredValue;
+
+		final boolean usingAllClause;
+
+		/**
+		 * Distinct non-null required values numbered from zero, or
+		 * <code>null</code> when the required value is neither an object array
+		 * nor a collection
+		 */
+		final Map<Object, Integer> ordinals;
+
+		final boolean requiredHasNull;
+
+		/**
+		 * Distinct required values including any <code>null</code>, to probe
+		 * fields that are {@link Set}s themselves
+		 */
+		final Object[] distinct;
+
+		/**
+		 * Required values per primitive width, filled lazily. Racing threads at
+		 * worst build the same immutable value twice.
+		 */
+		private final PrimitiveValues[] primitiveValues = new PrimitiveValues[4];
+
+		CollectionHasAllOrAnyPredicate(String key, Object requiredValue, boolean usingAllClause) {
+			super(key, usingAllClause ? GatherOperation.CollectionHasAllValues : GatherOperation.CollectionHasAnyValue);
+			this.requiredValue = requiredValue;
+			this.usingAllClause = usingAllClause;
+
+			Collection<?> required = null;
+			if(requiredValue instanceof Collection) {
+				required = (Collection<?>) requiredValue;
+			} else if(requiredValue instanceof Object[]) {
+				required = Arrays.asList((Object[]) requiredValue);
+			}
+
+			if(required == null) {
+				this.ordinals = null;
+				this.requiredHasNull = false;
+				this.distinct = null;
+				return;
+			}
+
+			Map<Object, Integer> ordinals = new HashMap<>();
+			boolean hasNull = false;
+			for(Object item : required) {
+				if(item == null) {
+					hasNull = true;
+				} else if(!ordinals.containsKey(item)) {
+					ordinals.put(item, ordinals.size());
+				}
+			}
+
+			Set<Object> distinct = new LinkedHashSet<>(ordinals.keySet());
+			if(hasNull) {
+				distinct.add(null);
+			}
+
+			this.ordinals = ordinals;
+			this.requiredHasNull = hasNull;
+			this.distinct = distinct.toArray();
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			if(value instanceof Collection) {
+				return this.testCollection((Collection<?>) value);
+			}
+
+			if(value instanceof Object[]) {
+				return this.testArray((Object[]) value);
+			}
+
+			if(value instanceof int[]) {
+				return this.testPrimitive(value, ((int[]) value).length, INT);
+			}
+
+			if(value instanceof long[]) {
+				return this.testPrimitive(value, ((long[]) value).length, LONG);
+			}
+
+			if(value instanceof short[]) {
+				return this.testPrimitive(value, ((short[]) value).length, SHORT);
+			}
+
+			if(value instanceof byte[]) {
+				return this.testPrimitive(value, ((byte[]) value).length, BYTE);
+			}
+
+			return GatherExecutor.handleCollectionHasAllOrAnyValues(value, this.requiredValue, this.usingAllClause);
+		}
+
+		private boolean testCollection(Collection<?> collection) {
+			if(this.ordinals == null || collection.isEmpty()) {
+				return false;
+			}
+
+			if(collection instanceof Set) {
+				// already hashed, and may define its own equality
+				for(Object item : this.distinct) {
+					boolean found = collection.contains(item);
+					if(found != this.usingAllClause) {
+						return found;
+					}
+				}
+
+				return this.usingAllClause;
+			}
+
+			final int required = this.distinct.length;
+			if(this.usingAllClause && collection.size() < required) {
+				return false;
+			}
+
+			final Hits hits = this.hits(required);
+			for(Object element : collection) {
+				int ordinal;
+				if(element == null) {
+					ordinal = this.requiredHasNull ? this.ordinals.size() : -1;
+				} else {
+					Integer found = this.ordinals.get(element);
+					ordinal = found == null ? -1 : found;
+				}
+
+				if(ordinal >= 0 && hits.hit(ordinal)) {
+					return true;
+				}
+			}
+
+			return hits.done();
+		}
+
+		private boolean testArray(Object[] array) {
+			if(this.ordinals == null || array.length == 0) {
+				return false;
+			}
+
+			// null elements of an array never match
+			if(this.usingAllClause && this.requiredHasNull) {
+				return false;
+			}
+
+			final int required = this.ordinals.size();
+			if(this.usingAllClause && array.length < required) {
+				return false;
+			}
+
+			final Hits hits = this.hits(required);
+			for(Object element : array) {
+				if(element == null) {
+					continue;
+				}
+
+				Integer ordinal = this.ordinals.get(element);
+				if(ordinal != null && hits.hit(ordinal)) {
+					return true;
+				}
+			}
+
+			return hits.done();
+		}
+
+		private boolean testPrimitive(Object array, int length, int width) {
+			if(length == 0) {
+				return false;
+			}
+
+			PrimitiveValues values = this.primitiveValues[width];
+			if(values == null) {
+				values = PrimitiveValues.of(this.requiredValue, width);
+				if(values == null) {
+					return false;
+				}
+
+				this.primitiveValues[width] = values;
+			}
+
+			if(this.usingAllClause && values.incomplete) {
+				return false;
+			}
+
+			final GatherLongHashSet set = values.set;
+			final Hits hits = this.hits(set.size);
+			for(int index = 0; index < length; index++) {
+				int ordinal = set.indexOf(element(array, width, index));
+				if(ordinal >= 0 && hits.hit(ordinal)) {
+					return true;
+				}
+			}
+
+			return hits.done();
+		}
+
+		private Hits hits(int required) {
+			return this.usingAllClause ? new AllHits(required) : ANY_HITS;
+		}
+
+		private static long element(Object array, int width, int index) {
+			switch(width) {
+				case BYTE:
+					return ((byte[]) array)[index];
+
+				case SHORT:
+					return ((short[]) array)[index];
+
+				case INT:
+					return ((int[]) array)[index];
+
+				default:
+					return ((long[]) array)[index];
+			}
+		}
+
+	}
+
+	/**
+	 * Required values of a {@link CollectionHasAllOrAnyPredicate} narrowed to
+	 * the width of a primitive array, just like the per-value comparisons of
+	 * {@link GatherUtils} do.
+	 */
+	static final class PrimitiveValues {
+
+		final GatherLongHashSet set;
+
+		/**
+		 * Whether some required values can never be found, being
+		 * <code>null</code> or not a number
+		 */
+		final boolean incomplete;
+
+		PrimitiveValues(long[] values, boolean incomplete) {
+			this.set = new GatherLongHashSet(values);
+			this.incomplete = incomplete;
+		}
+
+		/**
+		 * @return the values, or <code>null</code> if the required value cannot
+		 *         be matched against arrays of the given width
+		 */
+		static PrimitiveValues of(Object required, int width) {
+			if(width == CollectionHasAllOrAnyPredicate.BYTE && required instanceof byte[]) {
+				byte[] array = (byte[]) required;
+				long[] values = new long[array.length];
+				for(int index = 0; index < array.length; index++) {
+					values[index] = array[index];
+				}
+
+				return new PrimitiveValues(values, false);
+			}
+
+			if(width == CollectionHasAllOrAnyPredicate.SHORT && required instanceof short[]) {
+				short[] array = (short[]) required;
+				long[] values = new long[array.length];
+				for(int index = 0; index < array.length; index++) {
+					values[index] = array[index];
+				}
+
+				return new PrimitiveValues(values, false);
+			}
+
+			if(width == CollectionHasAllOrAnyPredicate.INT && required instanceof int[]) {
+				int[] array = (int[]) required;
+				long[] values = new long[array.length];
+				for(int index = 0; index < array.length; index++) {
+					values[index] = array[index];
+				}
+
+				return new PrimitiveValues(values, false);
+			}
+
+			if(width == CollectionHasAllOrAnyPredicate.LONG && required instanceof long[]) {
+				return new PrimitiveValues((long[]) required, false);
+			}
+
+			Collection<?> items;
+			if(required instanceof Number[]) {
+				items = Arrays.asList((Number[]) required);
+			} else if(required instanceof Collection) {
+				items = (Collection<?>) required;
+			} else {
+				return null;
+			}
+
+			long[] values = new long[items.size()];
+			int count = 0;
+			boolean incomplete = false;
+			for(Object item : items) {
+				if(!(item instanceof Number)) {
+					incomplete = true;
+					continue;
+				}
+
+				Number number = (Number) item;
+				switch(width) {
+					case CollectionHasAllOrAnyPredicate.BYTE:
+						values[count++] = number.byteValue();
+						break;
+
+					case CollectionHasAllOrAnyPredicate.SHORT:
+						values[count++] = number.shortValue();
+						break;
+
+					case CollectionHasAllOrAnyPredicate.INT:
+						values[count++] = number.intValue();
+						break;
+
+					default:
+						values[count++] = number.longValue();
+						break;
+				}
+			}
+
+			return new PrimitiveValues(Arrays.copyOf(values, count), incomplete);
+		}
+
+	}
+
+	/**
+	 * Tracks which required values were found while scanning the elements of a
+	 * single field value.
+	 */
+	static abstract class Hits {
+
+		/**
+		 * @return <code>true</code> if the result is known to be a match
+		 */
+		abstract boolean hit(int ordinal);
+
+		/**
+		 * @return the result once all elements were scanned
+		 */
+		abstract boolean done();
+
+	}
+
+	/**
+	 * For the <code>ANY</code> clause, the first hit decides.
+	 */
+	static final Hits ANY_HITS = new Hits() {
+
+		@Override
+		boolean hit(int ordinal) {
+			return true;
+		}
+
+		@Override
+		boolean done() {
+			return false;
+		}
+
+	};
+
+	/**
+	 * For the <code>ALL</code> clause, every required value must be hit.
+	 */
+	static final class AllHits extends Hits {
+
+		private final long[] seen;
+
+		private int remaining;
+
+		AllHits(int required) {
+			this.seen = new long[(required + 63) >>> 6];
+			this.remaining = required;
+		}
+
+		@Override
+		boolean hit(int ordinal) {
+			long bit = 1L << ordinal;
+			int word = ordinal >>> 6;
+			if((this.seen[word] & bit) == 0) {
+				this.seen[word] |= bit;
+				this.remaining--;
+			}
+
+			return this.remaining == 0;
+		}
+
+		@Override
+		boolean done() {
+			return this.remaining == 0;
+		}
+
+	}
+
+	static final class RegexPredicate extends FieldPredicate {
+
+		/**
+		 * The pattern compiled once, <code>null</code> if none was given
+		 */
+		final CachedPattern pattern;
+
+		RegexPredicate(String key, Object requiredValue) {
+			super(key, GatherOperation.RegexMatch);
+
+			if(requiredValue == null) {
+				this.pattern = null;
+			} else if(requiredValue instanceof Pattern) {
+				this.pattern = new CachedPattern((Pattern) requiredValue);
+			} else {
+				this.pattern = GatherUtils.COMPILED_PATTERNS.get(requiredValue.toString());
+			}
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			if(value == null || this.pattern == null) {
+				return false;
+			}
+
+			return this.pattern.matches(value.toString());
+		}
+
+	}
+
+	static final class WildcardPredicate extends FieldPredicate {
+
+		/**
+		 * The pattern analysed once, <code>null</code> if none was given
+		 */
+		final GatherWildcardMatcher matcher;
+
+		WildcardPredicate(String key, Object requiredValue) {
+			super(key, GatherOperation.WildcardMatch);
+
+			if(requiredValue == null) {
+				this.matcher = null;
+			} else {
+				this.matcher = GatherWildcardMatcher.of(requiredValue.toString());
+			}
+		}
+
+		@Override
+		boolean testValue(Object value) {
+			if(value == null || this.matcher == null) {
+				return false;
+			}
+
+			return this.matcher.matches(value.toString());
+		}
+
+	}
+
+}
@@ -21,12 +21,19 @@
 
 package com.sangupta.gather;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Collection of Java Reflection methods that are used within {@link Gather}
@@ -38,7 +45,355 @@ import java.util.Map;
  */
 abstract class GatherReflect {
 
-	static final Map<Class<?>, Map<String, Field>> CLASS_FIELD_KEY_CACHE = new HashMap<>();
+	/**
+	 * All fields of a class, including inherited ones, keyed by their name. The
+	 * map is computed once per class and never mutated afterwards, so reads need
+	 * no locking.
+	 */
+	static final ClassValue<Map<String, Field>> CLASS_FIELD_KEY_CACHE = new ClassValue<Map<String, Field>>() {
+
+		@Override
+		protected Map<String, Field> computeValue(Class<?> type) {
+			Map<String, Field> fieldCache = new HashMap<>();
+			for (Field field : getAllFields(type)) {
+				fieldCache.put(field.getName(), field);
+			}
+
+			return Collections.unmodifiableMap(fieldCache);
+		}
+
+	};
+
+	/**
+	 * The {@link HandleAccessor} for every field of a class, keyed by field name.
+	 * Like {@link #CLASS_FIELD_KEY_CACHE} this is populated once per class.
+	 */
+	static final ClassValue<Map<String, HandleAccessor>> CLASS_ACCESSOR_CACHE = new ClassValue<Map<String, HandleAccessor>>() {
+
+		@Override
+		protected Map<String, HandleAccessor> computeValue(Class<?> type) {
+			Map<String, Field> fields = CLASS_FIELD_KEY_CACHE.get(type);
+
+			Map<String, HandleAccessor> accessorCache = new HashMap<>();
+			for (Map.Entry<String, Field> entry : fields.entrySet()) {
+				accessorCache.put(entry.getKey(), new HandleAccessor(entry.getValue()));
+			}
+
+			return Collections.unmodifiableMap(accessorCache);
+		}
+
+	};
+
+	/**
+	 * Most composed keys cached per class. Keys come from queries, and may be
+	 * ad hoc or misspelled, so once a class has this many the cache of the
+	 * class is cleared, and the keys still in use are resolved again.
+	 */
+	static final int MAX_CACHED_PATHS = 256;
+
+	/**
+	 * The {@link PathAccessor} for composed keys like <code>address.city</code>,
+	 * keyed by the composed key and resolved once per root class, holding at
+	 * most {@link #MAX_CACHED_PATHS} keys per class.
+	 */
+	static final ClassValue<ConcurrentMap<String, FieldAccessor>> CLASS_PATH_CACHE = new ClassValue<ConcurrentMap<String, FieldAccessor>>() {
+
+		@Override
+		protected ConcurrentMap<String, FieldAccessor> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+
+	};
+
+	/**
+	 * Marker value returned by {@link FieldAccessor#get(Object)} when a composed
+	 * key cannot be walked for an instance, either because an intermediate value
+	 * is <code>null</code> or because it does not have the next property.
+	 */
+	static final Object NOT_FOUND = new Object();
+
+	/**
+	 * Cached in place of a {@link PathAccessor} for composed keys that cannot be
+	 * resolved at all for a class, so that they are not split again.
+	 */
+	private static final FieldAccessor UNRESOLVED_PATH = new FieldAccessor(null) {
+
+		@Override
+		Object get(Object instance) {
+			return NOT_FOUND;
+		}
+
+	};
+
+	/**
+	 * The method type to which all field getters are adapted so that they can be
+	 * invoked exactly without knowing the declaring class or field type.
+	 */
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	/**
+	 * A resolved, reusable reader for a key over instances of a given class.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	static abstract class FieldAccessor {
+
+		/**
+		 * The declared type of the field that is finally read, <code>null</code>
+		 * if it can only be known at runtime
+		 */
+		final Class<?> type;
+
+		FieldAccessor(Class<?> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Read the value for the key from the given instance.
+		 *
+		 * @param instance
+		 *            the object instance to read from
+		 *
+		 * @return the value of the field, primitives being boxed, or
+		 *         {@link GatherReflect#NOT_FOUND} if the key cannot be resolved
+		 *         on this instance
+		 */
+		abstract Object get(Object instance);
+
+	}
+
+	/**
+	 * Reads a single field of a class. The field is made accessible once and a
+	 * {@link MethodHandle} getter is built for it, so that reading the value per
+	 * item needs neither an access check nor a lookup.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	static final class HandleAccessor extends FieldAccessor {
+
+		/**
+		 * The field being read
+		 */
+		final Field field;
+
+		/**
+		 * The getter adapted to <code>(Object)Object</code>, <code>null</code> if
+		 * the field could not be made accessible
+		 */
+		private final MethodHandle getter;
+
+		/**
+		 * For numeric primitive fields, the getters adapted to
+		 * <code>(Object)int</code>, <code>(Object)long</code> and
+		 * <code>(Object)double</code>, so that the value is never boxed. Each is
+		 * <code>null</code> unless the field type widens to it.
+		 */
+		private final MethodHandle intGetter;
+
+		private final MethodHandle longGetter;
+
+		private final MethodHandle doubleGetter;
+
+		HandleAccessor(Field field) {
+			super(field.getType());
+			this.field = field;
+
+			MethodHandle handle;
+			MethodHandle intHandle = null;
+			MethodHandle longHandle = null;
+			MethodHandle doubleHandle = null;
+			try {
+				field.setAccessible(true);
+
+				MethodHandle raw = MethodHandles.lookup().unreflectGetter(field);
+				if(Modifier.isStatic(field.getModifiers())) {
+					// a static getter takes no instance, ignore the one given
+					raw = MethodHandles.dropArguments(raw, 0, Object.class);
+				}
+
+				handle = raw.asType(GETTER_TYPE);
+
+				final Class<?> type = this.type;
+				if(type == byte.class || type == short.class || type == char.class || type == int.class) {
+					intHandle = raw.asType(MethodType.methodType(int.class, Object.class));
+				}
+
+				if(intHandle != null || type == long.class) {
+					longHandle = raw.asType(MethodType.methodType(long.class, Object.class));
+				}
+
+				if(longHandle != null || type == float.class || type == double.class) {
+					doubleHandle = raw.asType(MethodType.methodType(double.class, Object.class));
+				}
+			} catch (IllegalAccessException | RuntimeException e) {
+				handle = null;
+			}
+
+			this.getter = handle;
+			this.intGetter = intHandle;
+			this.longGetter = longHandle;
+			this.doubleGetter = doubleHandle;
+		}
+
+		@Override
+		Object get(Object instance) {
+			if (this.getter == null) {
+				throw new RuntimeException("Unable to read value of field: " + this.field);
+			}
+
+			try {
+				return (Object) this.getter.invokeExact(instance);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException("Unable to read value of field", t);
+			}
+		}
+
+		/**
+		 * @return <code>true</code> if {@link #getInt(Object)} may be used, that
+		 *         is the field is a <code>byte</code>, <code>short</code>,
+		 *         <code>char</code> or <code>int</code>
+		 */
+		boolean readsInt() {
+			return this.intGetter != null;
+		}
+
+		/**
+		 * @return <code>true</code> if {@link #getLong(Object)} may be used
+		 */
+		boolean readsLong() {
+			return this.longGetter != null;
+		}
+
+		/**
+		 * @return <code>true</code> if {@link #getDouble(Object)} may be used
+		 */
+		boolean readsDouble() {
+			return this.doubleGetter != null;
+		}
+
+		int getInt(Object instance) {
+			try {
+				return (int) this.intGetter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		long getLong(Object instance) {
+			try {
+				return (long) this.longGetter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		double getDouble(Object instance) {
+			try {
+				return (double) this.doubleGetter.invokeExact(instance);
+			} catch (Throwable t) {
+				throw rethrow(t);
+			}
+		}
+
+		private static RuntimeException rethrow(Throwable t) {
+			if(t instanceof RuntimeException) {
+				return (RuntimeException) t;
+			}
+
+			if(t instanceof Error) {
+				throw (Error) t;
+			}
+
+			return new RuntimeException("Unable to read value of field", t);
+		}
+	}
+
+	/**
+	 * Reads a composed key like <code>address.city</code> by walking a chain of
+	 * {@link HandleAccessor}s that is resolved once per root class. Each link is
+	 * resolved against the declared type of the previous field. Only when that is
+	 * not possible, say the field is declared as an interface, is the link looked
+	 * up against the runtime class of the intermediate value.
+	 *
+	 * @author sangupta
+	 *
+	 * @since 1.3.0
+	 */
+	static final class PathAccessor extends FieldAccessor {
+
+		/**
+		 * The individual property names in the composed key
+		 */
+		private final String[] tokens;
+
+		/**
+		 * The resolved accessor for each token, <code>null</code> where the link
+		 * needs to be looked up at runtime
+		 */
+		private final HandleAccessor[] links;
+
+		private PathAccessor(String[] tokens, HandleAccessor[] links) {
+			super(links[links.length - 1] != null ? links[links.length - 1].type : null);
+			this.tokens = tokens;
+			this.links = links;
+		}
+
+		static PathAccessor resolve(Class<?> rootClass, String key) {
+			String[] tokens = key.split("\\.");
+			if (tokens.length == 0) {
+				return null;
+			}
+
+			HandleAccessor[] links = new HandleAccessor[tokens.length];
+
+			Class<?> owner = rootClass;
+			for (int index = 0; index < tokens.length; index++) {
+				HandleAccessor link = owner != null ? CLASS_ACCESSOR_CACHE.get(owner).get(tokens[index]) : null;
+				if (link == null && index == 0) {
+					// the root class always is the runtime class
+					return null;
+				}
+
+				links[index] = link;
+				owner = link != null ? link.type : null;
+			}
+
+			return new PathAccessor(tokens, links);
+		}
+
+		@Override
+		Object get(Object instance) {
+			final int last = this.links.length - 1;
+
+			Object current = instance;
+			for (int index = 0; index <= last; index++) {
+				HandleAccessor link = this.links[index];
+				if (link == null) {
+					link = CLASS_ACCESSOR_CACHE.get(current.getClass()).get(this.tokens[index]);
+					if (link == null) {
+						return NOT_FOUND;
+					}
+				}
+
+				current = link.get(current);
+				if (index == last) {
+					return current;
+				}
+
+				if (current == null) {
+					return NOT_FOUND;
+				}
+			}
+
+			return NOT_FOUND;
+		}
+	}
 
 	static class FieldAndInstance {
 
@@ -105,31 +460,66 @@ abstract class GatherReflect {
 			return null;
 		}
 
-		Map<String, Field> classCache = CLASS_FIELD_KEY_CACHE.get(item.getClass());
-		if (classCache != null) {
-			return classCache.get(key);
+		return CLASS_FIELD_KEY_CACHE.get(item.getClass()).get(key);
+	}
+
+	/**
+	 * Get the cached {@link FieldAccessor} for the given key on the class of the
+	 * given item. The accessors are resolved only once per class and the lookup
+	 * is lock-free, so this is safe to call from many query threads at once.
+	 * Composed keys like <code>address.city</code> are supported, and are split
+	 * and resolved only the first time they are seen for a class.
+	 *
+	 * @param item
+	 *            the object instance whose class is looked up
+	 *
+	 * @param key
+	 *            the name of the field, or a composed key
+	 *
+	 * @return the {@link FieldAccessor} if the field exists, <code>null</code>
+	 *         otherwise
+	 */
+	static <T> FieldAccessor getAccessor(T item, String key) {
+		if (item == null) {
+			return null;
 		}
 
-		if (key.contains(".")) {
-			// TODO: this is a composed object
+		if (key == null) {
 			return null;
 		}
 
-		// class based cache does not exist
-		Map<String, Field> fieldCache = new HashMap<>();
-		CLASS_FIELD_KEY_CACHE.put(item.getClass(), fieldCache);
+		return getAccessorForClass(item.getClass(), key);
+	}
+
+	static FieldAccessor getAccessorForClass(Class<?> clazz, String key) {
+		FieldAccessor accessor = CLASS_ACCESSOR_CACHE.get(clazz).get(key);
+		if (accessor != null || key.indexOf('.') < 0) {
+			return accessor;
+		}
 
-		Class<?> classOfT = item.getClass();
-		List<Field> fields = getAllFields(classOfT);
-		if (fields == null || fields.isEmpty()) {
-			return null;
+		ConcurrentMap<String, FieldAccessor> pathCache = CLASS_PATH_CACHE.get(clazz);
+		FieldAccessor path = pathCache.get(key);
+		if (path == null) {
+			path = PathAccessor.resolve(clazz, key);
+			if (path == null) {
+				path = UNRESOLVED_PATH;
+			}
+
+			if (pathCache.size() >= MAX_CACHED_PATHS) {
+				pathCache.clear();
+			}
+
+			FieldAccessor existing = pathCache.putIfAbsent(key, path);
+			if (existing != null) {
+				path = existing;
+			}
 		}
 
-		for (Field field : fields) {
-			fieldCache.put(field.getName(), field);
+		if (path == UNRESOLVED_PATH) {
+			return null;
 		}
 
-		return fieldCache.get(key);
+		return path;
 	}
 
 	static List<Field> getAllFields(Class<?> clazz) {
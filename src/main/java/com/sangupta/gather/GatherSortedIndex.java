@@ -0,0 +1,632 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.sangupta.gather.GatherPredicate.NumericComparisonPredicate;
+
+/**
+ * A {@link GatherIndex} that keeps the values of the key in sorted order, so
+ * that the items matching a <code>greaterThan</code>, <code>lessThan</code>
+ * or alike criteria are found by binary search.
+ *
+ * Boxed primitive numbers are kept as sorted primitive <code>long</code>
+ * keys along with the position of each, and a range is a contiguous slice of
+ * them. Floating point values are mapped to <code>long</code> keys that sort
+ * the same way as {@link Double#compare(double, double)}. Other
+ * {@link Comparable} values, including {@link BigDecimal}, are kept in a
+ * {@link NavigableMap}. Just like a scan, the bound is converted to the type
+ * of the values before comparing. The index is used only when all non-null
+ * values are of the same class.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+final class GatherSortedIndex extends GatherIndex {
+
+	/**
+	 * How many times slower testing an item is than selecting a position
+	 */
+	private static final long SCAN_COST = 4;
+
+	/**
+	 * Stands for a bound that no value compares with
+	 */
+	private static final Object NOTHING = new Object();
+
+	/**
+	 * The one class of all non-null values, <code>null</code> if none was
+	 * seen yet
+	 */
+	private Class<?> type;
+
+	/**
+	 * Whether values of many classes, or of a class that cannot be sorted,
+	 * were seen
+	 */
+	private boolean unsorted;
+
+	/**
+	 * Whether the values are boxed primitive numbers
+	 */
+	private boolean numeric;
+
+	/**
+	 * The sortable keys of numeric values, in ascending order of key and
+	 * position once complete, followed by the pending keys added later
+	 */
+	private long[] keys = new long[16];
+
+	/**
+	 * The position of the item for each key, or its complement if the item
+	 * was removed
+	 */
+	private int[] positions = new int[16];
+
+	private int size;
+
+	/**
+	 * Number of keys in sorted order, the rest are pending
+	 */
+	private int sorted;
+
+	/**
+	 * Number of sorted keys whose item was removed
+	 */
+	private int dead;
+
+	private boolean completed;
+
+	/**
+	 * Number of positions in {@link #tree}
+	 */
+	private int treeSize;
+
+	/**
+	 * Positions by value, for values that are not numeric
+	 */
+	private final NavigableMap<Object, GatherPositions> tree = new TreeMap<>();
+
+	GatherSortedIndex(String key) {
+		super(key);
+	}
+
+	@Override
+	void add(int position, Object value) {
+		// null values never match a comparison
+		if(value == null || this.unsorted) {
+			return;
+		}
+
+		if(this.type == null) {
+			this.type = value.getClass();
+			this.numeric = isNumeric(this.type);
+			this.unsorted = !this.numeric && !(value instanceof Comparable);
+		} else if(this.type != value.getClass()) {
+			this.unsorted = true;
+		}
+
+		if(this.unsorted) {
+			this.tree.clear();
+			this.keys = null;
+			this.positions = null;
+			return;
+		}
+
+		if(this.numeric) {
+			if(this.size == this.keys.length) {
+				this.keys = Arrays.copyOf(this.keys, this.size * 2);
+				this.positions = Arrays.copyOf(this.positions, this.size * 2);
+			}
+
+			this.keys[this.size] = this.key((Number) value);
+			this.positions[this.size] = position;
+			this.size++;
+
+			if(this.completed) {
+				this.compactIfNeeded();
+			}
+
+			return;
+		}
+
+		GatherPositions list = this.tree.get(value);
+		if(list == null) {
+			list = new GatherPositions();
+			this.tree.put(value, list);
+		}
+
+		list.add(position);
+		this.treeSize++;
+	}
+
+	@Override
+	void remove(int position, Object value) {
+		if(value == null || this.unsorted || value.getClass() != this.type) {
+			// never added
+			return;
+		}
+
+		if(!this.numeric) {
+			GatherPositions list = this.tree.get(value);
+			if(list != null) {
+				list.remove(position);
+				this.treeSize--;
+				if(list.size() == 0) {
+					this.tree.remove(value);
+				}
+			}
+
+			return;
+		}
+
+		final long key = this.key((Number) value);
+
+		// a sorted key is marked removed, a pending one is dropped
+		int at = this.search(key, position);
+		if(at < this.sorted && this.keys[at] == key && this.positions[at] == position) {
+			this.positions[at] = ~position;
+			this.dead++;
+		} else {
+			for(int index = this.sorted; index < this.size; index++) {
+				if(this.keys[index] == key && this.positions[index] == position) {
+					this.size--;
+					this.keys[index] = this.keys[this.size];
+					this.positions[index] = this.positions[this.size];
+					break;
+				}
+			}
+		}
+
+		this.compactIfNeeded();
+	}
+
+	@Override
+	void complete() {
+		if(this.numeric && !this.unsorted) {
+			sort(this.keys, this.positions, this.size);
+			this.sorted = this.size;
+		}
+
+		this.completed = true;
+	}
+
+	@Override
+	GatherBitmap lookup(GatherCriteria criteria, int limit) {
+		int[] positions = this.positions(criteria, limit);
+		if(positions == null) {
+			return null;
+		}
+
+		return GatherBitmap.of(positions);
+	}
+
+	private int[] positions(GatherCriteria criteria, int limit) {
+		if(!isRange(criteria.operation) || this.unsorted) {
+			return null;
+		}
+
+		if(this.type == null) {
+			return GatherPositions.EMPTY;
+		}
+
+		final boolean lower = isLower(criteria.operation);
+		final boolean inclusive = isInclusive(criteria.operation);
+
+		if(this.numeric) {
+			// numbers never compare with other values
+			if(!(criteria.value instanceof Number)) {
+				return GatherPositions.EMPTY;
+			}
+
+			return this.slice(this.bound((Number) criteria.value), lower, inclusive, limit);
+		}
+
+		Object bound = this.treeBound(criteria.value);
+		if(bound == NOTHING) {
+			return GatherPositions.EMPTY;
+		}
+
+		if(bound == null) {
+			return null;
+		}
+
+		return this.merge(this.range(bound, lower, inclusive), limit);
+	}
+
+	/**
+	 * The number of keys in the range, and of keys that are not sorted yet,
+	 * found with a binary search.
+	 */
+	@Override
+	int estimate(GatherCriteria criteria) {
+		if(!isRange(criteria.operation) || this.unsorted) {
+			return -1;
+		}
+
+		if(this.type == null) {
+			return 0;
+		}
+
+		final boolean lower = isLower(criteria.operation);
+		final boolean inclusive = isInclusive(criteria.operation);
+
+		if(this.numeric) {
+			if(!(criteria.value instanceof Number)) {
+				return 0;
+			}
+
+			int first = this.first(this.bound((Number) criteria.value), lower != inclusive);
+			return (lower ? this.sorted - first : first) + this.size - this.sorted;
+		}
+
+		Object bound = this.treeBound(criteria.value);
+		if(bound == NOTHING) {
+			return 0;
+		}
+
+		if(bound == null) {
+			return -1;
+		}
+
+		int count = 0;
+		for(GatherPositions list : this.range(bound, lower, inclusive).values()) {
+			count += list.size();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Convert the bound of a criteria to the class of the values, just like
+	 * a scan does.
+	 *
+	 * @return the bound, {@link #NOTHING} if no value compares with it, or
+	 *         <code>null</code> if the scan must compare the values
+	 */
+	private Object treeBound(Object bound) {
+		if(this.type == BigDecimal.class) {
+			if(!(bound instanceof Number)) {
+				return NOTHING;
+			}
+
+			return NumericComparisonPredicate.asBigDecimal((Number) bound);
+		}
+
+		if(bound == null) {
+			return NOTHING;
+		}
+
+		// let the scan compare values of different classes
+		return bound.getClass() == this.type ? bound : null;
+	}
+
+	private NavigableMap<Object, GatherPositions> range(Object bound, boolean lower, boolean inclusive) {
+		return lower ? this.tree.tailMap(bound, inclusive) : this.tree.headMap(bound, inclusive);
+	}
+
+	private static boolean isRange(GatherOperation operation) {
+		return isLower(operation) || operation == GatherOperation.LessThan || operation == GatherOperation.LessThanOrEquals;
+	}
+
+	/**
+	 * Whether the operation matches the values above the bound
+	 */
+	private static boolean isLower(GatherOperation operation) {
+		return operation == GatherOperation.GreaterThan || operation == GatherOperation.GreaterThanOrEquals;
+	}
+
+	private static boolean isInclusive(GatherOperation operation) {
+		return operation == GatherOperation.GreaterThanOrEquals || operation == GatherOperation.LessThanOrEquals;
+	}
+
+	@Override
+	boolean isExact(GatherCriteria criteria) {
+		return true;
+	}
+
+	/**
+	 * Find the positions of the slice of keys on one side of the bound.
+	 */
+	private int[] slice(long bound, boolean lower, boolean inclusive, int limit) {
+		final int low = this.first(bound, lower != inclusive);
+		final int from = lower ? low : 0;
+		final int to = lower ? this.sorted : low;
+		if(this.sorted == this.size && this.dead == 0) {
+			if(scanIsFaster(to - from, this.size, limit)) {
+				return null;
+			}
+
+			return GatherPositions.smallest(this.positions, from, to, limit);
+		}
+
+		// skip removed items, and test the pending keys one by one
+		int[] found = new int[to - from + this.size - this.sorted];
+		int count = 0;
+		for(int index = from; index < to; index++) {
+			if(this.positions[index] >= 0) {
+				found[count++] = this.positions[index];
+			}
+		}
+
+		for(int index = this.sorted; index < this.size; index++) {
+			long key = this.keys[index];
+			if(lower ? (key > bound || (inclusive && key == bound)) : (key < bound || (inclusive && key == bound))) {
+				found[count++] = this.positions[index];
+			}
+		}
+
+		if(scanIsFaster(count, this.size - this.dead, limit)) {
+			return null;
+		}
+
+		return GatherPositions.smallest(found, 0, count, limit);
+	}
+
+	/**
+	 * Find the first sorted key greater than the bound, or greater than or
+	 * equal to it if not <code>after</code>.
+	 */
+	private int first(long bound, boolean after) {
+		int low = 0;
+		int high = this.sorted;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			long key = this.keys[middle];
+			if(key < bound || (after && key == bound)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Find the first sorted key that is not before the given key and
+	 * position.
+	 */
+	private int search(long key, int position) {
+		int low = 0;
+		int high = this.sorted;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(before(this.keys[middle], this.positions[middle], key, position)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Check if a key and position, which may be marked removed, sort before
+	 * another.
+	 */
+	private static boolean before(long key, int position, long otherKey, int otherPosition) {
+		if(key != otherKey) {
+			return key < otherKey;
+		}
+
+		return (position < 0 ? ~position : position) < (otherPosition < 0 ? ~otherPosition : otherPosition);
+	}
+
+	/**
+	 * Merge the pending keys into the sorted keys, dropping the removed ones,
+	 * once there are enough of them to slow down lookups. Merging costs a
+	 * pass over all keys, so the more keys, the more may wait.
+	 */
+	private void compactIfNeeded() {
+		if(this.size - this.sorted + this.dead <= 64 + (int) Math.sqrt(this.size)) {
+			return;
+		}
+
+		final int pending = this.size - this.sorted;
+		long[] pendingKeys = Arrays.copyOfRange(this.keys, this.sorted, this.size);
+		int[] pendingPositions = Arrays.copyOfRange(this.positions, this.sorted, this.size);
+		sort(pendingKeys, pendingPositions, pending);
+
+		int live = 0;
+		for(int index = 0; index < this.sorted; index++) {
+			if(this.positions[index] >= 0) {
+				this.keys[live] = this.keys[index];
+				this.positions[live] = this.positions[index];
+				live++;
+			}
+		}
+
+		// merge from the end, so that no key is overwritten before it moves
+		int left = live - 1;
+		int right = pending - 1;
+		for(int index = live + pending - 1; index >= 0; index--) {
+			if(right < 0 || (left >= 0 && before(pendingKeys[right], pendingPositions[right], this.keys[left], this.positions[left]))) {
+				this.keys[index] = this.keys[left];
+				this.positions[index] = this.positions[left--];
+			} else {
+				this.keys[index] = pendingKeys[right];
+				this.positions[index] = pendingPositions[right--];
+			}
+		}
+
+		this.size = live + pending;
+		this.sorted = this.size;
+		this.dead = 0;
+	}
+
+	/**
+	 * Check if a scan would find the first few matching items faster than
+	 * selecting their positions out of a large range. A scan stops after
+	 * about <code>limit * total / count</code> items, but testing an item
+	 * costs a few times more than selecting a position.
+	 *
+	 * @param count
+	 *            the number of positions in the range
+	 *
+	 * @param total
+	 *            the number of positions in the index
+	 *
+	 * @param limit
+	 *            the number of matching items needed, all if not positive
+	 *
+	 * @return <code>true</code> if scanning is faster
+	 */
+	static boolean scanIsFaster(int count, int total, int limit) {
+		if(limit <= 0 || count <= limit) {
+			return false;
+		}
+
+		return (long) count * count > SCAN_COST * limit * total;
+	}
+
+	/**
+	 * The sortable key of a value of the key.
+	 */
+	private long key(Number value) {
+		if(this.type == Float.class || this.type == Double.class) {
+			return sortable(value.doubleValue());
+		}
+
+		return value.longValue();
+	}
+
+	/**
+	 * Convert the bound to the type of the values, just like
+	 * {@link GatherUtils#compareNumbers(Number, Number)} does.
+	 */
+	private long bound(Number bound) {
+		if(this.type == Byte.class) {
+			return bound.byteValue();
+		}
+
+		if(this.type == Short.class) {
+			return bound.shortValue();
+		}
+
+		if(this.type == Integer.class) {
+			return bound.intValue();
+		}
+
+		if(this.type == Float.class) {
+			return sortable(bound.floatValue());
+		}
+
+		if(this.type == Double.class) {
+			return sortable(bound.doubleValue());
+		}
+
+		return bound.longValue();
+	}
+
+	private static boolean isNumeric(Class<?> type) {
+		return type == Byte.class || type == Short.class || type == Integer.class || type == Long.class || type == Float.class || type == Double.class;
+	}
+
+	/**
+	 * Map a <code>double</code> to a <code>long</code> such that the keys
+	 * sort like {@link Double#compare(double, double)}: negative zero before
+	 * zero, and <code>NaN</code> after positive infinity.
+	 *
+	 * @param value
+	 *            the value to map
+	 *
+	 * @return the sortable key
+	 */
+	static long sortable(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	private int[] merge(NavigableMap<Object, GatherPositions> range, int limit) {
+		int total = 0;
+		for(GatherPositions list : range.values()) {
+			total += list.size();
+		}
+
+		if(scanIsFaster(total, this.treeSize, limit)) {
+			return null;
+		}
+
+		int[] all = new int[total];
+		int size = 0;
+		for(GatherPositions list : range.values()) {
+			size = list.copyTo(all, size);
+		}
+
+		return GatherPositions.smallest(all, 0, size, limit);
+	}
+
+	/**
+	 * Sort the keys in ascending order, moving the positions along. Equal keys
+	 * are sorted by position.
+	 */
+	private static void sort(long[] keys, int[] positions, int size) {
+		long[] keyBuffer = new long[size];
+		int[] positionBuffer = new int[size];
+
+		// bottom-up merge sort, switching between the arrays on every pass
+		long[] fromKeys = keys;
+		int[] fromPositions = positions;
+		long[] toKeys = keyBuffer;
+		int[] toPositions = positionBuffer;
+
+		for(int width = 1; width < size; width *= 2) {
+			for(int start = 0; start < size; start += 2 * width) {
+				int middle = Math.min(start + width, size);
+				int end = Math.min(start + 2 * width, size);
+
+				int left = start;
+				int right = middle;
+				for(int index = start; index < end; index++) {
+					if(left < middle && (right >= end || !before(fromKeys[right], fromPositions[right], fromKeys[left], fromPositions[left]))) {
+						toKeys[index] = fromKeys[left];
+						toPositions[index] = fromPositions[left++];
+					} else {
+						toKeys[index] = fromKeys[right];
+						toPositions[index] = fromPositions[right++];
+					}
+				}
+			}
+
+			long[] swapKeys = fromKeys;
+			fromKeys = toKeys;
+			toKeys = swapKeys;
+
+			int[] swapPositions = fromPositions;
+			fromPositions = toPositions;
+			toPositions = swapPositions;
+		}
+
+		if(fromKeys != keys) {
+			System.arraycopy(fromKeys, 0, keys, 0, size);
+			System.arraycopy(fromPositions, 0, positions, 0, size);
+		}
+	}
+
+}
@@ -23,8 +23,8 @@ package com.sangupta.gather;
 
 import java.math.BigDecimal;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
@@ -39,12 +39,28 @@ import java.util.regex.Pattern;
  */
 abstract class GatherUtils {
 
-	final static Map<String, Pattern> COMPILED_PATTERNS = new HashMap<>();
+	final static GatherPatternCache COMPILED_PATTERNS = new GatherPatternCache(GatherPatternCache.DEFAULT_CAPACITY);
 
 	final static Object[] NUMBER_TYPES = new Object[] { Integer.class, Long.class, Byte.class, Short.class,
 														Float.class, Double.class, AtomicLong.class, AtomicInteger.class
 	};
 
+	/**
+	 * Check if the given collection decides for itself which values it
+	 * contains, like a {@link java.util.SortedSet} built with a comparator,
+	 * so that its values cannot be copied into a hash set or looked up in a
+	 * hash index without changing what matches.
+	 *
+	 * @param collection
+	 *            the collection to check
+	 *
+	 * @return <code>true</code> if the collection is a {@link Set} other
+	 *         than a {@link HashSet}
+	 */
+	static boolean hasOwnEquality(Object collection) {
+		return collection instanceof Set && !(collection instanceof HashSet);
+	}
+
 	static boolean contains(char[] array, Object value) {
 		if(array == null) {
 			return false;
@@ -304,14 +320,13 @@ abstract class GatherUtils {
 		final int stringLength = string.length();
 		final int patternLength = pattern.length();
 
-		final char[] stringArray = string.toCharArray();
-		final char[] patternArray = pattern.toCharArray();
-
 		while (i < stringLength) {
-			if (j < patternLength && (patternArray[j] == '?' || patternArray[j] == stringArray[i])) {
+			final char patternChar = j < patternLength ? pattern.charAt(j) : 0;
+
+			if (j < patternLength && (patternChar == '?' || patternChar == string.charAt(i))) {
 				++i;
 				++j;
-			} else if (j < patternLength && patternArray[j] == '*') {
+			} else if (j < patternLength && patternChar == '*') {
 				starIndex = j;
 				iIndex = i;
 				j++;
@@ -324,7 +339,7 @@ abstract class GatherUtils {
 			}
 		}
 
-		while (j < patternLength && patternArray[j] == '*') {
+		while (j < patternLength && pattern.charAt(j) == '*') {
 			++j;
 		}
 
@@ -357,13 +372,7 @@ abstract class GatherUtils {
 			return false;
 		}
 
-		Pattern compiled = COMPILED_PATTERNS.get(pattern);
-		if(compiled == null) {
-			compiled = Pattern.compile(pattern);
-			COMPILED_PATTERNS.put(pattern, compiled);
-		}
-
-		return regexMatch(value, compiled);
+		return COMPILED_PATTERNS.get(pattern).matches(value);
 	}
 
 	public static boolean isNumberType(Object object) {
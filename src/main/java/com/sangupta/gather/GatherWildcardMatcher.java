@@ -0,0 +1,259 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A wildcard pattern analysed once into the cheapest way to match it. Patterns
+ * that only use <code>*</code> are matched with
+ * {@link String#startsWith(String)}, {@link String#endsWith(String)} and
+ * {@link String#indexOf(String, int)}; patterns that use <code>?</code> fall
+ * back to {@link GatherUtils#wildcardMatch(String, String)}.
+ *
+ * @author sangupta
+ *
+ * @since 1.3.0
+ */
+abstract class GatherWildcardMatcher {
+
+	/**
+	 * Check if the given value matches the pattern.
+	 *
+	 * @param value
+	 *            the non-null value to test
+	 *
+	 * @return <code>true</code> if the value matches, <code>false</code>
+	 *         otherwise
+	 */
+	abstract boolean matches(String value);
+
+	/**
+	 * Analyse the given wildcard pattern.
+	 *
+	 * @param pattern
+	 *            the non-null wildcard pattern
+	 *
+	 * @return the {@link GatherWildcardMatcher} for the pattern
+	 */
+	static GatherWildcardMatcher of(String pattern) {
+		if(pattern.indexOf('?') >= 0) {
+			return new General(pattern);
+		}
+
+		if(pattern.indexOf('*') < 0) {
+			return new Exact(pattern);
+		}
+
+		final boolean leadingStar = pattern.charAt(0) == '*';
+		final boolean trailingStar = pattern.charAt(pattern.length() - 1) == '*';
+
+		List<String> literals = new ArrayList<>();
+		for(String literal : pattern.split("\\*")) {
+			if(!literal.isEmpty()) {
+				literals.add(literal);
+			}
+		}
+
+		if(literals.isEmpty()) {
+			return ANY;
+		}
+
+		if(literals.size() == 1) {
+			String literal = literals.get(0);
+			if(leadingStar && trailingStar) {
+				return new Contains(literal);
+			}
+
+			if(leadingStar) {
+				return new Suffix(literal);
+			}
+
+			return new Prefix(literal);
+		}
+
+		String prefix = leadingStar ? "" : literals.remove(0);
+		String suffix = trailingStar ? "" : literals.remove(literals.size() - 1);
+		return new Segments(prefix, literals.toArray(new String[literals.size()]), suffix);
+	}
+
+	/**
+	 * Pattern made of stars alone
+	 */
+	static final GatherWildcardMatcher ANY = new GatherWildcardMatcher() {
+
+		@Override
+		boolean matches(String value) {
+			return true;
+		}
+
+	};
+
+	/**
+	 * Pattern without any wildcard, like <code>sandeep</code>
+	 */
+	static final class Exact extends GatherWildcardMatcher {
+
+		final String literal;
+
+		Exact(String literal) {
+			this.literal = literal;
+		}
+
+		@Override
+		boolean matches(String value) {
+			return this.literal.equals(value);
+		}
+
+	}
+
+	/**
+	 * Pattern like <code>san*</code>
+	 */
+	static final class Prefix extends GatherWildcardMatcher {
+
+		final String literal;
+
+		Prefix(String literal) {
+			this.literal = literal;
+		}
+
+		@Override
+		boolean matches(String value) {
+			return value.startsWith(this.literal);
+		}
+
+	}
+
+	/**
+	 * Pattern like <code>*gupta</code>
+	 */
+	static final class Suffix extends GatherWildcardMatcher {
+
+		final String literal;
+
+		Suffix(String literal) {
+			this.literal = literal;
+		}
+
+		@Override
+		boolean matches(String value) {
+			return value.endsWith(this.literal);
+		}
+
+	}
+
+	/**
+	 * Pattern like <code>*error*</code>
+	 */
+	static final class Contains extends GatherWildcardMatcher {
+
+		final String literal;
+
+		Contains(String literal) {
+			this.literal = literal;
+		}
+
+		@Override
+		boolean matches(String value) {
+			return value.indexOf(this.literal) >= 0;
+		}
+
+	}
+
+	/**
+	 * Any other pattern using only stars, like <code>s*d*p</code>. The anchored
+	 * prefix and suffix are checked first, and the literals in between are then
+	 * found left to right, which is enough as a star matches any run.
+	 */
+	static final class Segments extends GatherWildcardMatcher {
+
+		final String prefix;
+
+		final String[] middle;
+
+		final String suffix;
+
+		final int minimumLength;
+
+		Segments(String prefix, String[] middle, String suffix) {
+			this.prefix = prefix;
+			this.middle = middle;
+			this.suffix = suffix;
+
+			int length = prefix.length() + suffix.length();
+			for(String literal : middle) {
+				length += literal.length();
+			}
+
+			this.minimumLength = length;
+		}
+
+		@Override
+		boolean matches(String value) {
+			if(value.length() < this.minimumLength) {
+				return false;
+			}
+
+			if(!value.startsWith(this.prefix) || !value.endsWith(this.suffix)) {
+				return false;
+			}
+
+			final int end = value.length() - this.suffix.length();
+			int position = this.prefix.length();
+			for(String literal : this.middle) {
+				int index = value.indexOf(literal, position);
+				if(index < 0) {
+					return false;
+				}
+
+				position = index + literal.length();
+				if(position > end) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+	/**
+	 * Pattern using <code>?</code>
+	 */
+	static final class General extends GatherWildcardMatcher {
+
+		final String pattern;
+
+		General(String pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		boolean matches(String value) {
+			return GatherUtils.wildcardMatch(value, this.pattern);
+		}
+
+	}
+
+}
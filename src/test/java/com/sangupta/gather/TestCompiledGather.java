@@ -0,0 +1,212 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link CompiledGather}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestCompiledGather {
+
+	@Test
+	public void testCompile() {
+		final List<Worker> workers = getWorkers();
+
+		Assert.assertEquals(4, Gather.where("name").isNotNull().compile().count(workers));
+		Assert.assertEquals(2, Gather.where("age").is(36).compile().count(workers));
+		Assert.assertEquals(2, Gather.where("name").like("S*Gupta").compile().count(workers));
+		Assert.assertEquals(2, Gather.where("name").not().like("S*Gupta").compile().count(workers));
+		Assert.assertEquals(1, Gather.where("name").like("S*Gupta").and("active").is(false).compile().count(workers));
+		Assert.assertEquals(3, Gather.where("salary").in(new Object[] { 40l, 50l }).compile().count(workers));
+		Assert.assertEquals(2, Gather.where("age").is(32).or("age").is(46).compile().count(workers));
+		Assert.assertEquals(4, Gather.where("noAttribute").notExistsProperty().compile().count(workers));
+		Assert.assertEquals(1, Gather.where("list").hasAny(new Object[] { "40", "60" }).compile().count(workers));
+
+		Assert.assertEquals("Abhishek Gupta", Gather.where("age").lessThan(36).compile().findOne(workers).name);
+		Assert.assertEquals(1, Gather.where("age").is(36).compile().find(workers, 1, 1).size());
+		Assert.assertNull(Gather.where("age").is(36).compile().findOne(workers, 2));
+
+		Assert.assertFalse(Gather.where("age").is(36).compile().matches(null));
+		Assert.assertEquals(0, Gather.where("age").is(36).compile().count((Object[]) null));
+	}
+
+	@Test
+	public void testCompiledIsCachedAndImmutable() {
+		Gather query = Gather.where("age").is(36);
+		CompiledGather compiled = query.compile();
+		Assert.assertSame(compiled, query.compile());
+
+		query.and("active").is(true);
+		Assert.assertNotSame(compiled, query.compile());
+
+		final List<Worker> workers = getWorkers();
+		Assert.assertEquals(2, compiled.count(workers));
+		Assert.assertEquals(1, query.compile().count(workers));
+	}
+
+	@Test
+	public void testSharedBetweenThreads() throws InterruptedException {
+		final CompiledGather compiled = Gather.where("name").like("S*").and("salary").greaterThanOrEquals(50l).compile();
+		final List<Worker> workers = getWorkers();
+		final AtomicInteger mismatches = new AtomicInteger();
+
+		Thread[] threads = new Thread[4];
+		for(int index = 0; index < threads.length; index++) {
+			threads[index] = new Thread() {
+
+				@Override
+				public void run() {
+					for(int run = 0; run < 1000; run++) {
+						if(compiled.count(workers) != 1) {
+							mismatches.incrementAndGet();
+						}
+					}
+				}
+
+			};
+			threads[index].start();
+		}
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(0, mismatches.get());
+	}
+
+	@Test
+	public void testPrecedence() {
+		final List<Worker> workers = getWorkers();
+
+		// active = false OR (age = 32 AND name LIKE 'A*')
+		Assert.assertEquals(3, Gather.where("active").is(false).or("age").is(32).and("name").like("A*").count(workers));
+		// (age = 36 AND active = true) OR (age = 46 AND active = false)
+		Assert.assertEquals(2, Gather.where("age").is(36).and("active").is(true).or("age").is(46).and("active").is(false).count(workers));
+		Assert.assertEquals(1, Gather.where("age").is(36).and("active").is(true).count(workers));
+		Assert.assertEquals(3, Gather.where("age").is(36).or("age").is(32).count(workers));
+	}
+
+	@Test
+	public void testGrouping() {
+		final List<Worker> workers = getWorkers();
+
+		Assert.assertEquals(1, Gather.where("active").is(true).and(Gather.anyOf(Gather.where("age").is(36), Gather.where("age").is(46))).count(workers));
+		Assert.assertEquals(2, Gather.where("active").is(false).and(Gather.anyOf(Gather.where("age").is(36), Gather.where("age").is(46))).count(workers));
+		Assert.assertEquals(3, Gather.where("active").is(true).or(Gather.allOf(Gather.where("age").is(36), Gather.where("salary").is(50l))).count(workers));
+		Assert.assertEquals(2, Gather.allOf(Gather.where("name").like("*Gupta"), Gather.where("salary").greaterThan(45l)).count(workers));
+		Assert.assertEquals(4, Gather.anyOf(Gather.where("age").is(36), Gather.where("name").like("*Gupta")).count(workers));
+
+		// later changes to the grouped query are not seen
+		Gather group = Gather.where("age").is(36);
+		Gather query = Gather.where("active").is(true).and(group);
+		group.or("age").is(32);
+		Assert.assertEquals(1, query.count(workers));
+
+		// group can be followed by more clauses
+		Assert.assertEquals(1, Gather.anyOf(Gather.where("age").is(36), Gather.where("age").is(32)).and("salary").is(50l).and("active").is(true).count(workers));
+	}
+
+	@Test
+	public void testShortCircuit() {
+		List<Guarded> items = new ArrayList<>();
+		items.add(new Guarded(false));
+		items.add(new Guarded(false));
+
+		// the like clause would throw if it was evaluated
+		Assert.assertEquals(0, Gather.where("armed").is(true).and("value").like("*").count(items));
+		Assert.assertEquals(2, Gather.where("armed").is(false).or("value").like("*").count(items));
+	}
+
+	@Test
+	public void testFilteredAggregation() {
+		final List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000);
+		CompiledGather seniors = Gather.where("age").greaterThan(50).compile();
+		List<Worker> matched = seniors.find(workers);
+
+		Assert.assertEquals(Gather.count(matched, "salary"), seniors.count(workers, "salary"));
+		Assert.assertEquals(Gather.sumAsLong(matched, "salary"), seniors.sumAsLong(workers, "salary"));
+		Assert.assertEquals(Gather.sumAsDouble(matched, "salary"), seniors.sumAsDouble(workers.toArray(), "salary"));
+		Assert.assertEquals(Gather.minAsLong(matched, "salary"), seniors.minAsLong(workers, "salary"));
+		Assert.assertEquals(Gather.maxAsDouble(matched, "age"), seniors.maxAsDouble(workers, "age"));
+		Assert.assertEquals(Gather.averageAsLong(matched, "salary"), seniors.averageAsLong(workers, "salary"));
+		Assert.assertEquals(Gather.averageAsDouble(matched, "salary"), seniors.averageAsDouble(workers, "salary"));
+
+		GatherAggregator.UniqueAggregator unique = new GatherAggregator.UniqueAggregator();
+		Assert.assertEquals(Gather.unique(matched, "name").size(), seniors.aggregate(workers, "name", unique));
+
+		GatherAggregation.Result result = seniors.aggregate(workers).sumAsLong("salary").count("age").run();
+		Assert.assertEquals(Gather.sumAsLong(matched, "salary"), result.sumAsLong("salary"));
+		Assert.assertEquals(matched.size(), result.count("age"));
+
+		// nothing matched is not the same as nothing to aggregate
+		Assert.assertEquals(0l, Gather.where("age").lessThan(0).compile().sumAsLong(workers, "salary"));
+		Assert.assertNull(seniors.sumAsLong(new ArrayList<Worker>(), "salary"));
+		Assert.assertNull(seniors.sumAsLong((Object[]) null, "salary"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGroupWithOpenKey() {
+		Gather.where("age").and(Gather.where("active").is(true));
+	}
+
+	static class Guarded {
+
+		boolean armed;
+
+		Object value = new Object() {
+
+			@Override
+			public String toString() {
+				throw new IllegalStateException("Clause should not have been evaluated");
+			}
+
+		};
+
+		Guarded(boolean armed) {
+			this.armed = armed;
+		}
+
+	}
+
+	static List<Worker> getWorkers() {
+		List<Worker> workers = new ArrayList<>();
+
+		workers.add(new Worker("Sandeep Gupta", 36, true, 40l));
+		workers.add(new Worker("Abhishek Gupta", 32, true, 50l));
+		workers.add(new Worker("Amit Modi", 36, false, 50l));
+		workers.add(new Worker("Sushant Gupta", 46, false, 70l));
+
+		return workers;
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+import com.sangupta.gather.TestGatherPredicate.Numbers;
+
+/**
+ * Unit tests for {@link GatherAggregation}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherAggregation {
+
+	@Test
+	public void testSameAsSingleAggregates() {
+		List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000);
+		assertSameAsSingle(workers, "age", "salary", "noSuchKey");
+
+		// values that are not numbers can still be counted
+		Assert.assertEquals(Gather.count(workers, "name"), Gather.aggregate(workers).count("name").run().count("name"));
+		try { Gather.aggregate(workers).count("name").sumAsLong("name").run(); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+
+		List<Numbers> numbers = new ArrayList<>();
+		for(int value = -300; value <= 300; value += 7) {
+			numbers.add(new Numbers(value));
+		}
+
+		assertSameAsSingle(numbers, "byteValue", "shortValue", "intValue", "longValue", "floatValue", "doubleValue", "boxedInt", "boxedLong", "boxedDouble", "decimal");
+	}
+
+	@Test
+	public void testMixedClasses() {
+		List<Object> items = new ArrayList<>();
+		for(int index = 0; index < 100; index++) {
+			items.add(new Worker("sandeep", index, true, index * 10l));
+			items.add(new Numbers(index));
+			items.add(null);
+		}
+
+		GatherAggregation.Result result = Gather.aggregate(items).count("age").sumAsLong("intValue").maxAsDouble("salary").run();
+		Assert.assertEquals(Gather.count(items, "age"), result.count("age"));
+		Assert.assertEquals(Gather.sumAsLong(items, "intValue"), result.sumAsLong("intValue"));
+		Assert.assertEquals(Gather.maxAsDouble(items, "salary"), result.maxAsDouble("salary"));
+		Assert.assertEquals(100, result.count("age"));
+	}
+
+	@Test
+	public void testEmptyAndNull() {
+		GatherAggregation.Result result = Gather.aggregate(Collections.emptyList()).sumAsLong("salary").run();
+		Assert.assertNull(result.sumAsLong("salary"));
+
+		result = Gather.aggregate((Object[]) null).averageAsDouble("age").run();
+		Assert.assertNull(result.averageAsDouble("age"));
+	}
+
+	@Test
+	public void testNotRequested() {
+		List<Worker> workers = TestGatherParallelExecutor.getWorkers(10);
+		GatherAggregation.Result result = Gather.aggregate(workers.toArray()).sumAsLong("salary").run();
+
+		try { result.sumAsDouble("salary"); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { result.sumAsLong("age"); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { Gather.aggregate(workers).count(null); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	@Test
+	public void testRunAgain() {
+		List<Worker> workers = new ArrayList<>(TestGatherParallelExecutor.getWorkers(10));
+		GatherAggregation aggregation = Gather.aggregate(workers).sumAsLong("salary").count("salary");
+
+		GatherAggregation.Result first = aggregation.run();
+		workers.add(new Worker("sandeep", 36, true, 1000l));
+		GatherAggregation.Result second = aggregation.run();
+
+		Assert.assertEquals(10, first.count("salary"));
+		Assert.assertEquals(11, second.count("salary"));
+		Assert.assertEquals(first.sumAsLong("salary").longValue() + 1000l, second.sumAsLong("salary"));
+	}
+
+	private static void assertSameAsSingle(List<?> items, String... keys) {
+		GatherAggregation aggregation = Gather.aggregate(items);
+		for(String key : keys) {
+			aggregation.count(key).sumAsLong(key).sumAsDouble(key).minAsLong(key).minAsDouble(key).maxAsLong(key).maxAsDouble(key).averageAsLong(key).averageAsDouble(key);
+		}
+
+		GatherAggregation.Result result = aggregation.run();
+		for(String key : keys) {
+			Assert.assertEquals(key, Gather.count(items, key), result.count(key));
+			Assert.assertEquals(key, Gather.sumAsLong(items, key), result.sumAsLong(key));
+			Assert.assertEquals(key, Gather.sumAsDouble(items, key), result.sumAsDouble(key));
+			Assert.assertEquals(key, Gather.minAsLong(items, key), result.minAsLong(key));
+			Assert.assertEquals(key, Gather.minAsDouble(items, key), result.minAsDouble(key));
+			Assert.assertEquals(key, Gather.maxAsLong(items, key), result.maxAsLong(key));
+			Assert.assertEquals(key, Gather.maxAsDouble(items, key), result.maxAsDouble(key));
+			Assert.assertEquals(key, Gather.averageAsLong(items, key), result.averageAsLong(key));
+			Assert.assertEquals(key, Gather.averageAsDouble(items, key), result.averageAsDouble(key));
+		}
+	}
+
+}
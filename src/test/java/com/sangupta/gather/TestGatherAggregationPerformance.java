@@ -0,0 +1,91 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Compare computing many aggregates in a single pass against one call per
+ * aggregate, and aggregating matched items against collecting them first.
+ *
+ * @author sangupta
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+public class TestGatherAggregationPerformance {
+
+	static final List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000 * 1000);
+
+	static final CompiledGather seniors = Gather.where("age").greaterThan(50).compile();
+
+	static final GatherAggregation aggregation = Gather.aggregate(workers).count("salary").sumAsLong("salary").minAsLong("salary").maxAsLong("age").averageAsDouble("salary");
+
+	@Benchmark
+	public Object testSeparateAggregates() {
+		Object[] results = new Object[5];
+		results[0] = Gather.count(workers, "salary");
+		results[1] = Gather.sumAsLong(workers, "salary");
+		results[2] = Gather.minAsLong(workers, "salary");
+		results[3] = Gather.maxAsLong(workers, "age");
+		results[4] = Gather.averageAsDouble(workers, "salary");
+		return results;
+	}
+
+	@Benchmark
+	public Object testSinglePassAggregates() {
+		return aggregation.run();
+	}
+
+	@Benchmark
+	public Number testFindThenAggregate() {
+		return Gather.averageAsDouble(seniors.find(workers), "salary");
+	}
+
+	@Benchmark
+	public Number testFilteredAggregate() {
+		return seniors.averageAsDouble(workers, "salary");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(TestGatherAggregationPerformance.class.getSimpleName())
+											 .warmupIterations(5)
+											 .measurementIterations(20)
+											 .threads(1)
+										     .forks(1)
+										     .mode(Mode.Throughput)
+										     .build();
+
+		new Runner(options).run();
+	}
+
+}
@@ -21,6 +21,10 @@
 
 package com.sangupta.gather;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.Assert;
@@ -31,11 +35,15 @@ import com.sangupta.gather.GatherAggregator.DoubleAverageAggregator;
 import com.sangupta.gather.GatherAggregator.DoubleMaxAggregator;
 import com.sangupta.gather.GatherAggregator.DoubleMinAggregator;
 import com.sangupta.gather.GatherAggregator.DoubleSumAggregator;
+import com.sangupta.gather.GatherAggregator.ExactPercentileAggregator;
+import com.sangupta.gather.GatherAggregator.HyperLogLogAggregator;
+import com.sangupta.gather.GatherAggregator.KllPercentileAggregator;
 import com.sangupta.gather.GatherAggregator.LongAverageAggregator;
 import com.sangupta.gather.GatherAggregator.LongMaxAggregator;
 import com.sangupta.gather.GatherAggregator.LongMinAggregator;
 import com.sangupta.gather.GatherAggregator.LongSumAggregator;
 import com.sangupta.gather.GatherAggregator.UniqueAggregator;
+import com.sangupta.gather.TestGatherPredicate.Numbers;
 
 public class TestGatherAggregator {
 
@@ -229,4 +237,245 @@ public class TestGatherAggregator {
 
 		try { new LongAverageAggregator().aggregate(1, new Object()); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
 	}
+
+	@Test
+	public void testPrimitiveAggregation() {
+		List<Numbers> numbers = new ArrayList<>();
+		for(int value = -300; value <= 300; value += 7) {
+			numbers.add(new Numbers(value));
+		}
+
+		String[] keys = new String[] { "byteValue", "shortValue", "intValue", "longValue", "floatValue", "doubleValue", "boxedInt", "boxedLong", "boxedDouble", "decimal" };
+		for(String key : keys) {
+			assertPrimitive(numbers, key, new LongMinAggregator());
+			assertPrimitive(numbers, key, new LongMaxAggregator());
+			assertPrimitive(numbers, key, new LongSumAggregator());
+			assertPrimitive(numbers, key, new LongAverageAggregator());
+			assertPrimitive(numbers, key, new DoubleMinAggregator());
+			assertPrimitive(numbers, key, new DoubleMaxAggregator());
+			assertPrimitive(numbers, key, new DoubleSumAggregator());
+			assertPrimitive(numbers, key, new DoubleAverageAggregator());
+		}
+
+		// a char is never handed over as a number
+		List<Letter> letters = Arrays.asList(new Letter('a'), new Letter('b'));
+		try { Gather.sumAsLong(letters, "letter"); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	@Test
+	public void testHyperLogLogAggregator() {
+		Assert.assertEquals(0l, new HyperLogLogAggregator().getResult(0));
+
+		// small cardinalities are close to exact
+		HyperLogLogAggregator aggregator = new HyperLogLogAggregator();
+		for(int index = 0; index < 1000; index++) {
+			aggregator.aggregate(index, "value-" + (index % 100));
+			aggregator.aggregate(index, null);
+		}
+
+		Assert.assertEquals(100, aggregator.estimate(), 2);
+
+		// within four standard errors for every precision
+		for(int precision = HyperLogLogAggregator.MIN_PRECISION; precision <= HyperLogLogAggregator.MAX_PRECISION; precision += 2) {
+			aggregator = new HyperLogLogAggregator(precision);
+			for(long value = 0; value < 200000; value++) {
+				aggregator.aggregate(0, value);
+				aggregator.aggregate(0, value);
+			}
+
+			double error = 4 * 1.04 / Math.sqrt(1 << precision);
+			Assert.assertEquals("precision " + precision, 200000, aggregator.estimate(), 200000 * error);
+		}
+
+		try { new HyperLogLogAggregator(3); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { new HyperLogLogAggregator(19); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	@Test
+	public void testHyperLogLogMerge() {
+		HyperLogLogAggregator whole = new HyperLogLogAggregator(12);
+		HyperLogLogAggregator merged = new HyperLogLogAggregator(12);
+
+		// overlapping partitions
+		for(int partition = 0; partition < 4; partition++) {
+			GatherMergeableAggregator partial = merged.newPartial();
+			for(int value = partition * 10000; value < partition * 10000 + 15000; value++) {
+				partial.aggregate(0, "user-" + value);
+				whole.aggregate(0, "user-" + value);
+			}
+
+			merged.merge(partial);
+		}
+
+		Assert.assertArrayEquals(whole.registers, merged.registers);
+		Assert.assertEquals(whole.estimate(), merged.estimate());
+
+		try { merged.merge(new HyperLogLogAggregator(13)); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	@Test
+	public void testCountDistinctApprox() {
+		List<Numbers> numbers = new ArrayList<>();
+		for(int value = 0; value < 50000; value++) {
+			numbers.add(new Numbers(value % 20000));
+		}
+
+		// primitive and boxed fields hash alike
+		Number primitive = Gather.countDistinctApprox(numbers, "intValue");
+		Assert.assertEquals(primitive, Gather.countDistinctApprox(numbers, "boxedInt"));
+		Assert.assertEquals(primitive, Gather.countDistinctApprox(numbers, "boxedLong"));
+
+		HyperLogLogAggregator doubles = new HyperLogLogAggregator();
+		HyperLogLogAggregator boxed = new HyperLogLogAggregator();
+		for(int value = 0; value < 1000; value++) {
+			doubles.aggregateDouble(0, value / 4d);
+			boxed.aggregate(0, Double.valueOf(value / 4d));
+		}
+
+		Assert.assertArrayEquals(doubles.registers, boxed.registers);
+		Assert.assertEquals(20000, primitive.doubleValue(), 20000 * 4 * 1.04 / Math.sqrt(1 << 14));
+
+		Assert.assertEquals(Gather.unique(numbers, "byteValue").size(), Gather.countDistinctApprox(numbers.toArray(), "byteValue", 10).intValue(), 256 * 4 * 1.04 / Math.sqrt(1 << 10));
+		Assert.assertNull(Gather.countDistinctApprox(new ArrayList<Numbers>(), "intValue"));
+	}
+
+	@Test
+	public void testExactPercentileAggregator() {
+		Assert.assertNull(new ExactPercentileAggregator(0.5).getResult(0));
+
+		Random random = new Random(42);
+		double[] values = new double[10001];
+
+		ExactPercentileAggregator aggregator = new ExactPercentileAggregator(0.99);
+		ExactPercentileAggregator merged = new ExactPercentileAggregator(0.99);
+		GatherMergeableAggregator partial = merged.newPartial();
+		for(int index = 0; index < values.length; index++) {
+			values[index] = random.nextGaussian();
+			aggregator.aggregate(index, values[index]);
+
+			if(index % 1000 == 0) {
+				merged.merge(partial);
+				partial = merged.newPartial();
+			}
+
+			partial.aggregate(index, values[index]);
+		}
+
+		merged.merge(partial);
+		Arrays.sort(values);
+
+		Assert.assertEquals(values[9900], aggregator.getResult(0));
+		Assert.assertEquals(values[9900], merged.getResult(0));
+		Assert.assertEquals(values[0], aggregator.percentile(0), 0);
+		Assert.assertEquals(values[5000], aggregator.percentile(0.5), 0);
+		Assert.assertEquals(values[10000], aggregator.percentile(1), 0);
+
+		try { new ExactPercentileAggregator(1.5); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { new ExactPercentileAggregator(Double.NaN); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { aggregator.aggregate(0, "text"); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	@Test
+	public void testKllPercentileAggregator() {
+		Assert.assertNull(new KllPercentileAggregator(0.5).getResult(0));
+
+		// the values are a shuffled 0..n-1, so each value is its own rank
+		final int size = 1000 * 1000;
+		List<Integer> values = new ArrayList<>(size);
+		for(int value = 0; value < size; value++) {
+			values.add(value);
+		}
+
+		Collections.shuffle(values, new Random(42));
+
+		KllPercentileAggregator aggregator = new KllPercentileAggregator(0.99);
+		KllPercentileAggregator merged = new KllPercentileAggregator(0.99);
+		for(int part = 0; part < 8; part++) {
+			GatherMergeableAggregator partial = merged.newPartial();
+			for(int index = part * size / 8; index < (part + 1) * size / 8; index++) {
+				partial.aggregate(index, values.get(index));
+				aggregator.aggregateDouble(index, values.get(index));
+			}
+
+			merged.merge(partial);
+		}
+
+		Assert.assertEquals(size, aggregator.count);
+		Assert.assertEquals(size, merged.count);
+
+		double[] quantiles = new double[] { 0, 0.01, 0.25, 0.5, 0.9, 0.95, 0.99, 1 };
+		for(double quantile : quantiles) {
+			Assert.assertEquals("q" + quantile, quantile, aggregator.percentile(quantile) / size, 0.01);
+			Assert.assertEquals("merged q" + quantile, quantile, merged.percentile(quantile) / size, 0.01);
+		}
+
+		// memory stays bounded
+		int held = 0;
+		for(int level = 0; level < aggregator.sizes.length; level++) {
+			held += aggregator.sizes[level];
+		}
+
+		Assert.assertTrue(held < 4 * KllPercentileAggregator.DEFAULT_K);
+
+		try { new KllPercentileAggregator(-0.1); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { new KllPercentileAggregator(0.5, 4); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { merged.merge(new KllPercentileAggregator(0.5, 100)); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+	}
+
+	@Test
+	public void testPercentile() {
+		List<Numbers> small = new ArrayList<>();
+		for(int value = 1; value <= 1000; value++) {
+			small.add(new Numbers(value));
+		}
+
+		Collections.shuffle(small, new Random(7));
+		Assert.assertEquals(990d, Gather.percentile(small, "intValue", 0.99));
+		Assert.assertEquals(500d, Gather.percentile(small.toArray(), "boxedLong", 0.5));
+		Assert.assertNull(Gather.percentile(small, "noSuchKey", 0.5));
+
+		List<Numbers> large = new ArrayList<>();
+		for(int value = 1; value <= 200 * 1000; value++) {
+			large.add(new Numbers(value));
+		}
+
+		Collections.shuffle(large, new Random(7));
+		Assert.assertEquals(0.95, Gather.percentile(large, "intValue", 0.95).doubleValue() / large.size(), 0.01);
+		Assert.assertEquals(0.95, Gather.aggregateParallel(large, "intValue", new KllPercentileAggregator(0.95)).doubleValue() / large.size(), 0.01);
+		Assert.assertEquals(190000d, Gather.aggregateParallel(large, "intValue", new ExactPercentileAggregator(0.95)));
+	}
+
+	/**
+	 * Compare the result of the aggregator against the same aggregator only
+	 * ever handed boxed values.
+	 */
+	private static void assertPrimitive(List<Numbers> numbers, String key, final GatherAggregator aggregator) {
+		final GatherAggregator boxed = ((GatherMergeableAggregator) aggregator).newPartial();
+		GatherAggregator boxedOnly = new GatherAggregator() {
+
+			@Override
+			public void aggregate(int index, Object value) {
+				boxed.aggregate(index, value);
+			}
+
+			@Override
+			public Number getResult(int counted) {
+				return boxed.getResult(counted);
+			}
+
+		};
+
+		Number expected = GatherExecutor.aggregate(numbers, key, boxedOnly);
+		Assert.assertEquals(key + " " + aggregator.getClass().getSimpleName(), expected, GatherExecutor.aggregate(numbers, key, aggregator));
+	}
+
+	static class Letter {
+
+		char letter;
+
+		Letter(char letter) {
+			this.letter = letter;
+		}
+
+	}
 }
@@ -0,0 +1,158 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GatherBitmap}. Every bitmap is checked against a
+ * {@link TreeSet} of the same positions.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherBitmap {
+
+	@Test
+	public void testAddRemove() {
+		Random random = new Random(42);
+		GatherBitmap bitmap = new GatherBitmap();
+		TreeSet<Integer> expected = new TreeSet<>();
+
+		// dense and sparse chunks, turning from one into the other
+		for(int run = 0; run < 50000; run++) {
+			int position = random.nextBoolean() ? random.nextInt(10000) : random.nextInt(1 << 20);
+			if(random.nextInt(3) == 0) {
+				bitmap.remove(position);
+				expected.remove(position);
+			} else {
+				bitmap.add(position);
+				expected.add(position);
+			}
+		}
+
+		assertSame(expected, bitmap);
+
+		for(int position = 0; position < 20000; position++) {
+			Assert.assertEquals(expected.contains(position), bitmap.contains(position));
+		}
+
+		for(Integer position : new ArrayList<>(expected)) {
+			bitmap.remove(position);
+		}
+
+		Assert.assertTrue(bitmap.isEmpty());
+		Assert.assertEquals(0, bitmap.toArray().length);
+	}
+
+	@Test
+	public void testOperations() {
+		Random random = new Random(7);
+		for(int run = 0; run < 50; run++) {
+			TreeSet<Integer> first = randomSet(random);
+			TreeSet<Integer> second = randomSet(random);
+
+			GatherBitmap a = of(first);
+			GatherBitmap b = of(second);
+
+			TreeSet<Integer> and = new TreeSet<>(first);
+			and.retainAll(second);
+			assertSame(and, GatherBitmap.and(a, b));
+
+			TreeSet<Integer> or = new TreeSet<>(first);
+			or.addAll(second);
+			assertSame(or, GatherBitmap.or(a, b));
+
+			TreeSet<Integer> andNot = new TreeSet<>(first);
+			andNot.removeAll(second);
+			assertSame(andNot, GatherBitmap.andNot(a, b));
+
+			// operands are left as they were
+			assertSame(first, a);
+			assertSame(second, b);
+		}
+	}
+
+	@Test
+	public void testPage() {
+		TreeSet<Integer> expected = randomSet(new Random(3));
+		GatherBitmap bitmap = of(expected);
+		List<Integer> all = new ArrayList<>(expected);
+
+		for(int skip = 0; skip < all.size() + 100; skip += 997) {
+			int[] page = bitmap.toArray(skip, 50);
+			List<Integer> wanted = all.subList(Math.min(skip, all.size()), Math.min(skip + 50, all.size()));
+
+			Assert.assertEquals(wanted.size(), page.length);
+			for(int index = 0; index < page.length; index++) {
+				Assert.assertEquals(wanted.get(index).intValue(), page[index]);
+			}
+		}
+	}
+
+	private static TreeSet<Integer> randomSet(Random random) {
+		TreeSet<Integer> set = new TreeSet<>();
+		for(int chunk = 0; chunk < 6; chunk++) {
+			// skip some chunks, make others sparse or dense
+			int density = random.nextInt(4);
+			if(density == 0) {
+				continue;
+			}
+
+			int count = density == 1 ? random.nextInt(100) : density == 2 ? 3000 + random.nextInt(2000) : 40000;
+			for(int index = 0; index < count; index++) {
+				set.add((chunk << 16) | random.nextInt(1 << 16));
+			}
+		}
+
+		return set;
+	}
+
+	private static GatherBitmap of(TreeSet<Integer> set) {
+		int[] positions = new int[set.size()];
+		int index = 0;
+		for(Integer position : set) {
+			positions[index++] = position;
+		}
+
+		return GatherBitmap.of(positions);
+	}
+
+	private static void assertSame(TreeSet<Integer> expected, GatherBitmap bitmap) {
+		Assert.assertEquals(expected.size(), bitmap.cardinality());
+
+		int[] positions = bitmap.toArray();
+		Assert.assertEquals(expected.size(), positions.length);
+
+		int index = 0;
+		for(Integer position : expected) {
+			Assert.assertEquals(position.intValue(), positions[index++]);
+		}
+	}
+
+}
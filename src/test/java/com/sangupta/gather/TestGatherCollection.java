@@ -0,0 +1,264 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link GatherCollection}. After every round of changes,
+ * queries are checked against a plain scan of the items.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherCollection {
+
+	static final String[] NAMES = TestGatherIndexedCollection.NAMES;
+
+	static final Gather[] QUERIES = {
+		Gather.where("age").is(36),
+		Gather.where("age").in(new Object[] { 20, 30, 40 }),
+		Gather.where("name").is("Sangeeta"),
+		Gather.where("name").isNull(),
+		Gather.where("name").isIgnoreCase("sandeep gupta"),
+		Gather.where("salary").greaterThan(50l),
+		Gather.where("salary").lessThanOrEquals(10l),
+		Gather.where("name").greaterThan("Sangeeta"),
+		Gather.where("active").is(true),
+		Gather.where("active").not().is(true).and("age").lessThan(30),
+		Gather.where("name").like("*Gupta"),
+		Gather.where("name").regex("San.*"),
+		Gather.where("list").has("36"),
+		Gather.where("list").hasAll(new Object[] { "true", "Sangeeta" }),
+		Gather.where("age").is(36).or("salary").greaterThan(90l),
+		Gather.where("name").is("Sangeeta").and("active").is(true).and("salary").greaterThan(50l),
+		Gather.where("active").is(false).and("age").is(36).and("salary").lessThan(50l).and("name").like("S*")
+	};
+
+	@Test
+	public void testIndexesFollowChanges() {
+		final Random random = new Random(42);
+
+		GatherCollection<Worker> workers = GatherCollection.of(TestGatherIndexedCollection.getWorkers(1000));
+		workers.withHashIndex("age").withHashIndex("name").withSortedIndex("salary").withSortedIndex("name").withBitmapIndex("active").withPatternIndex("name").withInvertedIndex("list");
+		workers.withCompositeIndex("name", "active", "salary").withCompositeIndex("active", "age", "salary");
+		assertSameAsScan(workers);
+
+		for(int round = 0; round < 20; round++) {
+			List<Worker> held = new ArrayList<>(workers);
+
+			for(int change = 0; change < 200; change++) {
+				switch(random.nextInt(5)) {
+					case 0:
+						Worker added = new Worker(NAMES[random.nextInt(NAMES.length)], 20 + random.nextInt(30), random.nextBoolean(), random.nextInt(100));
+						Assert.assertTrue(workers.add(added));
+						held.add(added);
+						break;
+
+					case 1:
+						if(!held.isEmpty()) {
+							Assert.assertTrue(workers.remove(held.remove(random.nextInt(held.size()))));
+						}
+
+						break;
+
+					default:
+						if(!held.isEmpty()) {
+							Worker worker = held.get(random.nextInt(held.size()));
+							worker.age = 20 + random.nextInt(30);
+							worker.salary = random.nextInt(100);
+							worker.active = random.nextBoolean();
+							worker.name = NAMES[random.nextInt(NAMES.length)];
+							worker.list = Arrays.asList(worker.name, String.valueOf(worker.age), String.valueOf(worker.active));
+							Assert.assertTrue(workers.update(worker));
+						}
+				}
+			}
+
+			Assert.assertEquals(held.size(), workers.size());
+			assertSameAsScan(workers);
+		}
+
+		// remove using the indexes, through the iterator and in bulk
+		Assert.assertTrue(workers.removeIf(Gather.where("age").lessThan(25)));
+		Assert.assertEquals(0, Gather.where("age").lessThan(25).count(new ArrayList<>(workers)));
+		assertSameAsScan(workers);
+
+		for(Iterator<Worker> iterator = workers.iterator(); iterator.hasNext(); ) {
+			if(iterator.next().active) {
+				iterator.remove();
+			}
+		}
+
+		Assert.assertEquals(0, Gather.where("active").is(true).count(workers));
+		assertSameAsScan(workers);
+
+		workers.retainAll(Gather.where("salary").lessThan(50l).find(new ArrayList<>(workers)));
+		assertSameAsScan(workers);
+
+		workers.clear();
+		Assert.assertTrue(workers.isEmpty());
+		for(Gather query : QUERIES) {
+			Assert.assertEquals(0, query.count(workers));
+		}
+
+		workers.addAll(TestGatherIndexedCollection.getWorkers(500));
+		assertSameAsScan(workers);
+	}
+
+	@Test
+	public void testCollection() {
+		Worker sandeep = new Worker("Sandeep Gupta", 36, true, 40l);
+		Worker sangeeta = new Worker("Sangeeta", 32, false, 50l);
+
+		GatherCollection<Worker> workers = new GatherCollection<Worker>().withHashIndex("age");
+		Assert.assertEquals(0, workers.modificationCount());
+		Assert.assertTrue(workers.add(sandeep));
+		Assert.assertFalse(workers.add(sandeep));
+		Assert.assertTrue(workers.add(sangeeta));
+		Assert.assertEquals(2, workers.size());
+		Assert.assertEquals(2, workers.modificationCount());
+		Assert.assertTrue(workers.contains(sandeep));
+		Assert.assertFalse(workers.contains(new Worker("Sandeep Gupta", 36, true, 40l)));
+		Assert.assertFalse(workers.contains(null));
+		Assert.assertArrayEquals(new Object[] { sandeep, sangeeta }, workers.toArray());
+		Assert.assertSame(sangeeta, Gather.where("age").is(32).findOne(workers));
+
+		// an item changed without an update is left stale
+		sangeeta.age = 33;
+		Assert.assertNull(Gather.where("age").is(33).findOne(workers));
+		Assert.assertTrue(workers.update(sangeeta));
+		Assert.assertSame(sangeeta, Gather.where("age").is(33).findOne(workers));
+		Assert.assertFalse(workers.update(new Worker("Abhishek Gupta", 20, true, 10l)));
+
+		// a removed slot is taken by the next item
+		Assert.assertTrue(workers.remove(sandeep));
+		Assert.assertFalse(workers.remove(sandeep));
+		Worker abhishek = new Worker("Abhishek Gupta", 36, true, 10l);
+		workers.add(abhishek);
+		Assert.assertEquals(Arrays.asList(abhishek, sangeeta), new ArrayList<>(workers));
+		Assert.assertEquals(Arrays.asList(abhishek), Gather.where("age").is(36).find(workers));
+
+		Iterator<Worker> iterator = workers.iterator();
+		iterator.next();
+		workers.add(sandeep);
+		try {
+			iterator.next();
+			Assert.assertTrue(false);
+		} catch(ConcurrentModificationException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			workers.add(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			workers.withSortedIndex(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			workers.withCompositeIndex("age");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			GatherCollection.of((List<Worker>) null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void testConcurrentReaders() throws InterruptedException {
+		final GatherCollection<Worker> workers = GatherCollection.of(TestGatherIndexedCollection.getWorkers(2000)).withHashIndex("age").withSortedIndex("salary");
+		final Gather query = Gather.where("age").is(36).and("salary").greaterThan(20l);
+		final CompiledGather compiled = query.compile();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		Thread[] readers = new Thread[4];
+		for(int index = 0; index < readers.length; index++) {
+			readers[index] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						for(int run = 0; run < 500; run++) {
+							for(Worker worker : query.find(workers)) {
+								Assert.assertTrue(compiled.matches(worker));
+							}
+						}
+					} catch(Throwable t) {
+						failure.set(t);
+					}
+				}
+
+			};
+
+			readers[index].start();
+		}
+
+		Random random = new Random(42);
+		for(int change = 0; change < 5000; change++) {
+			workers.add(new Worker("Sandeep Gupta", 20 + random.nextInt(30), true, random.nextInt(100)));
+			workers.remove(workers.findOne(Gather.where("age").is(20 + random.nextInt(30))));
+		}
+
+		for(Thread reader : readers) {
+			reader.join();
+		}
+
+		Assert.assertNull(failure.get());
+		assertSameAsScan(workers);
+	}
+
+	static void assertSameAsScan(GatherCollection<Worker> workers) {
+		List<Worker> items = new ArrayList<>(workers);
+		for(Gather query : QUERIES) {
+			Assert.assertEquals(query.find(items), query.find(workers));
+			Assert.assertEquals(query.count(items), query.count(workers));
+			Assert.assertEquals(query.find(items, 5, 3), query.find(workers, 5, 3));
+			Assert.assertEquals(query.findOne(items, 2), query.findOne(workers, 2));
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Check the cost of keeping the indexes of a {@link GatherCollection} up to
+ * date, and of querying it.
+ *
+ * @author sangupta
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+public class TestGatherCollectionPerformance {
+
+	static final List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000 * 1000);
+
+	static final GatherCollection<Worker> collection = GatherCollection.of(workers).withHashIndex("salary").withSortedIndex("salary").withBitmapIndex("active");
+
+	static final Gather equalsQuery = Gather.where("salary").is(123456l);
+
+	static final Gather rangeQuery = Gather.where("salary").greaterThan(990000l);
+
+	static int next;
+
+	@Benchmark
+	public List<Worker> testEqualsScan() {
+		return equalsQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testEqualsGatherCollection() {
+		return equalsQuery.find(collection);
+	}
+
+	@Benchmark
+	public List<Worker> testRangeGatherCollection() {
+		return rangeQuery.find(collection);
+	}
+
+	@Benchmark
+	public boolean testUpdate() {
+		Worker worker = workers.get(next++ % workers.size());
+		worker.salary = (worker.salary + 1) % 1000000;
+		worker.active = !worker.active;
+		return collection.update(worker);
+	}
+
+	@Benchmark
+	public boolean testRemoveAndAdd() {
+		Worker worker = workers.get(next++ % workers.size());
+		collection.remove(worker);
+		return collection.add(worker);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(TestGatherCollectionPerformance.class.getSimpleName())
+											 .warmupIterations(5)
+											 .measurementIterations(20)
+											 .threads(1)
+										     .forks(1)
+										     .mode(Mode.Throughput)
+										     .build();
+
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Check read throughput of the shared metadata caches when hit from many
+ * threads at once.
+ *
+ * @author sangupta
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class TestGatherConcurrentPerformance {
+
+	static final Worker worker = new Worker("sandeep", 36, true, 40l);
+
+	@Benchmark
+	public Object testAccessorLookup() {
+		return GatherReflect.getAccessor(worker, "age");
+	}
+
+	@Benchmark
+	public Object testFieldLookup() {
+		return GatherReflect.getField(worker, "name");
+	}
+
+	@Benchmark
+	public boolean testCompiledPatternLookup() {
+		return GatherUtils.regexMatch("sandeep", "san.*");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for(int threads = 1; threads <= 8; threads *= 2) {
+			Options options = new OptionsBuilder().include(TestGatherConcurrentPerformance.class.getSimpleName())
+												 .warmupIterations(5)
+												 .measurementIterations(20)
+												 .threads(threads)
+											     .forks(1)
+											     .mode(Mode.Throughput)
+											     .build();
+
+			new Runner(options).run();
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Compare counting distinct values exactly against estimating them with a
+ * HyperLogLog sketch. Run with <code>-prof gc</code> to compare the memory
+ * allocated per count.
+ *
+ * @author sangupta
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+public class TestGatherDistinctPerformance {
+
+	static final List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000 * 1000);
+
+	@Benchmark
+	public int testUnique() {
+		return Gather.unique(workers, "salary").size();
+	}
+
+	@Benchmark
+	public Number testCountDistinctApprox() {
+		return Gather.countDistinctApprox(workers, "salary");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(TestGatherDistinctPerformance.class.getSimpleName())
+											 .warmupIterations(5)
+											 .measurementIterations(20)
+											 .threads(1)
+										     .forks(1)
+										     .mode(Mode.Throughput)
+										     .build();
+
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,239 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link GatherGroupBy}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherGroupBy {
+
+	private static final List<Worker> workers = TestGatherParallelExecutor.getWorkers(10 * 1000);
+
+	@Test
+	public void testGroupByObjectKey() {
+		assertSameAsReference(workers, "name");
+		assertSameAsReference(workers, "active");
+	}
+
+	@Test
+	public void testGroupByPrimitiveKey() {
+		assertSameAsReference(workers, "age");
+
+		// many groups, to grow the table
+		assertSameAsReference(workers, "salary");
+	}
+
+	@Test
+	public void testGroupByManyKeys() {
+		assertSameAsReference(workers, "name", "active");
+
+		GatherGroup group = Gather.groupBy(workers, "name", "active").run().get(0);
+		Assert.assertEquals(Arrays.asList((Object) "sandeep", true), group.getKey());
+		Assert.assertEquals(Arrays.asList((Object) "sandeep", true), group.getKeys());
+	}
+
+	@Test
+	public void testMixedClasses() {
+		List<Object> items = new ArrayList<>();
+		for(int index = 0; index < 100; index++) {
+			items.add(new Worker("sandeep", index % 10, true, index));
+			items.add(new Boxed(index % 10));
+			items.add(new Object());
+			items.add(null);
+		}
+
+		// int ages read as primitives and boxed ages end up in the same group
+		List<GatherGroup> groups = Gather.groupBy(items, "age").count("age").count("salary").run();
+		Assert.assertEquals(10, groups.size());
+		for(int index = 0; index < groups.size(); index++) {
+			Assert.assertEquals(index, groups.get(index).getKey());
+			Assert.assertEquals(20, groups.get(index).size());
+			Assert.assertEquals(20, groups.get(index).count("age"));
+			Assert.assertEquals(10, groups.get(index).count("salary"));
+		}
+	}
+
+	@Test
+	public void testNullKey() {
+		List<Worker> items = new ArrayList<>();
+		items.add(new Worker(null, 1, true, 10l));
+		items.add(new Worker("sandeep", 2, true, 20l));
+		items.add(new Worker(null, 3, true, 30l));
+
+		List<GatherGroup> groups = Gather.groupBy(items.toArray(), "name").sumAsLong("salary").run();
+		Assert.assertEquals(2, groups.size());
+		Assert.assertNull(groups.get(0).getKey());
+		Assert.assertEquals(40l, groups.get(0).sumAsLong("salary"));
+		Assert.assertEquals("sandeep", groups.get(1).getKey());
+	}
+
+	@Test
+	public void testHaving() {
+		List<GatherGroup> groups = Gather.groupBy(workers, "age").averageAsDouble("salary").having(new GatherGroupBy.Having() {
+
+			@Override
+			public boolean accept(GatherGroup group) {
+				return group.averageAsDouble("salary").doubleValue() > 500000;
+			}
+
+		}).run();
+
+		Assert.assertFalse(groups.isEmpty());
+		for(GatherGroup group : Gather.groupBy(workers, "age").averageAsDouble("salary").run()) {
+			boolean expected = group.averageAsDouble("salary").doubleValue() > 500000;
+			Assert.assertEquals(expected, containsKey(groups, group.getKey()));
+		}
+	}
+
+	@Test
+	public void testCustomAggregator() {
+		GatherGroupBy groupBy = Gather.groupBy(workers, "name").aggregate("maxAge", "age", new GatherAggregator.LongMaxAggregator());
+		try { groupBy.aggregate("maxAge", "salary", new GatherAggregator.LongSumAggregator()); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+
+		for(GatherGroup group : groupBy.run()) {
+			Assert.assertEquals(Gather.maxAsLong(Gather.where("name").is(group.getKey()).find(workers), "age"), group.get("maxAge"));
+			Assert.assertTrue(group.aggregator("maxAge") instanceof GatherAggregator.LongMaxAggregator);
+
+			try { group.sumAsLong("salary"); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		}
+
+		try { Gather.groupBy(workers); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		try { Gather.groupBy(workers, (String) null); Assert.assertTrue(false); } catch(IllegalArgumentException e) { Assert.assertTrue(true); }
+		Assert.assertTrue(Gather.groupBy((Object[]) null, "name").count("age").run().isEmpty());
+	}
+
+	@Test
+	public void testFiltered() {
+		CompiledGather seniors = Gather.where("age").greaterThan(50).compile();
+		assertSame(Gather.groupBy(seniors.find(workers), "name").sumAsLong("salary").run(), seniors.groupBy(workers, "name").sumAsLong("salary").run());
+	}
+
+	@Test
+	public void testParallel() {
+		List<Worker> many = TestGatherParallelExecutor.getWorkers(100 * 1000);
+
+		assertSame(Gather.groupBy(many, "age").sumAsLong("salary").unique("name").run(), Gather.groupBy(many, "age").sumAsLong("salary").unique("name").parallel().run());
+		assertSame(Gather.groupBy(many, "name", "active").minAsLong("salary").run(), Gather.groupBy(many, "name", "active").minAsLong("salary").parallel().run());
+		assertSame(Gather.groupBy(many, "salary").count("age").run(), Gather.groupBy(many, "salary").count("age").parallel().run());
+
+		CompiledGather seniors = Gather.where("age").greaterThan(50).compile();
+		assertSame(seniors.groupBy(many, "name").averageAsDouble("salary").run(), seniors.parallel().groupBy(many, "name").averageAsDouble("salary").run());
+	}
+
+	/**
+	 * Compare the group by against grouping into a {@link LinkedHashMap} and
+	 * running the single aggregates over each group.
+	 */
+	private static void assertSameAsReference(List<Worker> items, String... keys) {
+		Map<Object, List<Worker>> reference = new LinkedHashMap<>();
+		for(Worker item : items) {
+			Object key;
+			if(keys.length == 1) {
+				key = GatherReflect.getAccessor(item, keys[0]).get(item);
+			} else {
+				List<Object> values = new ArrayList<>();
+				for(String name : keys) {
+					values.add(GatherReflect.getAccessor(item, name).get(item));
+				}
+
+				key = values;
+			}
+
+			List<Worker> group = reference.get(key);
+			if(group == null) {
+				group = new ArrayList<>();
+				reference.put(key, group);
+			}
+
+			group.add(item);
+		}
+
+		List<GatherGroup> groups = Gather.groupBy(items, keys).count("salary").sumAsLong("salary").averageAsDouble("salary").minAsLong("age").maxAsDouble("age").unique("name").run();
+		Assert.assertEquals(reference.size(), groups.size());
+
+		int index = 0;
+		for(Map.Entry<Object, List<Worker>> entry : reference.entrySet()) {
+			GatherGroup group = groups.get(index++);
+			List<Worker> expected = entry.getValue();
+
+			Assert.assertEquals(entry.getKey(), group.getKey());
+			Assert.assertEquals(expected.size(), group.size());
+			Assert.assertEquals(Gather.count(expected, "salary"), group.count("salary"));
+			Assert.assertEquals(Gather.sumAsLong(expected, "salary"), group.sumAsLong("salary"));
+			Assert.assertEquals(Gather.averageAsDouble(expected, "salary"), group.averageAsDouble("salary"));
+			Assert.assertEquals(Gather.minAsLong(expected, "age"), group.minAsLong("age"));
+			Assert.assertEquals(Gather.maxAsDouble(expected, "age"), group.maxAsDouble("age"));
+			Assert.assertEquals(Gather.unique(expected, "name"), group.unique("name"));
+		}
+	}
+
+	private static void assertSame(List<GatherGroup> expected, List<GatherGroup> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for(int index = 0; index < expected.size(); index++) {
+			GatherGroup first = expected.get(index);
+			GatherGroup second = actual.get(index);
+
+			Assert.assertEquals(first.getKey(), second.getKey());
+			Assert.assertEquals(first.size(), second.size());
+			Assert.assertArrayEquals(first.found, second.found);
+			for(int column = 0; column < first.aggregators.length; column++) {
+				Assert.assertEquals(first.aggregators[column].getResult(first.found[column]), second.aggregators[column].getResult(second.found[column]));
+			}
+		}
+	}
+
+	private static boolean containsKey(List<GatherGroup> groups, Object key) {
+		for(GatherGroup group : groups) {
+			if(group.getKey().equals(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	static class Boxed {
+
+		Integer age;
+
+		Boxed(Integer age) {
+			this.age = age;
+		}
+
+	}
+
+}
@@ -0,0 +1,187 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Compare queries answered by the indexes of a {@link GatherIndexedCollection}
+ * against scanning the whole collection.
+ *
+ * @author sangupta
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+public class TestGatherIndexPerformance {
+
+	static final List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000 * 1000);
+
+	static final GatherIndexedCollection<Worker> indexed = GatherIndexedCollection.of(workers).withHashIndex("salary").withSortedIndex("salary").withBitmapIndex("active").withBitmapIndex("name").withInvertedIndex("list").withPatternIndex("salary");
+
+	static final GatherIndexedCollection<Worker> composite = GatherIndexedCollection.of(workers).withCompositeIndex("name", "age", "salary");
+
+	static final Gather equalsQuery = Gather.where("salary").is(123456l);
+
+	static final Gather inQuery = Gather.where("salary").in(new Object[] { 1l, 10l, 100l, 1000l, 10000l, 100000l });
+
+	static final Gather rangeQuery = Gather.where("salary").greaterThan(990000l);
+
+	static final Gather wideRangeQuery = Gather.where("salary").greaterThan(500000l);
+
+	static final Gather bitmapQuery = Gather.where("active").is(true).and("name").not().is("sandeep");
+
+	static final Gather hasAllQuery = Gather.where("list").hasAll(new Object[] { "sandeep", "32", "true" });
+
+	static final Gather likeQuery = Gather.where("salary").like("*4242*");
+
+	static final Gather regexQuery = Gather.where("salary").regex("12.*89");
+
+	static final Gather andQuery = Gather.where("name").is("sandeep").and("age").is(36).and("salary").greaterThan(500000l);
+
+	@Benchmark
+	public List<Worker> testEqualsScan() {
+		return equalsQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testEqualsHashIndex() {
+		return indexed.find(equalsQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testInScan() {
+		return inQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testInHashIndex() {
+		return indexed.find(inQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testRangeScan() {
+		return rangeQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testRangeSortedIndex() {
+		return indexed.find(rangeQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testWideRangeScan() {
+		return wideRangeQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testWideRangeSortedIndex() {
+		return indexed.find(wideRangeQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testPageScan() {
+		return rangeQuery.find(workers, 10, 100);
+	}
+
+	@Benchmark
+	public List<Worker> testPageSortedIndex() {
+		return indexed.find(rangeQuery, 10, 100);
+	}
+
+	@Benchmark
+	public int testCountScan() {
+		return bitmapQuery.count(workers);
+	}
+
+	@Benchmark
+	public int testCountBitmapIndex() {
+		return indexed.count(bitmapQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testHasAllScan() {
+		return hasAllQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testHasAllInvertedIndex() {
+		return indexed.find(hasAllQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testLikeScan() {
+		return likeQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testLikePatternIndex() {
+		return indexed.find(likeQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testRegexScan() {
+		return regexQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testRegexPatternIndex() {
+		return indexed.find(regexQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testAndScan() {
+		return andQuery.find(workers);
+	}
+
+	@Benchmark
+	public List<Worker> testAndSingleIndexes() {
+		return indexed.find(andQuery);
+	}
+
+	@Benchmark
+	public List<Worker> testAndCompositeIndex() {
+		return composite.find(andQuery);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(TestGatherIndexPerformance.class.getSimpleName())
+											 .warmupIterations(5)
+											 .measurementIterations(20)
+											 .threads(1)
+										     .forks(1)
+										     .mode(Mode.Throughput)
+										     .build();
+
+		new Runner(options).run();
+	}
+
+}
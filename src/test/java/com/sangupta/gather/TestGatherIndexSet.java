@@ -0,0 +1,66 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link GatherIndexSet}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherIndexSet {
+
+	@Test
+	public void testPlanCost() {
+		List<Worker> workers = TestGatherParallelExecutor.getWorkers(10000);
+
+		GatherIndexSet indexes = new GatherIndexSet();
+		indexes.add(new GatherSortedIndex("salary"), workers);
+		indexes.add(new GatherHashIndex("age"), workers);
+		indexes.add(new GatherBitmapIndex("name"), workers);
+
+		// a narrow range is looked up, a wide one is scanned
+		Assert.assertNotNull(indexes.plan(Gather.where("salary").greaterThan(990000l).criteria, 0));
+		Assert.assertNull(indexes.plan(Gather.where("salary").greaterThan(500000l).criteria, 0));
+
+		// a wide range is tested on the candidates of the other criteria
+		GatherIndexSet.Plan plan = indexes.plan(Gather.where("age").is(36).and("salary").greaterThan(500000l).criteria, 0);
+		Assert.assertFalse(plan.exact);
+		Assert.assertEquals(Gather.where("age").is(36).count(workers), plan.positions.cardinality());
+
+		// bitmaps cost nothing to look up, and answer exactly
+		plan = indexes.plan(Gather.where("name").is("sandeep").and("name").not().is("sushant").criteria, 0);
+		Assert.assertTrue(plan.exact);
+		Assert.assertEquals(2500, plan.positions.cardinality());
+
+		// most items are left to test
+		Assert.assertNull(indexes.plan(Gather.where("name").not().is("sandeep").and("salary").greaterThan(500000l).criteria, 0));
+	}
+
+}
@@ -0,0 +1,469 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link GatherIndexedCollection}. Every query is checked
+ * against a plain scan of the same items.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherIndexedCollection {
+
+	static final String[] NAMES = { "Sandeep Gupta", "SANDEEP GUPTA", "Abhishek Gupta", "Sangeeta", "straße", "STRASSE", null };
+
+	@Test
+	public void testHashIndex() {
+		final List<Worker> workers = getWorkers(2000);
+		final GatherIndexedCollection<Worker> indexed = GatherIndexedCollection.of(workers).withHashIndex("age").withHashIndex("name");
+
+		assertSameAsScan(indexed, workers, Gather.where("age").is(36));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(36l));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(null));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(1000));
+		assertSameAsScan(indexed, workers, Gather.where("age").in(new Object[] { 20, 36, 36, 50l, null }));
+		assertSameAsScan(indexed, workers, Gather.where("age").in(Arrays.asList(21, 22, 23)));
+		assertSameAsScan(indexed, workers, Gather.where("name").is("Sandeep Gupta"));
+		assertSameAsScan(indexed, workers, Gather.where("name").isIgnoreCase("sandeep gupta"));
+		assertSameAsScan(indexed, workers, Gather.where("name").isIgnoreCase("STRASSE"));
+		assertSameAsScan(indexed, workers, Gather.where("age").isIgnoreCase("36"));
+		assertSameAsScan(indexed, workers, Gather.where("name").isNull());
+
+		// a set with its own equality cannot be looked up by hash
+		SortedSet<String> caseless = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		caseless.add("sandeep gupta");
+		assertSameAsScan(indexed, workers, Gather.where("name").in(caseless));
+
+		// indexed criteria combined with others
+		assertSameAsScan(indexed, workers, Gather.where("age").is(36).and("active").is(true));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").in(new Object[] { 30, 40 }).and("name").like("S*"));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(36).or("age").is(40));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(36).or("salary").greaterThan(90l));
+		assertSameAsScan(indexed, workers, Gather.where("age").not().is(36));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(36).and(Gather.anyOf(Gather.where("name").is("Sangeeta"), Gather.where("age").is(40))));
+		assertSameAsScan(indexed, workers, Gather.allOf(Gather.where("age").is(36), Gather.where("name").isIgnoreCase("sangeeta")));
+		assertSameAsScan(indexed, workers, Gather.where("salary").greaterThan(50l));
+		assertSameAsScan(indexed, workers, Gather.where("noAttribute").is(1).or("age").is(36));
+	}
+
+	@Test
+	public void testSortedIndex() {
+		final List<Measure> measures = getMeasures(3000);
+		final String[] keys = { "tiny", "small", "boxed", "ratio", "weight", "price", "code", "mixed" };
+
+		GatherIndexedCollection<Measure> indexed = GatherIndexedCollection.of(measures);
+		for(String key : keys) {
+			indexed.withSortedIndex(key);
+		}
+
+		final Object[] bounds = { 0, 10, -10, 300, 36.5d, 1000l, 0.5f, -0.0d, Double.NaN, new BigDecimal("12.25"), "abc" };
+		for(String key : keys) {
+			for(Object bound : bounds) {
+				if(key.equals("code")) {
+					// strings cannot be compared with numbers, even in a scan
+					bound = String.valueOf(bound);
+				}
+
+				if(key.equals("price") && bound.equals(Double.NaN)) {
+					// not a decimal, fails in a scan too
+					continue;
+				}
+
+				assertSameAsScan(indexed, measures, Gather.where(key).greaterThan(bound));
+				assertSameAsScan(indexed, measures, Gather.where(key).greaterThanOrEquals(bound));
+				assertSameAsScan(indexed, measures, Gather.where(key).lessThan(bound));
+				assertSameAsScan(indexed, measures, Gather.where(key).lessThanOrEquals(bound));
+			}
+		}
+
+		// ranges combined with other criteria
+		assertSameAsScan(indexed, measures, Gather.where("boxed").greaterThan(10).and("boxed").lessThanOrEquals(40));
+		assertSameAsScan(indexed, measures, Gather.where("ratio").lessThan(0).or("tiny").greaterThan(100));
+		assertSameAsScan(indexed, measures, Gather.where("price").greaterThan(50).and("code").like("A*"));
+		assertSameAsScan(indexed, measures, Gather.where("small").not().greaterThan(0));
+	}
+
+	@Test
+	public void testBitmapIndex() {
+		final List<Worker> workers = getWorkers(5000);
+		final GatherIndexedCollection<Worker> indexed = GatherIndexedCollection.of(workers).withBitmapIndex("active").withBitmapIndex("name").withHashIndex("age");
+
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(Boolean.FALSE));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(null));
+		assertSameAsScan(indexed, workers, Gather.where("active").is("true"));
+		assertSameAsScan(indexed, workers, Gather.where("name").isNull());
+		assertSameAsScan(indexed, workers, Gather.where("name").isNotNull());
+		assertSameAsScan(indexed, workers, Gather.where("name").in(new Object[] { "Sangeeta", "straße", null }));
+		assertSameAsScan(indexed, workers, Gather.where("name").not().in(new Object[] { "Sangeeta", "straße" }));
+
+		SortedSet<String> caseless = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		caseless.add("sangeeta");
+		assertSameAsScan(indexed, workers, Gather.where("name").in(caseless));
+		assertSameAsScan(indexed, workers, Gather.where("name").not().in(caseless).and("active").is(true));
+		assertSameAsScan(indexed, workers, Gather.where("name").not().is("Sangeeta").and("active").is(true));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("name").is("Sangeeta").or("age").not().in(new Object[] { 20, 21 }));
+		assertSameAsScan(indexed, workers, Gather.where("age").is(30).or("name").isNull().and("active").not().is(true));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and(Gather.where("name").not().is("Sangeeta").or("age").is(30)));
+
+		// negating inexact or unindexed criteria falls back to testing items
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("name").not().isIgnoreCase("sangeeta"));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("salary").not().lessThan(50l));
+	}
+
+	@Test
+	public void testInvertedIndex() {
+		final List<Document> documents = getDocuments(3000);
+		final String[] keys = { "tags", "set", "sorted", "array", "ints", "longs", "bytes", "doubles", "name" };
+
+		GatherIndexedCollection<Document> indexed = GatherIndexedCollection.of(documents);
+		for(String key : keys) {
+			indexed.withInvertedIndex(key);
+		}
+
+		final Object[] values = { "t1", "T1", "t7", 3, 3l, 259, (byte) 3, 4294967299l, 3.0d, null, "missing" };
+		for(String key : keys) {
+			// a sorted set of strings cannot even be probed for numbers
+			final boolean strings = key.equals("sorted");
+
+			for(Object value : values) {
+				if(value != null && !(strings && value instanceof Number)) {
+					assertSameAsScan(indexed, documents, Gather.where(key).has(value));
+				}
+			}
+
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAny(new Object[] { "t1", "t2" }));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAll(new Object[] { "t1", "t2" }));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAll(new Object[0]));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAny(new Object[0]));
+
+			if(strings) {
+				continue;
+			}
+
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAny(new Object[] { "t1", "t2", null }));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAny(Arrays.asList(1, 2l, "t3")));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAny(new Integer[] { 1, 2 }));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAll(new Object[] { "t1", null }));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAll(new Long[] { 1l, 2l }));
+			assertSameAsScan(indexed, documents, Gather.where(key).hasAll(Arrays.asList(1, 2)));
+			assertSameAsScan(indexed, documents, Gather.where(key).not().hasAny(new Object[] { "t1", 1 }));
+		}
+
+		assertSameAsScan(indexed, documents, Gather.where("tags").has("t1").and("ints").hasAll(new Integer[] { 1, 2 }));
+		assertSameAsScan(indexed, documents, Gather.where("tags").has("t1").or("longs").has(5));
+	}
+
+	@Test
+	public void testPatternIndex() {
+		final String[] syllables = { "san", "dee", "p", "gup", "ta", "ab", "hi", "ß", ".", "a+b", "😀" };
+		final Random random = new Random(42);
+
+		List<Worker> workers = getWorkers(3000);
+		for(Worker worker : workers) {
+			if(worker.name != null && random.nextInt(4) > 0) {
+				StringBuilder builder = new StringBuilder();
+				for(int count = random.nextInt(5); count >= 0; count--) {
+					builder.append(syllables[random.nextInt(syllables.length)]);
+				}
+
+				worker.name = builder.toString();
+			}
+		}
+
+		GatherIndexedCollection<Worker> indexed = GatherIndexedCollection.of(workers).withPatternIndex("name").withPatternIndex("age").withHashIndex("active");
+
+		final String[] wildcards = { "sandee*", "san*", "sandeep", "", "*", "*gup*", "*deep", "s?n*ta", "*dee*gup*", "?", "??", "*ab?hi*", "Sandeep Gupta", "*Gupta", "zzz*", "*zzz*", "ß*", "*😀*", "3*", "4?", "*a+b*" };
+		for(String pattern : wildcards) {
+			assertSameAsScan(indexed, workers, Gather.where("name").like(pattern));
+			assertSameAsScan(indexed, workers, Gather.where("name").not().like(pattern));
+			assertSameAsScan(indexed, workers, Gather.where("age").like(pattern));
+			assertSameAsScan(indexed, workers, Gather.where("name").like(pattern).and("active").is(true));
+			assertSameAsScan(indexed, workers, Gather.where("name").like(pattern).or("age").like("2*"));
+		}
+
+		final String[] regexes = { "sandee.*", "san.*", "^sandeep$", "", ".*gup.*", "s.ndeep.*", "sand?eep.*", "sa+ndee.*", "(san|gup).*", "[sg]an.*", "san(dee)+p?.*",
+				"\\Qsan\\E.*", "san\\w+", "a\\+b.*", "(?i)SAN.*", ".*dee{2}p.*", "ab{0,2}hi.*", "[]a]bc", ".*😀?ab.*", "Sandeep Gupta", "3\\d", "zzz" };
+		for(String regex : regexes) {
+			assertSameAsScan(indexed, workers, Gather.where("name").regex(regex));
+			assertSameAsScan(indexed, workers, Gather.where("name").not().regex(regex));
+			assertSameAsScan(indexed, workers, Gather.where("age").regex(regex));
+			assertSameAsScan(indexed, workers, Gather.where("name").regex(Pattern.compile(regex)));
+			assertSameAsScan(indexed, workers, Gather.where("name").regex(Pattern.compile(regex, Pattern.CASE_INSENSITIVE)));
+		}
+
+		assertSameAsScan(indexed, workers, Gather.where("name").like(null));
+		assertSameAsScan(indexed, workers, Gather.where("name").regex((String) null));
+		assertSameAsScan(indexed, workers, Gather.where("name").like("san*").and("name").regex(".*p"));
+	}
+
+	@Test
+	public void testCompositeIndex() {
+		List<Worker> workers = getWorkers(3000);
+		GatherIndexedCollection<Worker> indexed = GatherIndexedCollection.of(workers).withCompositeIndex("name", "active", "salary").withCompositeIndex("active", "age", "salary").withHashIndex("age");
+
+		for(String name : new String[] { "Sandeep Gupta", "Sangeeta", null, "nobody" }) {
+			for(long bound : new long[] { -1l, 0l, 50l, 99l }) {
+				assertSameAsScan(indexed, workers, Gather.where("name").is(name).and("active").is(true).and("salary").greaterThan(bound));
+				assertSameAsScan(indexed, workers, Gather.where("salary").lessThanOrEquals(bound).and("active").is(false).and("name").is(name));
+				assertSameAsScan(indexed, workers, Gather.where("name").is(name).and("active").is(true).and("salary").greaterThanOrEquals(bound).and("salary").lessThan(bound + 20));
+			}
+
+			assertSameAsScan(indexed, workers, Gather.where("name").is(name).and("active").is(true));
+			assertSameAsScan(indexed, workers, Gather.where("name").is(name).and("active").is(true).and("age").greaterThan(30));
+			assertSameAsScan(indexed, workers, Gather.where("name").is(name).and("active").is(true).and("salary").not().lessThan(50l));
+			assertSameAsScan(indexed, workers, Gather.where("name").is(name).and("active").is(true).and("salary").is(50l));
+		}
+
+		// the composite index that answers the most criteria wins
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").is(36).and("salary").lessThan(30l).and("name").is("Sangeeta"));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").is(36).and("name").is("Sangeeta"));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").in(new Object[] { 30, 40 }).and("salary").greaterThan(90l));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").is(36l).and("salary").greaterThan(90l));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").is(36).and("salary").greaterThan("90"));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("age").is(36).or("active").is(false).and("age").is(40).and("salary").lessThan(50l));
+		assertSameAsScan(indexed, workers, Gather.where("active").not().is(true).and("age").is(36).and("salary").lessThan(50l));
+		assertSameAsScan(indexed, workers, Gather.where("active").is(true).and("salary").greaterThan(50l));
+
+		// values missing or of mixed classes
+		List<Measure> measures = getMeasures(3000);
+		GatherIndexedCollection<Measure> composite = GatherIndexedCollection.of(measures).withCompositeIndex("boxed", "price").withCompositeIndex("code", "mixed", "ratio");
+		for(int boxed = 0; boxed < 100; boxed += 7) {
+			assertSameAsScan(composite, measures, Gather.where("boxed").is(boxed).and("price").greaterThan(50));
+			assertSameAsScan(composite, measures, Gather.where("boxed").is(boxed).and("price").lessThanOrEquals(new BigDecimal("12.5")));
+			assertSameAsScan(composite, measures, Gather.where("code").is(measures.get(boxed).code).and("mixed").is(measures.get(boxed).mixed).and("ratio").lessThan(0));
+		}
+	}
+
+	@Test
+	public void testPagination() {
+		final List<Worker> workers = getWorkers(2000);
+		final GatherIndexedCollection<Worker> indexed = GatherIndexedCollection.of(workers).withSortedIndex("salary").withHashIndex("age");
+
+		Gather query = Gather.where("salary").greaterThanOrEquals(50l);
+		int total = query.count(workers);
+		Assert.assertEquals(total, indexed.count(query));
+
+		for(int skip = 0; skip <= total + 10; skip += 97) {
+			Assert.assertEquals(query.find(workers, 10, skip), indexed.find(query, 10, skip));
+			Assert.assertEquals(query.find(workers, 0, skip), indexed.find(query, 0, skip));
+		}
+
+		query = Gather.where("age").in(new Object[] { 20, 30, 40 }).and("salary").lessThan(30l);
+		for(int skip = 0; skip < 100; skip += 7) {
+			Assert.assertEquals(query.find(workers, 3, skip), indexed.find(query, 3, skip));
+		}
+	}
+
+	@Test
+	public void testMixedItems() {
+		List<Object> items = new ArrayList<>();
+		items.add(new Worker("Sandeep Gupta", 36, true, 40l));
+		items.add(null);
+		items.add("no fields here");
+		items.add(new Worker("Sandeep Gupta", 32, false, 50l));
+
+		GatherIndexedCollection<Object> indexed = GatherIndexedCollection.of(items).withHashIndex("name").withBitmapIndex("active");
+		Assert.assertEquals(4, indexed.size());
+		Assert.assertEquals(2, indexed.count(Gather.where("name").is("Sandeep Gupta")));
+		assertSameAsScan(indexed, items, Gather.where("name").not().is("Sandeep Gupta"));
+		assertSameAsScan(indexed, items, Gather.where("active").not().is(true));
+		assertSameAsScan(indexed, items, Gather.where("active").not().isNull());
+		Assert.assertSame(items.get(3), indexed.findOne(Gather.where("name").is("Sandeep Gupta"), 1));
+		Assert.assertNull(indexed.findOne(Gather.where("name").is("Sandeep Gupta"), 2));
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		try {
+			GatherIndexedCollection.of((List<Object>) null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			GatherIndexedCollection.of(new ArrayList<Object>()).withHashIndex(null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			GatherIndexedCollection.of(new ArrayList<Object>()).withCompositeIndex("name");
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		try {
+			GatherIndexedCollection.of(new ArrayList<Object>()).withCompositeIndex("name", null);
+			Assert.assertTrue(false);
+		} catch(IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	static <T> void assertSameAsScan(GatherIndexedCollection<T> indexed, List<T> items, Gather query) {
+		Assert.assertEquals(query.find(items), indexed.find(query));
+		Assert.assertEquals(query.count(items), indexed.count(query));
+		Assert.assertEquals(query.find(items, 5, 3), indexed.find(query, 5, 3));
+		Assert.assertEquals(query.find(items, 10), indexed.find(query, 10));
+		Assert.assertEquals(query.find(items, 3, 500), indexed.find(query, 3, 500));
+		Assert.assertEquals(query.findOne(items, 2), indexed.findOne(query, 2));
+	}
+
+	static List<Measure> getMeasures(int count) {
+		Random random = new Random(42);
+		double[] ratios = { -0.0d, 0.0d, Double.NaN, Double.NEGATIVE_INFINITY, 36.5d, -10d };
+
+		List<Measure> measures = new ArrayList<>();
+		for(int index = 0; index < count; index++) {
+			Measure measure = new Measure();
+			measure.tiny = (byte) random.nextInt();
+			measure.small = (short) (random.nextInt(2000) - 1000);
+			measure.boxed = random.nextInt(10) == 0 ? null : random.nextInt(100);
+			measure.ratio = random.nextInt(4) == 0 ? ratios[random.nextInt(ratios.length)] : random.nextGaussian() * 100;
+			measure.weight = random.nextInt(10) == 0 ? Float.NaN : random.nextFloat();
+			measure.price = random.nextInt(10) == 0 ? null : new BigDecimal(random.nextInt(10000)).movePointLeft(2);
+			measure.code = random.nextInt(10) == 0 ? null : String.valueOf((char) ('0' + random.nextInt(43))) + random.nextInt(100);
+			measure.mixed = random.nextBoolean() ? (Object) random.nextInt(100) : (Object) (long) random.nextInt(100);
+			measures.add(measure);
+		}
+
+		return measures;
+	}
+
+	static List<Document> getDocuments(int count) {
+		Random random = new Random(42);
+
+		List<Document> documents = new ArrayList<>();
+		for(int index = 0; index < count; index++) {
+			Document document = new Document();
+			int size = random.nextInt(5);
+
+			document.tags = random.nextInt(10) == 0 ? null : new ArrayList<String>();
+			document.set = new HashSet<>();
+			document.sorted = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+			document.array = new Object[size];
+			document.ints = new int[size];
+			document.longs = new long[size];
+			document.bytes = new byte[size];
+			document.doubles = new double[size];
+			document.name = "t" + random.nextInt(10);
+
+			for(int element = 0; element < size; element++) {
+				int value = random.nextInt(10);
+				String tag = random.nextInt(20) == 0 ? null : "t" + value;
+				if(document.tags != null) {
+					document.tags.add(tag);
+				}
+
+				document.set.add(tag);
+				if(tag != null) {
+					document.sorted.add(tag);
+				}
+
+				document.array[element] = random.nextBoolean() ? tag : (Object) value;
+				document.ints[element] = value;
+				document.longs[element] = random.nextBoolean() ? value : value + (1l << 32);
+				document.bytes[element] = (byte) (random.nextBoolean() ? value : value + 256);
+				document.doubles[element] = value;
+			}
+
+			documents.add(document);
+		}
+
+		return documents;
+	}
+
+	static List<Worker> getWorkers(int count) {
+		Random random = new Random(42);
+		List<Worker> workers = new ArrayList<>();
+		for(int index = 0; index < count; index++) {
+			String name = NAMES[random.nextInt(NAMES.length)];
+			workers.add(new Worker(name, 20 + random.nextInt(30), random.nextBoolean(), random.nextInt(100)));
+		}
+
+		return workers;
+	}
+
+	static class Measure {
+
+		byte tiny;
+
+		short small;
+
+		Integer boxed;
+
+		double ratio;
+
+		float weight;
+
+		BigDecimal price;
+
+		String code;
+
+		Object mixed;
+
+	}
+
+	static class Document {
+
+		List<String> tags;
+
+		Set<String> set;
+
+		SortedSet<String> sorted;
+
+		Object[] array;
+
+		int[] ints;
+
+		long[] longs;
+
+		byte[] bytes;
+
+		double[] doubles;
+
+		String name;
+
+	}
+
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GatherLongHashSet}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherLongHashSet {
+
+	@Test
+	public void testSet() {
+		GatherLongHashSet set = new GatherLongHashSet(new long[] { 5, 0, -3, 5, Long.MAX_VALUE, Long.MIN_VALUE, 0 });
+
+		Assert.assertEquals(5, set.size);
+		Assert.assertEquals(0, set.indexOf(5));
+		Assert.assertEquals(1, set.indexOf(0));
+		Assert.assertEquals(2, set.indexOf(-3));
+		Assert.assertEquals(3, set.indexOf(Long.MAX_VALUE));
+		Assert.assertEquals(4, set.indexOf(Long.MIN_VALUE));
+
+		Assert.assertTrue(set.contains(0));
+		Assert.assertFalse(set.contains(1));
+		Assert.assertFalse(set.contains(-5));
+		Assert.assertEquals(-1, set.indexOf(3));
+	}
+
+	@Test
+	public void testEmpty() {
+		GatherLongHashSet set = new GatherLongHashSet(new long[0]);
+
+		Assert.assertEquals(0, set.size);
+		Assert.assertFalse(set.contains(0));
+	}
+
+	@Test
+	public void testMany() {
+		long[] values = new long[100000];
+		for(int index = 0; index < values.length; index++) {
+			values[index] = index * 1024l;
+		}
+
+		GatherLongHashSet set = new GatherLongHashSet(values);
+		Assert.assertEquals(values.length, set.size);
+
+		for(int index = 0; index < values.length; index++) {
+			Assert.assertEquals(index, set.indexOf(index * 1024l));
+			Assert.assertFalse(set.contains(index * 1024l + 1));
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package com.sangupta.gather;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for the {@link GatherMergeableAggregator} implementations.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherMergeableAggregator {
+
+	private static final List<Worker> workers = TestGatherParallelExecutor.getWorkers(1000);
+
+	@Test
+	public void testMergeMatchesSequential() {
+		assertMerge("age", new GatherAggregator.CountingAggregator());
+		assertMerge("age", new GatherAggregator.UniqueAggregator());
+		assertMerge("age", new GatherAggregator.LongMinAggregator());
+		assertMerge("age", new GatherAggregator.LongMaxAggregator());
+		assertMerge("salary", new GatherAggregator.LongSumAggregator());
+		assertMerge("salary", new GatherAggregator.LongAverageAggregator());
+		assertMerge("age", new GatherAggregator.DoubleMinAggregator());
+		assertMerge("age", new GatherAggregator.DoubleMaxAggregator());
+		assertMerge("salary", new GatherAggregator.DoubleSumAggregator());
+		assertMerge("salary", new GatherAggregator.DoubleAverageAggregator());
+	}
+
+	@Test
+	public void testMergeEmptyPartials() {
+		GatherMergeableAggregator max = new GatherAggregator.LongMaxAggregator();
+		max.aggregate(0, 42);
+		max.merge(max.newPartial());
+		Assert.assertEquals(42l, max.getResult(1));
+
+		GatherMergeableAggregator average = new GatherAggregator.DoubleAverageAggregator();
+		average.merge(average.newPartial());
+		Assert.assertEquals(0d, average.getResult(0));
+	}
+
+	@Test
+	public void testParallelAggregateUsesPartials() {
+		List<Worker> large = TestGatherParallelExecutor.getWorkers(GatherParallelExecutor.SEQUENTIAL_THRESHOLD * 4);
+
+		GatherAggregator.CountingAggregator counting = new GatherAggregator.CountingAggregator();
+		Assert.assertEquals(large.size(), Gather.aggregateParallel(large, "name", counting));
+		Assert.assertEquals(large.size(), counting.count);
+	}
+
+	/**
+	 * Split the values into three partials, merge them and compare with a
+	 * sequential run over all values.
+	 */
+	private static void assertMerge(String key, GatherMergeableAggregator aggregator) {
+		Number expected = GatherExecutor.aggregate(workers, key, aggregator.newPartial());
+
+		int third = workers.size() / 3;
+		int found = 0;
+		for(int start = 0; start < workers.size(); start += third) {
+			GatherMergeableAggregator partial = aggregator.newPartial();
+
+			int end = Math.min(workers.size(), start + third);
+			for(int index = start; index < end; index++) {
+				found = GatherExecutor.aggregateOnItem(workers.get(index), key, partial, found);
+			}
+
+			aggregator.merge(partial);
+		}
+
+		Assert.assertEquals(aggregator.getClass().getSimpleName(), expected, aggregator.getResult(found));
+	}
+
+}
@@ -0,0 +1,187 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link GatherParallelExecutor}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherParallelExecutor {
+
+	private static final List<Worker> workers = getWorkers(100 * 1000);
+
+	@Test
+	public void testCount() {
+		Gather query = Gather.where("age").greaterThan(50).and("active").is(true);
+
+		int expected = query.count(workers);
+		Assert.assertTrue(expected > 0);
+		Assert.assertEquals(expected, query.parallel().count(workers));
+		Assert.assertEquals(expected, query.compile().count(workers.toArray()));
+		Assert.assertTrue(query.compile().isParallel());
+	}
+
+	@Test
+	public void testFind() {
+		CompiledGather sequential = Gather.where("name").like("san*").compile();
+		CompiledGather parallel = sequential.parallel();
+		Assert.assertFalse(sequential.isParallel());
+		Assert.assertSame(parallel, parallel.parallel());
+
+		Assert.assertEquals(sequential.find(workers), parallel.find(workers));
+
+		int total = sequential.count(workers);
+		int[][] pages = new int[][] { { 0, 0 }, { 1, 0 }, { 10, 0 }, { 10, 5 }, { 0, 5 }, { 100, 40000 }, { 5000, total - 10 }, { 10, total }, { 0, total + 1 } };
+		for(int[] page : pages) {
+			List<Worker> expected = sequential.find(workers, page[0], page[1]);
+			Assert.assertEquals(expected, parallel.find(workers, page[0], page[1]));
+		}
+
+		Assert.assertSame(sequential.findOne(workers, 12345), parallel.findOne(workers, 12345));
+	}
+
+	@Test
+	public void testSequentialFallback() {
+		Gather query = Gather.where("age").lessThan(10).parallel();
+
+		List<Worker> linked = new LinkedList<>(workers);
+		Assert.assertFalse(GatherParallelExecutor.supports(linked));
+		Assert.assertEquals(Gather.where("age").lessThan(10).find(workers), query.find(linked));
+
+		List<Worker> small = workers.subList(0, GatherParallelExecutor.SEQUENTIAL_THRESHOLD - 1);
+		Assert.assertFalse(GatherParallelExecutor.supports(small));
+		Assert.assertEquals(Gather.where("age").lessThan(10).count(small), query.count(small));
+	}
+
+	@Test
+	public void testAggregateParallel() {
+		Assert.assertEquals(Gather.sumAsLong(workers, "salary"), Gather.aggregateParallel(workers, "salary", new GatherAggregator.LongSumAggregator()));
+		Assert.assertEquals(Gather.averageAsDouble(workers, "age"), Gather.aggregateParallel(workers.toArray(), "age", new GatherAggregator.DoubleAverageAggregator()));
+		Assert.assertEquals(Gather.count(workers, "noSuchKey"), Gather.aggregateParallel(workers, "noSuchKey", new GatherAggregator.CountingAggregator()));
+
+		GatherAggregator.UniqueAggregator unique = new GatherAggregator.UniqueAggregator();
+		Gather.aggregateParallel(workers, "name", unique);
+		Assert.assertEquals(Gather.unique(workers, "name"), unique.getUniqueSet());
+
+		Assert.assertNull(Gather.aggregateParallel((Object[]) null, "age", new GatherAggregator.CountingAggregator()));
+	}
+
+	@Test
+	public void testFilteredAggregateParallel() {
+		CompiledGather sequential = Gather.where("age").greaterThan(50).and("active").is(true).compile();
+		CompiledGather parallel = sequential.parallel();
+		List<Worker> matched = sequential.find(workers);
+
+		Assert.assertEquals(Gather.sumAsLong(matched, "salary"), parallel.sumAsLong(workers, "salary"));
+		Assert.assertEquals(Gather.averageAsDouble(matched, "age"), parallel.averageAsDouble(workers.toArray(), "age"));
+		Assert.assertEquals(Gather.count(matched, "salary"), parallel.count(workers, "salary"));
+
+		// not mergeable, values are still handed over in encounter order
+		final List<Object> seen = new ArrayList<>();
+		parallel.aggregate(workers, "salary", new GatherAggregator() {
+
+			@Override
+			public void aggregate(int index, Object value) {
+				seen.add(value);
+			}
+
+			@Override
+			public Number getResult(int counted) {
+				return counted;
+			}
+
+		});
+
+		Assert.assertEquals(matched.size(), seen.size());
+		for(int index = 0; index < seen.size(); index++) {
+			Assert.assertEquals(matched.get(index).salary, seen.get(index));
+		}
+	}
+
+	@Test
+	public void testAggregationParallel() {
+		CompiledGather sequential = Gather.where("age").greaterThan(50).and("active").is(true).compile();
+
+		GatherAggregation.Result expected = sequential.aggregate(workers).count("salary").sumAsLong("salary").minAsLong("age").maxAsDouble("age").averageAsDouble("salary").run();
+		GatherAggregation.Result actual = sequential.parallel().aggregate(workers).count("salary").sumAsLong("salary").minAsLong("age").maxAsDouble("age").averageAsDouble("salary").run();
+
+		Assert.assertEquals(expected.count("salary"), actual.count("salary"));
+		Assert.assertEquals(expected.sumAsLong("salary"), actual.sumAsLong("salary"));
+		Assert.assertEquals(expected.minAsLong("age"), actual.minAsLong("age"));
+		Assert.assertEquals(expected.maxAsDouble("age"), actual.maxAsDouble("age"));
+		Assert.assertEquals(expected.averageAsDouble("salary"), actual.averageAsDouble("salary"));
+
+		// everything matches
+		actual = Gather.where("age").greaterThanOrEquals(0).parallel().compile().aggregate(workers).count("name").sumAsLong("salary").run();
+		Assert.assertEquals(Gather.count(workers, "name"), actual.count("name"));
+		Assert.assertEquals(Gather.sumAsLong(workers, "salary"), actual.sumAsLong("salary"));
+	}
+
+	@Test
+	public void testAggregateParallelNotMergeable() {
+		// values must still arrive in encounter order from a single thread
+		final Thread caller = Thread.currentThread();
+		final long[] last = new long[] { 0 };
+		GatherAggregator ordered = new GatherAggregator() {
+
+			@Override
+			public void aggregate(int index, Object value) {
+				Assert.assertSame(caller, Thread.currentThread());
+				Assert.assertEquals(last[0] + 1, index);
+				last[0] = index;
+			}
+
+			@Override
+			public Number getResult(int counted) {
+				return counted;
+			}
+
+		};
+
+		Assert.assertEquals(workers.size(), Gather.aggregateParallel(workers, "age", ordered));
+		Assert.assertEquals(workers.size(), last[0]);
+	}
+
+	static List<Worker> getWorkers(int size) {
+		String[] names = new String[] { "sandeep", "sangupta", "abhishek", "sushant" };
+
+		List<Worker> workers = new ArrayList<>();
+		for(int index = 0; index < size; index++) {
+			int age = (index * 31) % 100;
+			workers.add(new Worker(names[index % 4], age, index % 3 == 0, (index * 7919l) % 1000000));
+		}
+
+		return workers;
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.GatherPatternCache.CachedPattern;
+
+/**
+ * Unit tests for {@link GatherPatternCache}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherPatternCache {
+
+	@Test
+	public void testCounters() {
+		GatherPatternCache cache = new GatherPatternCache(16);
+
+		CachedPattern pattern = cache.get("san.*");
+		Assert.assertSame(pattern, cache.get("san.*"));
+		Assert.assertSame(pattern, cache.get("san.*"));
+		cache.get("gupta");
+
+		Assert.assertEquals(2, cache.hits());
+		Assert.assertEquals(2, cache.misses());
+		Assert.assertEquals(0, cache.evictions());
+		Assert.assertEquals(2, cache.size());
+
+		Assert.assertTrue(pattern.matches("sandeep"));
+		Assert.assertFalse(pattern.matches("abhishek"));
+		Assert.assertTrue(pattern.matches("sangupta"));
+	}
+
+	@Test
+	public void testBounded() {
+		GatherPatternCache cache = new GatherPatternCache(64);
+		CachedPattern hot = cache.get("hot");
+
+		for(int index = 0; index < 10000; index++) {
+			cache.get("pattern-" + index);
+			Assert.assertSame(hot, cache.get("hot"));
+			Assert.assertTrue(cache.size() <= 64 + 8);
+		}
+
+		Assert.assertTrue(cache.evictions() >= 10000 - 64);
+		Assert.assertEquals(10000, cache.hits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new GatherPatternCache(0);
+	}
+
+	@Test
+	public void testSharedBetweenThreads() throws InterruptedException {
+		final GatherPatternCache cache = new GatherPatternCache(8);
+		final AtomicInteger mismatches = new AtomicInteger();
+
+		Thread[] threads = new Thread[4];
+		for(int index = 0; index < threads.length; index++) {
+			final int thread = index;
+			threads[index] = new Thread() {
+
+				@Override
+				public void run() {
+					for(int run = 0; run < 5000; run++) {
+						String value = "value-" + thread + "-" + run;
+						if(!cache.get("value-" + thread + "-\\d+").matches(value)) {
+							mismatches.incrementAndGet();
+						}
+
+						if(cache.get("value-\\d+-" + (run % 32)).matches(value) != value.endsWith("-" + (run % 32))) {
+							mismatches.incrementAndGet();
+						}
+					}
+				}
+
+			};
+			threads[index].start();
+		}
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertEquals(0, mismatches.get());
+		Assert.assertEquals(2 * threads.length * 5000, cache.hits() + cache.misses());
+
+		// threads that find an eviction running carry on without evicting, so
+		// the cache may be left over its threshold - the next miss trims it
+		cache.get("value-\\d+-final");
+		Assert.assertTrue(cache.size() <= 8 + 1);
+	}
+
+}
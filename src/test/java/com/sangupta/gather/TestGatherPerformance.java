@@ -50,6 +50,8 @@ public class TestGatherPerformance {
 
 	static final Gather ageQuery = Gather.where("age").greaterThan(50);
 
+	static final Gather salaryQuery = Gather.where("salary").greaterThan(500000l);
+
 	static {
 		String[] names = new String[] { "sandeep", "sangupta", "abhishek", "sushant" };
 		Random random = new Random();
@@ -71,6 +73,21 @@ public class TestGatherPerformance {
 		int count = ageQuery.find(workers).size();
 	}
 
+	@Benchmark
+	public int testNumericCountPerformance() {
+		return salaryQuery.count(workers);
+	}
+
+	@Benchmark
+	public Number testSumPerformance() {
+		return Gather.sumAsLong(workers, "salary");
+	}
+
+	@Benchmark
+	public Number testAveragePerformance() {
+		return Gather.averageAsDouble(workers, "age");
+	}
+
 	public static void main(String[] args) throws RunnerException {
 		Options options = new OptionsBuilder().include(TestGatherPerformance.class.getSimpleName())
 											 .warmupIterations(5)
@@ -0,0 +1,87 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link GatherPositions}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherPositions {
+
+	@Test
+	public void testAdd() {
+		GatherPositions positions = new GatherPositions();
+		Assert.assertArrayEquals(new int[0], positions.toArray());
+
+		for(int index = 0; index < 10; index++) {
+			positions.add(index * 3);
+		}
+
+		Assert.assertEquals(10, positions.size());
+		Assert.assertArrayEquals(new int[] { 0, 3, 6, 9, 12, 15, 18, 21, 24, 27 }, positions.toArray());
+
+		positions.add(30);
+		Assert.assertEquals(11, positions.toArray().length);
+
+		// out of order positions are inserted in place
+		positions.add(4);
+		positions.add(4);
+		positions.remove(27);
+		positions.remove(0);
+		positions.remove(5);
+		Assert.assertArrayEquals(new int[] { 3, 4, 6, 9, 12, 15, 18, 21, 24, 30 }, positions.toArray());
+
+		// reading hands out copies
+		positions.toArray()[0] = 42;
+		Assert.assertArrayEquals(new int[] { 3, 4, 6, 9, 12, 15, 18, 21, 24, 30 }, positions.toArray());
+
+		int[] target = new int[12];
+		Assert.assertEquals(11, positions.copyTo(target, 1));
+		Assert.assertArrayEquals(new int[] { 0, 3, 4, 6, 9, 12, 15, 18, 21, 24, 30, 0 }, target);
+
+		Assert.assertArrayEquals(new int[] { 3, 4, 6 }, positions.toBitmap(3).toArray());
+		Assert.assertEquals(10, positions.toBitmap(0).cardinality());
+	}
+
+	@Test
+	public void testSorted() {
+		Assert.assertArrayEquals(new int[] { 1, 2, 5 }, GatherPositions.sorted(new int[] { 5, 1, 2, 5, 1 }));
+		Assert.assertArrayEquals(new int[0], GatherPositions.sorted(new int[0]));
+	}
+
+	@Test
+	public void testSmallest() {
+		int[] positions = { 9, 4, 7, 1, 8, 0, 3, 6, 2, 5 };
+
+		Assert.assertArrayEquals(new int[] { 0, 1, 2 }, GatherPositions.smallest(positions, 0, positions.length, 3));
+		Assert.assertArrayEquals(new int[] { 0, 1, 3, 7 }, GatherPositions.smallest(positions, 2, 7, 4));
+		Assert.assertArrayEquals(new int[] { 0, 1, 3, 7, 8 }, GatherPositions.smallest(positions, 2, 7, 0));
+		Assert.assertArrayEquals(new int[] { 0, 1, 3, 7, 8 }, GatherPositions.smallest(positions, 2, 7, 10));
+		Assert.assertArrayEquals(new int[] { 9, 4, 7, 1, 8, 0, 3, 6, 2, 5 }, positions);
+	}
+
+}
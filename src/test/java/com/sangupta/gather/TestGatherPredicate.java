@@ -0,0 +1,328 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.GatherPredicate.AndPredicate;
+import com.sangupta.gather.GatherPredicate.CollectionHasAllOrAnyPredicate;
+import com.sangupta.gather.GatherPredicate.EqualsPredicate;
+import com.sangupta.gather.GatherPredicate.InPredicate;
+import com.sangupta.gather.GatherPredicate.IntComparison;
+import com.sangupta.gather.GatherPredicate.JunctionPredicate;
+import com.sangupta.gather.GatherPredicate.NumericComparisonPredicate;
+import com.sangupta.gather.GatherPredicate.OrPredicate;
+import com.sangupta.gather.TestGather.Worker;
+
+/**
+ * Unit tests for {@link GatherPredicate}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherPredicate {
+
+	@Test
+	public void testCost() {
+		Assert.assertEquals(GatherOperation.Equals.cost, Gather.where("age").is(36).compile().predicate.cost());
+		Assert.assertEquals(GatherOperation.RegexMatch.cost, Gather.where("name").not().regex(".*").compile().predicate.cost());
+		Assert.assertEquals(GatherOperation.Equals.cost + GatherOperation.WildcardMatch.cost, Gather.where("age").is(36).and("name").like("S*").compile().predicate.cost());
+		Assert.assertEquals(0, Gather.where("age").compile().predicate.cost());
+	}
+
+	@Test
+	public void testStaticOrder() {
+		GatherPredicate predicate = Gather.where("name").regex(".*Gupta").and("list").hasAll(new Object[] { "36" }).and("age").is(36).compile().predicate;
+		Assert.assertTrue(predicate instanceof AndPredicate);
+
+		JunctionPredicate junction = (JunctionPredicate) predicate;
+		Assert.assertTrue(junction.children[0].predicate instanceof EqualsPredicate);
+		Assert.assertEquals(GatherOperation.CollectionHasAllValues.cost, junction.children[1].predicate.cost());
+		Assert.assertEquals(GatherOperation.RegexMatch.cost, junction.children[2].predicate.cost());
+
+		// equal costs keep the order typed
+		junction = (JunctionPredicate) Gather.where("age").greaterThan(30).and("age").is(36).compile().predicate;
+		Assert.assertTrue(junction.children[0].predicate instanceof EqualsPredicate);
+
+		junction = (JunctionPredicate) Gather.where("age").is(36).and("active").is(true).compile().predicate;
+		Assert.assertEquals("age", ((EqualsPredicate) junction.children[0].predicate).key);
+	}
+
+	@Test
+	public void testAdaptiveAndOrder() {
+		final List<Worker> workers = getWorkers();
+
+		// same cost, but age rejects far more items than active
+		CompiledGather compiled = Gather.where("active").is(true).and("age").is(46).compile();
+		JunctionPredicate junction = (JunctionPredicate) compiled.predicate;
+		Assert.assertEquals("active", ((EqualsPredicate) junction.children[0].predicate).key);
+
+		for(int run = 0; run < 200; run++) {
+			Assert.assertEquals(10, compiled.count(workers));
+		}
+
+		Assert.assertEquals("age", ((EqualsPredicate) junction.children[0].predicate).key);
+	}
+
+	@Test
+	public void testAdaptiveOrOrder() {
+		final List<Worker> workers = getWorkers();
+
+		// age = 46 rarely matches, while age > 0 always does
+		CompiledGather compiled = Gather.where("age").is(46).or("age").greaterThan(0).compile();
+		JunctionPredicate junction = (JunctionPredicate) compiled.predicate;
+		Assert.assertTrue(junction.children[0].predicate instanceof EqualsPredicate);
+
+		for(int run = 0; run < 200; run++) {
+			Assert.assertEquals(1000, compiled.count(workers));
+		}
+
+		Assert.assertTrue(junction instanceof OrPredicate);
+		Assert.assertTrue(junction.children[0].predicate instanceof NumericComparisonPredicate);
+	}
+
+	@Test
+	public void testIn() {
+		List<Object> ids = new ArrayList<>();
+		for(int index = 0; index < 10000; index++) {
+			ids.add(index * 7l);
+		}
+
+		InPredicate longs = new InPredicate("age", ids);
+		Assert.assertNotNull(longs.integralValues);
+		Assert.assertTrue(longs.testValue(0l));
+		Assert.assertTrue(longs.testValue(69993l));
+		Assert.assertFalse(longs.testValue(69994l));
+		Assert.assertFalse(longs.testValue(7)); // an Integer never equals a Long
+		Assert.assertFalse(longs.testValue("7"));
+		Assert.assertFalse(longs.testValue(null));
+
+		InPredicate mixed = new InPredicate("age", new Object[] { 7, 8l, "nine", null });
+		Assert.assertNull(mixed.integralValues);
+		Assert.assertTrue(mixed.testValue(7));
+		Assert.assertTrue(mixed.testValue(8l));
+		Assert.assertTrue(mixed.testValue("nine"));
+		Assert.assertFalse(mixed.testValue(8));
+		Assert.assertFalse(mixed.testValue(null));
+
+		Assert.assertFalse(new InPredicate("age", new int[] { 7 }).testValue(7));
+		Assert.assertFalse(new InPredicate("age", new ArrayList<>()).testValue(7));
+
+		Object[] required = new Object[] { 1, 2l, "three", null, new ArrayList<>(), Arrays.asList(1, 2), new Object[] { 3, 4 } };
+		Object[] values = new Object[] { 1, 1l, 2, 2l, "three", "four", 3, null };
+		for(Object requiredValue : required) {
+			InPredicate predicate = new InPredicate("age", requiredValue);
+			for(Object value : values) {
+				Assert.assertEquals(GatherExecutor.handleValueIn(value, requiredValue), predicate.testValue(value));
+			}
+		}
+
+		// a set with its own equality is asked directly
+		TreeSet<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		names.add("sandeep");
+		InPredicate caseless = new InPredicate("name", names);
+		Assert.assertNull(caseless.values);
+		Assert.assertTrue(caseless.testValue("Sandeep"));
+		Assert.assertFalse(caseless.testValue("Sangupta"));
+
+		List<Worker> workers = new ArrayList<>();
+		workers.add(new Worker("Sandeep", 30, true, 10l));
+		workers.add(new Worker("Sangupta", 30, true, 10l));
+		Assert.assertEquals(1, Gather.where("name").in(names).count(workers));
+	}
+
+	@Test
+	public void testHasAllOrAny() {
+		Object[] required = new Object[] {
+			null,
+			"a",
+			new Object[] { },
+			new Object[] { "a" },
+			new Object[] { "a", "b", "a" },
+			new Object[] { "a", null },
+			new Object[] { 1, 2l },
+			new Integer[] { 1, 2, 300 },
+			new Number[] { 1, null },
+			new int[] { 1, 2 },
+			new long[] { 1, 2 },
+			new byte[] { 1, 2 },
+			new short[] { 1, 44 },
+			Arrays.asList("a", "b"),
+			Arrays.asList(1, 2),
+			Arrays.asList(1, "b"),
+			new ArrayList<>()
+		};
+
+		Object[] values = new Object[] {
+			null,
+			"a",
+			new Object[] { },
+			new Object[] { "a" },
+			new Object[] { "b", null, "a" },
+			new Object[] { 1, 2 },
+			new Object[] { 1, 2l },
+			new String[] { "a", "b", "c" },
+			new int[] { },
+			new int[] { 1, 2, 3 },
+			new int[] { 2, 300 },
+			new long[] { 1, 2 },
+			new short[] { 1 },
+			new byte[] { 1, 2, 44 },
+			new char[] { 'a' },
+			new double[] { 1, 2 },
+			Arrays.asList("a", "b", null),
+			Arrays.asList("a", "a"),
+			Arrays.asList(1, 2l),
+			new HashSet<>(Arrays.asList("a", "b")),
+			new ArrayList<>()
+		};
+
+		for(Object requiredValue : required) {
+			for(boolean usingAllClause : new boolean[] { true, false }) {
+				CollectionHasAllOrAnyPredicate predicate = new CollectionHasAllOrAnyPredicate("list", requiredValue, usingAllClause);
+				for(Object value : values) {
+					boolean expected = GatherExecutor.handleCollectionHasAllOrAnyValues(value, requiredValue, usingAllClause);
+					Assert.assertEquals(expected, predicate.testValue(value));
+
+					// a second time, once the lazily built values are in place
+					Assert.assertEquals(expected, predicate.testValue(value));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testHasAllWithManyValues() {
+		List<Object> required = new ArrayList<>();
+		List<Object> list = new ArrayList<>();
+		for(int index = 0; index < 200; index++) {
+			required.add("value-" + index);
+			list.add("value-" + (199 - index));
+		}
+
+		Assert.assertTrue(new CollectionHasAllOrAnyPredicate("list", required, true).testValue(list));
+
+		list.remove(100);
+		list.add("value-0");
+		Assert.assertFalse(new CollectionHasAllOrAnyPredicate("list", required, true).testValue(list));
+		Assert.assertTrue(new CollectionHasAllOrAnyPredicate("list", required, false).testValue(list));
+	}
+
+	@Test
+	public void testSpecializedNumericComparison() {
+		List<Numbers> items = new ArrayList<>();
+		for(int value : new int[] { -200, -1, 0, 1, 35, 36, 127, 300, Integer.MAX_VALUE }) {
+			items.add(new Numbers(value));
+		}
+
+		Numbers special = new Numbers(0);
+		special.floatValue = Float.NaN;
+		special.doubleValue = -0.0d;
+		special.boxedDouble = Double.NaN;
+		special.boxedInt = null;
+		items.add(special);
+
+		Object[] bounds = new Object[] { 36, 35.5d, 35.5f, 300l, (byte) 1, (short) -1, Double.NaN, 0.0d, -0.0f, new AtomicInteger(36), new BigDecimal("35.5"), Long.MAX_VALUE, "36", null };
+		String[] keys = new String[] { "byteValue", "shortValue", "intValue", "longValue", "floatValue", "doubleValue", "boxedInt", "boxedLong", "boxedDouble", "decimal" };
+		GatherOperation[] operations = new GatherOperation[] { GatherOperation.LessThan, GatherOperation.LessThanOrEquals, GatherOperation.GreaterThan, GatherOperation.GreaterThanOrEquals };
+		GatherNumericComparison[] comparisons = new GatherNumericComparison[] { GatherNumericComparison.LESS_THAN, GatherNumericComparison.LESS_THAN_OR_EQUALS, GatherNumericComparison.GREATER_THAN, GatherNumericComparison.GREATER_THAN_OR_EQUALS };
+
+		for(String key : keys) {
+			for(Object bound : bounds) {
+				// these throw for decimals, either way
+				if("decimal".equals(key) && (!(bound instanceof Number) || Double.isNaN(((Number) bound).doubleValue()))) {
+					continue;
+				}
+
+				for(int index = 0; index < operations.length; index++) {
+					NumericComparisonPredicate predicate = new NumericComparisonPredicate(key, bound, operations[index], comparisons[index]);
+					for(Numbers item : items) {
+						Object value = GatherReflect.getAccessor(item, key).get(item);
+						boolean expected = GatherExecutor.handleNumericComparison(value, bound, comparisons[index]);
+						Assert.assertEquals(key + " " + operations[index] + " " + bound + " on " + value, expected, predicate.test(item));
+					}
+				}
+			}
+		}
+
+		// fields of primitive type are read without boxing
+		NumericComparisonPredicate predicate = new NumericComparisonPredicate("intValue", 50, GatherOperation.GreaterThan, GatherNumericComparison.GREATER_THAN);
+		predicate.test(special);
+		Assert.assertTrue(predicate.binding(special).specialized instanceof IntComparison);
+	}
+
+	static class Numbers {
+
+		byte byteValue;
+
+		short shortValue;
+
+		int intValue;
+
+		long longValue;
+
+		float floatValue;
+
+		double doubleValue;
+
+		Integer boxedInt;
+
+		Long boxedLong;
+
+		Double boxedDouble;
+
+		BigDecimal decimal;
+
+		Numbers(int value) {
+			this.byteValue = (byte) value;
+			this.shortValue = (short) value;
+			this.intValue = value;
+			this.longValue = value * 3l;
+			this.floatValue = value / 2f;
+			this.doubleValue = value / 4d;
+			this.boxedInt = value;
+			this.boxedLong = (long) value;
+			this.boxedDouble = value / 8d;
+			this.decimal = new BigDecimal(value).movePointLeft(1);
+		}
+
+	}
+
+	private static List<Worker> getWorkers() {
+		List<Worker> workers = new ArrayList<>();
+		for(int index = 0; index < 1000; index++) {
+			workers.add(new Worker("Worker " + index, index % 100 == 0 ? 46 : 36, true, index));
+		}
+
+		return workers;
+	}
+
+}
@@ -21,10 +21,15 @@
 
 package com.sangupta.gather;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.sangupta.gather.GatherReflect.FieldAccessor;
 import com.sangupta.gather.GatherReflect.FieldAndInstance;
+import com.sangupta.gather.GatherReflect.HandleAccessor;
 
 public class TestGatherReflect {
 
@@ -52,6 +57,84 @@ public class TestGatherReflect {
 		Assert.assertNotNull(GatherReflect.getField(new TestClassB(), "longField"));
 	}
 
+	@Test
+	public void testGetAccessor() {
+		Assert.assertNull(GatherReflect.getAccessor(null, "intField"));
+		Assert.assertNull(GatherReflect.getAccessor(new TestClassA(), null));
+		Assert.assertNull(GatherReflect.getAccessor(new TestClassA(), "longField"));
+
+		FieldAccessor accessor = GatherReflect.getAccessor(new TestClassB(), "longField");
+		Assert.assertNotNull(accessor);
+		Assert.assertEquals(int.class, accessor.type);
+		Assert.assertSame(accessor, GatherReflect.getAccessor(new TestClassB(), "longField"));
+
+		TestClassC instance = new TestClassC();
+		Assert.assertEquals(10, GatherReflect.getAccessor(instance, "size").get(instance));
+		Assert.assertSame(instance.ta, GatherReflect.getAccessor(instance, "ta").get(instance));
+	}
+
+	@Test
+	public void testGetPathAccessor() {
+		TestClassB instance = new TestClassB();
+
+		FieldAccessor accessor = GatherReflect.getAccessor(instance, "tc.ta.td.age");
+		Assert.assertNotNull(accessor);
+		Assert.assertEquals(int.class, accessor.type);
+		Assert.assertEquals(53, accessor.get(instance));
+		Assert.assertSame(accessor, GatherReflect.getAccessor(new TestClassB(), "tc.ta.td.age"));
+
+		// missing properties
+		Assert.assertNull(GatherReflect.getAccessor(instance, "noField.age"));
+		Assert.assertNull(GatherReflect.getAccessor(instance, "noField.age"));
+		Assert.assertSame(GatherReflect.NOT_FOUND, GatherReflect.getAccessor(instance, "tc.ta.tc.age").get(instance));
+
+		// null intermediate values
+		instance.tc.ta = null;
+		Assert.assertSame(GatherReflect.NOT_FOUND, accessor.get(instance));
+
+		// declared as object, resolved at runtime
+		TestClassE holder = new TestClassE();
+		Assert.assertEquals(53, GatherReflect.getAccessor(holder, "value.age").get(holder));
+
+		// ad hoc keys do not grow the cache without bound
+		for(int index = 0; index < 10 * GatherReflect.MAX_CACHED_PATHS; index++) {
+			Assert.assertNull(GatherReflect.getAccessor(instance, "noField" + index + ".age"));
+			Assert.assertTrue(GatherReflect.CLASS_PATH_CACHE.get(TestClassB.class).size() <= GatherReflect.MAX_CACHED_PATHS);
+		}
+
+		Assert.assertEquals(53, GatherReflect.getAccessor(new TestClassB(), "tc.ta.td.age").get(new TestClassB()));
+	}
+
+	@Test
+	public void testConcurrentGetAccessor() throws InterruptedException {
+		final FieldAccessor[] accessors = new FieldAccessor[8];
+		Thread[] threads = new Thread[accessors.length];
+		for(int index = 0; index < threads.length; index++) {
+			final int slot = index;
+			threads[index] = new Thread() {
+
+				@Override
+				public void run() {
+					accessors[slot] = GatherReflect.getAccessor(new TestClassD(), "age");
+				}
+
+			};
+		}
+
+		for(Thread thread : threads) {
+			thread.start();
+		}
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		for(FieldAccessor accessor : accessors) {
+			Assert.assertNotNull(accessor);
+			Assert.assertSame(accessors[0], accessor);
+		}
+	}
+
 	@Test
 	public void testGetAllFields() {
 		Assert.assertNull(GatherReflect.getAllFields(null));
@@ -76,6 +159,21 @@ public class TestGatherReflect {
 		Assert.assertEquals(53, value);
 	}
 
+	@Test
+	public void testStaticFields() {
+		TestClassF instance = new TestClassF();
+
+		FieldAccessor accessor = GatherReflect.getAccessor(instance, "kind");
+		Assert.assertEquals("x", accessor.get(instance));
+		Assert.assertEquals(42l, ((HandleAccessor) GatherReflect.getAccessor(instance, "count")).getLong(instance));
+		Assert.assertEquals(42d, ((HandleAccessor) GatherReflect.getAccessor(instance, "count")).getDouble(instance), 0d);
+
+		List<TestClassF> list = Arrays.asList(new TestClassF(), new TestClassF());
+		Assert.assertEquals(2, Gather.where("kind").is("x").count(list));
+		Assert.assertEquals(2, Gather.where("count").greaterThan(40).count(list));
+		Assert.assertEquals(84l, Gather.sumAsLong(list, "count"));
+	}
+
 	private static class TestClassA {
 
 		private int intField;
@@ -105,4 +203,18 @@ public class TestGatherReflect {
 		private int age = 53;
 
 	}
+
+	private static class TestClassE {
+
+		private Object value = new TestClassD();
+
+	}
+
+	private static class TestClassF {
+
+		private static String kind = "x";
+
+		private static int count = 42;
+
+	}
 }
@@ -0,0 +1,94 @@
+/**
+ *
+ * gather: SQL queries for Java collections
+ * Copyright (c) 2017, Sandeep Gupta
+ *
+ * https://sangupta.com/projects/gather
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.sangupta.gather;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sangupta.gather.GatherWildcardMatcher.Contains;
+import com.sangupta.gather.GatherWildcardMatcher.Exact;
+import com.sangupta.gather.GatherWildcardMatcher.General;
+import com.sangupta.gather.GatherWildcardMatcher.Prefix;
+import com.sangupta.gather.GatherWildcardMatcher.Segments;
+import com.sangupta.gather.GatherWildcardMatcher.Suffix;
+
+/**
+ * Unit tests for {@link GatherWildcardMatcher}.
+ *
+ * @author sangupta
+ *
+ */
+public class TestGatherWildcardMatcher {
+
+	@Test
+	public void testAnalysis() {
+		Assert.assertTrue(GatherWildcardMatcher.of("sandeep") instanceof Exact);
+		Assert.assertTrue(GatherWildcardMatcher.of("") instanceof Exact);
+		Assert.assertTrue(GatherWildcardMatcher.of("san*") instanceof Prefix);
+		Assert.assertTrue(GatherWildcardMatcher.of("san**") instanceof Prefix);
+		Assert.assertTrue(GatherWildcardMatcher.of("*gupta") instanceof Suffix);
+		Assert.assertTrue(GatherWildcardMatcher.of("*error*") instanceof Contains);
+		Assert.assertTrue(GatherWildcardMatcher.of("s*p") instanceof Segments);
+		Assert.assertTrue(GatherWildcardMatcher.of("*s*d*p") instanceof Segments);
+		Assert.assertTrue(GatherWildcardMatcher.of("s?n*") instanceof General);
+		Assert.assertSame(GatherWildcardMatcher.ANY, GatherWildcardMatcher.of("*"));
+		Assert.assertSame(GatherWildcardMatcher.ANY, GatherWildcardMatcher.of("***"));
+	}
+
+	@Test
+	public void testMatches() {
+		Assert.assertTrue(GatherWildcardMatcher.of("san*").matches("sandeep"));
+		Assert.assertFalse(GatherWildcardMatcher.of("san*").matches("abhishek"));
+		Assert.assertTrue(GatherWildcardMatcher.of("*gupta").matches("sangupta"));
+		Assert.assertTrue(GatherWildcardMatcher.of("*error*").matches("an error here"));
+		Assert.assertTrue(GatherWildcardMatcher.of("s*d*p").matches("sandeep"));
+		Assert.assertFalse(GatherWildcardMatcher.of("a*a").matches("a"));
+		Assert.assertTrue(GatherWildcardMatcher.of("a*a").matches("aa"));
+		Assert.assertTrue(GatherWildcardMatcher.of("*.w?v").matches("abc.wav"));
+	}
+
+	@Test
+	public void testSameAsGeneralMatch() {
+		final char[] alphabet = new char[] { 'a', 'b', '*', '?' };
+		final Random random = new Random(42);
+
+		for(int run = 0; run < 20000; run++) {
+			String pattern = randomString(random, alphabet, 6);
+			String value = randomString(random, alphabet, 8).replace('*', 'a').replace('?', 'b');
+
+			Assert.assertEquals(pattern + " on " + value, GatherUtils.wildcardMatch(value, pattern), GatherWildcardMatcher.of(pattern).matches(value));
+		}
+	}
+
+	private static String randomString(Random random, char[] alphabet, int maxLength) {
+		int length = random.nextInt(maxLength + 1);
+		StringBuilder builder = new StringBuilder(length);
+		for(int index = 0; index < length; index++) {
+			builder.append(alphabet[random.nextInt(alphabet.length)]);
+		}
+
+		return builder.toString();
+	}
+
+}